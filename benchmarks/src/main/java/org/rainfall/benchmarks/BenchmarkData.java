@@ -0,0 +1,81 @@
+package org.rainfall.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import org.rainfall.io.DataGenerator;
+import org.rainfall.lang.Output;
+
+/**
+ * Generates the data sets the benchmarks run on. A data set is measured in
+ * station-years: up to {@link #YEARS_PER_STATION} years are written per station
+ * file, so 10 station-years is a single file while 1000 is spread over 20 stations
+ * (the supported years do not go back far enough for 1000 years of one station). <br /><br />
+ * Files are written by the {@link DataGenerator}, so the same seed always gives
+ * the same files.
+ *
+ * @author Kieran
+ */
+public class BenchmarkData {
+
+    /** Most years written to one station file */
+    public static final int YEARS_PER_STATION = 50;
+    /** First year of every station file */
+    public static final int FIRST_YEAR = 1960;
+
+    private BenchmarkData() { }
+
+    /**
+     * Number of station files a data set is spread over
+     * @param stationYears Size of the data set
+     * @return int - number of stations
+     */
+    public static int stations(int stationYears) {
+        return (stationYears + YEARS_PER_STATION - 1) / YEARS_PER_STATION;
+    }
+
+    /**
+     * Number of years held by each station of a data set
+     * @param stationYears Size of the data set
+     * @return int - years per station
+     */
+    public static int yearsPerStation(int stationYears) {
+        return stationYears / stations(stationYears);
+    }
+
+    /**
+     * Writes a data set into a new temporary directory (deleted when the JVM exits)
+     * @param stationYears Size of the data set
+     * @param seed Seed for the readings
+     * @return File array - one data file per station
+     * @throws IOException if the files cannot be written
+     */
+    public static File[] generate(int stationYears, long seed) throws IOException {
+        File directory = File.createTempFile("rainfall-bench", "");
+        directory.delete();
+
+        DataGenerator generator = new DataGenerator();
+        generator.setSeed(seed);
+        generator.setFirstYear(FIRST_YEAR);
+        generator.setYears(yearsPerStation(stationYears));
+        File[] files = generator.writeStations(directory, stations(stationYears));
+
+        directory.deleteOnExit();
+        for (File file : files) {
+            file.deleteOnExit();
+        }
+        return files;
+    }
+
+    /**
+     * Stops the loaders' progress messages from being printed during measurements
+     */
+    public static void silenceMessages() {
+        Output.setMessageStream(new PrintStream(new OutputStream() {
+            public void write(int b) { }
+            public void write(byte[] b, int off, int len) { }
+        }));
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.rainfall.benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rainfall.gui.jfreechart.Graph;
+
+/**
+ * Times the conversion of a query series into chart points, for the sizes of
+ * series the interface draws: the months of a year, the days of a month and the
+ * longest +/- duration series.
+ *
+ * @author Kieran
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GraphBenchmark {
+
+    @Param({ "12", "31", "61" })
+    public int points;
+
+    private ArrayList<Float> series;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        series = new ArrayList<Float>(points);
+        for (int i = 0; i < points; i++) {
+            series.add((float)(random.nextInt(1000) / 10.0));
+        }
+    }
+
+    @Benchmark
+    public Point2D.Float[] convertDataSet() {
+        return Graph.convertDataSet(series, 0);
+    }
+
+}
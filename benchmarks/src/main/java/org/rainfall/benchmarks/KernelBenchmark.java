@@ -0,0 +1,94 @@
+package org.rainfall.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rainfall.store.DayKernels;
+import org.rainfall.store.DayStore;
+
+/**
+ * Compares the scalar and Vector API day column kernels over a whole archive of
+ * 10, 100 and 1000 years of days, one in ten of them missing. The benchmark forks
+ * with jdk.incubator.vector so both kernels can be measured in the same run; the
+ * vector cases fail if the jar was built without the vector-api profile.
+ *
+ * @author Kieran
+ * @see DayKernels
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+
+    /** Rainfall a heavy rain day exceeds */
+    private static final float THRESHOLD = 10F;
+
+    @Param({ "3650", "36500", "365000" })
+    public int days;
+
+    @Param({ "scalar", "vector" })
+    public String kernels;
+
+    private DayKernels kernel;
+    private float[] column;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        kernel = kernels.equals("vector") ? DayKernels.vector() : DayKernels.scalar();
+        if (kernel == null)
+            throw new IllegalStateException("The vector kernels are not available");
+
+        // Mostly dry days and showers, with the odd missing day
+        Random random = new Random(42);
+        column = new float[days];
+        for (int i = 0; i < days; i++) {
+            int roll = random.nextInt(10);
+            if (roll == 0)
+                column[i] = DayStore.MISSING_VALUE;
+            else if (roll < 6)
+                column[i] = 0F;
+            else
+                column[i] = Math.round(random.nextFloat() * random.nextFloat() * 500F) / 10F;
+        }
+    }
+
+    @Benchmark
+    public double sum() {
+        return kernel.sum(column, 0, days);
+    }
+
+    @Benchmark
+    public int count() {
+        return kernel.count(column, 0, days);
+    }
+
+    @Benchmark
+    public int countAbove() {
+        return kernel.countAbove(column, 0, days, THRESHOLD);
+    }
+
+    @Benchmark
+    public float max() {
+        return kernel.max(column, 0, days);
+    }
+
+    @Benchmark
+    public float min() {
+        return kernel.min(column, 0, days);
+    }
+
+}
@@ -0,0 +1,167 @@
+package org.rainfall.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rainfall.io.RainfallLoader;
+import org.rainfall.station.StationDataset;
+
+/**
+ * Times each family of rainfall queries: daily, weekly, monthly and yearly values,
+ * wettest/driest days, the multi-month and multi-year series drawn by the charts,
+ * per-month series and arbitrary date ranges. <br /><br />
+ * Every invocation answers the next of a fixed, seeded sequence of queries spread
+ * over all the stations and years of the data set, so the results are not skewed
+ * by one period staying in cache.
+ *
+ * @author Kieran
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    /** Years either side of the queried year for the multi-year and multi-month series */
+    private static final int DURATION = 2;
+    private static final int QUERIES = 1024;
+
+    @Param({ "10", "100", "1000" })
+    public int stationYears;
+
+    private StationDataset[] stations;
+    private int[] station, year, month, week, day, toYear;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.silenceMessages();
+        File[] files = BenchmarkData.generate(stationYears, 42);
+        RainfallLoader loader = new RainfallLoader();
+        loader.setWriteSnapshots(false);
+        stations = new StationDataset[files.length];
+        for (int s = 0; s < files.length; s++) {
+            stations[s] = loader.loadStation("station" + s, files[s].getAbsolutePath());
+        }
+
+        int years = BenchmarkData.yearsPerStation(stationYears);
+        Random random = new Random(7);
+        station = new int[QUERIES];
+        year = new int[QUERIES];
+        month = new int[QUERIES];
+        week = new int[QUERIES];
+        day = new int[QUERIES];
+        toYear = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            station[i] = random.nextInt(stations.length);
+            year[i] = BenchmarkData.FIRST_YEAR + random.nextInt(years);
+            month[i] = 1 + random.nextInt(12);
+            week[i] = 1 + random.nextInt(4);
+            day[i] = 1 + random.nextInt(28);
+            toYear[i] = year[i] + random.nextInt(BenchmarkData.FIRST_YEAR + years - year[i]);
+        }
+    }
+
+    private int nextQuery() {
+        return next = (next + 1) & (QUERIES - 1);
+    }
+
+    @Benchmark
+    public float daily() {
+        int q = nextQuery();
+        return stations[station[q]].getTotalDailyRainfall(year[q], month[q], day[q]);
+    }
+
+    @Benchmark
+    public void weekly(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getTotalWeeklyRainfall(year[q], month[q], week[q]));
+        bh.consume(s.getAverageWeeklyRainfall(year[q], month[q], week[q]));
+    }
+
+    @Benchmark
+    public void monthly(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getTotalMonthlyRainfall(year[q], month[q]));
+        bh.consume(s.getAverageMonthlyRainfall(year[q], month[q]));
+    }
+
+    @Benchmark
+    public void yearly(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getTotalYearlyRainfall(year[q]));
+        bh.consume(s.getAverageYearlyRainfall(year[q]));
+    }
+
+    @Benchmark
+    public void wettestDriest(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getWettestDayOfMonth(year[q], month[q]));
+        bh.consume(s.getDriestDayOfMonth(year[q], month[q]));
+        bh.consume(s.getWettestDayOfYear(year[q]));
+        bh.consume(s.getDriestDayOfYear(year[q]));
+    }
+
+    @Benchmark
+    public void perMonthOfYear(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getTotalYearlyRainfallPerMonth(year[q]));
+        bh.consume(s.getAverageYearlyRainfallPerMonth(year[q]));
+        bh.consume(s.getWettestDayPerMonthOfYear(year[q]));
+    }
+
+    @Benchmark
+    public ArrayList<Float> daysOfMonth() {
+        int q = nextQuery();
+        return stations[station[q]].getMonthlyRainfall(year[q], month[q]);
+    }
+
+    @Benchmark
+    public void multiMonth(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getAverageMonthlyRainfallOverTime(year[q], month[q], DURATION));
+        bh.consume(s.getWettestDayOfMultipleMonths(year[q], month[q], DURATION));
+    }
+
+    @Benchmark
+    public void multiYear(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getTotalYearlyRainfallOverTime(year[q], DURATION));
+        bh.consume(s.getAverageYearlyRainfallOverTime(year[q], DURATION));
+        bh.consume(s.getWettestDayOfMultipleYears(year[q], DURATION));
+    }
+
+    @Benchmark
+    public void dateRange(Blackhole bh) {
+        int q = nextQuery();
+        StationDataset s = stations[station[q]];
+        bh.consume(s.getTotalRainfall(year[q], month[q], day[q], toYear[q], 12, 31));
+        bh.consume(s.getWettestDay(year[q], month[q], day[q], toYear[q], 12, 31));
+        bh.consume(s.getDriestDay(year[q], month[q], day[q], toYear[q], 12, 31));
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.rainfall.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rainfall.RainfallData;
+import org.rainfall.benchmarks.BenchmarkData;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+
+/**
+ * Times each stage of loading a data file the original way (readFile, extractLines,
+ * sanitizeData, storeObjects) and the whole of it up to the indexes being ready
+ * for the first query, for every station file of the data set. readStore times
+ * the loader's own path from the text file to a store, on one thread and split
+ * across several by the parallel reader, and readStream the line by line reader
+ * the loader falls back to for files which can't be mapped. <br /><br />
+ * This lives in org.rainfall.io so it can call the package-private sanitizeData.
+ *
+ * @author Kieran
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileLoadBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int stationYears;
+
+    private final LancasterReader reader = new LancasterReader();
+    private String[] files;
+    private String[] contents;
+    private String[][] lines;
+    private String[][] sanitized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchmarkData.silenceMessages();
+        File[] generated = BenchmarkData.generate(stationYears, 42);
+        files = new String[generated.length];
+        contents = new String[generated.length];
+        lines = new String[generated.length][];
+        sanitized = new String[generated.length][];
+        for (int s = 0; s < generated.length; s++) {
+            files[s] = generated[s].getAbsolutePath();
+            contents[s] = reader.readFile(files[s]);
+            lines[s] = reader.extractLines(contents[s]);
+            sanitized[s] = reader.sanitizeData(lines[s].clone());
+        }
+    }
+
+    /**
+     * Loader settings for readStore, kept apart so the other benchmarks don't run once
+     * per parallelism level
+     */
+    @State(Scope.Benchmark)
+    public static class Loader {
+
+        @Param({ "1", "4" })
+        public int parallelism;
+
+        private RainfallLoader loader;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            loader = new RainfallLoader();
+            loader.setWriteSnapshots(false); // always parse the text file
+            loader.setParallelism(parallelism);
+        }
+
+    }
+
+    @Benchmark
+    public int readFile() {
+        int length = 0;
+        for (String file : files) {
+            length += reader.readFile(file).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int extractLines() {
+        int count = 0;
+        for (String content : contents) {
+            count += reader.extractLines(content).length;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int sanitizeData() {
+        int count = 0;
+        for (String[] fileLines : lines) {
+            // sanitizeData trims the lines in place, so give it a copy each time
+            count += reader.sanitizeData(fileLines.clone()).length;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public StationDataset storeObjects() {
+        for (String[] data : sanitized) {
+            StationRegistry.setDefault(new StationDataset("bench"));
+            RainfallData.storeObjects(data);
+        }
+        return RainfallData.getStation();
+    }
+
+    @Benchmark
+    public StationDataset load() {
+        for (String file : files) {
+            StationRegistry.setDefault(new StationDataset("bench"));
+            RainfallData.storeObjects(reader.getRainfallData(file));
+        }
+        return RainfallData.getStation();
+    }
+
+    @Benchmark
+    public int readStream() {
+        final int[] rows = new int[1];
+        RecordHandler handler = new RecordHandler() {
+            public void record(int year, int month, float[] days) {
+                rows[0]++;
+            }
+        };
+        for (String file : files) {
+            reader.readRainfallData(file, handler);
+        }
+        return rows[0];
+    }
+
+    @Benchmark
+    public int readStore(Loader loader) {
+        int days = 0;
+        for (String file : files) {
+            days += loader.loader.readStore(file).size();
+        }
+        return days;
+    }
+
+}
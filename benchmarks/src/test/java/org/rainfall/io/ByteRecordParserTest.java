@@ -0,0 +1,194 @@
+package org.rainfall.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the readings {@link ByteRecordParser} reads from bytes against
+ * {@link Float#parseFloat(String)} of the same text, which the text reader uses,
+ * and which lines it rejects, with LF and CRLF line endings.
+ *
+ * @author Kieran
+ */
+public class ByteRecordParserTest {
+
+    @Test
+    public void everyHundredthMatchesParseFloat() {
+        StringBuilder text = new StringBuilder();
+        ArrayList<String> tokens = new ArrayList<String>();
+        for (int hundredths = 0; hundredths < 100000; hundredths++) {
+            String token = (hundredths / 100) + "." + (hundredths % 100 < 10 ? "0" : "") + (hundredths % 100);
+            tokens.add(token);
+            if (tokens.size() == LancasterReader.DAY_COLUMNS || hundredths == 99999) {
+                appendLine(text, 1990, 1, tokens);
+                tokens.clear();
+            }
+        }
+        assertMatchesParseFloat(text.toString());
+    }
+
+    @Test
+    public void randomReadingsMatchParseFloat() {
+        Random random = new Random(25);
+        StringBuilder text = new StringBuilder();
+        ArrayList<String> tokens = new ArrayList<String>();
+        for (int line = 0; line < 2000; line++) {
+            tokens.clear();
+            int columns = 1 + random.nextInt(LancasterReader.DAY_COLUMNS);
+            for (int c = 0; c < columns; c++) {
+                tokens.add(randomToken(random));
+            }
+            appendLine(text, 1950 + line / 12, 1 + line % 12, tokens);
+        }
+        assertMatchesParseFloat(text.toString());
+    }
+
+    @Test
+    public void malformedLinesAreRejected() {
+        String text = "1990     1   1.0   2.5\n"
+                + "1990     2   abc\n"          // a stray character
+                + "1990.5   3   1.0\n"          // a fraction in the year
+                + "1990    -4   1.0\n"          // a negative month
+                + "1990\n"                      // no month column
+                + "1990     5   1.0.1\n"        // a second '.'
+                + "1990     6   --2\n"          // a second '-'
+                + "1990     7   -\n"            // a sign without digits
+                + "\n"
+                + "   \n"
+                + "1990     8   -99.99   0.3";
+        Records records = parse(text);
+        assertEquals(2, records.count());
+        assertEquals(7, records.parser.getRejectedCount());
+
+        assertArrayEquals(new int[] { 1990, 1 }, records.dates.get(0));
+        assertEquals(1.0F, records.days.get(0)[0], 0);
+        assertEquals(2.5F, records.days.get(0)[1], 0);
+        assertArrayEquals(new int[] { 1990, 8 }, records.dates.get(1));
+        assertEquals(-99.99F, records.days.get(1)[0], 0);
+        assertEquals(0.3F, records.days.get(1)[1], 0);
+        // Columns the line does not have are missing
+        for (int c = 2; c < LancasterReader.DAY_COLUMNS; c++) {
+            assertEquals(LancasterReader.MISSING_VALUE, records.days.get(1)[c], 0);
+        }
+    }
+
+    @Test
+    public void crlfLinesMatchLf() {
+        Random random = new Random(26);
+        StringBuilder text = new StringBuilder();
+        ArrayList<String> tokens = new ArrayList<String>();
+        for (int line = 0; line < 300; line++) {
+            tokens.clear();
+            for (int c = 0; c < LancasterReader.DAY_COLUMNS; c++) {
+                tokens.add(randomToken(random));
+            }
+            appendLine(text, 1960 + line / 12, 1 + line % 12, tokens);
+            if (line % 50 == 0)
+                text.append("1960 x 1.0\n");
+        }
+        String lf = text.toString();
+        String crlf = lf.replace("\n", "\r\n");
+
+        Records expected = parse(lf), actual = parse(crlf);
+        assertEquals(300, expected.count());
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.parser.getRejectedCount(), actual.parser.getRejectedCount());
+        for (int i = 0; i < expected.count(); i++) {
+            assertArrayEquals(expected.dates.get(i), actual.dates.get(i));
+            assertArrayEquals("line " + i, expected.days.get(i), actual.days.get(i), 0);
+        }
+
+        // A final CRLF line without its new line
+        Records last = parse("1990     1   1.5\r\n1990     2   2.5\r");
+        assertEquals(2, last.count());
+        assertEquals(0, last.parser.getRejectedCount());
+        assertEquals(2.5F, last.days.get(1)[0], 0);
+    }
+
+    /**
+     * Parses the text and checks every reading against Float.parseFloat of its column
+     */
+    private static void assertMatchesParseFloat(String text) {
+        Records records = parse(text);
+        String[] lines = text.split("\n");
+        assertEquals(lines.length, records.count());
+        assertEquals(0, records.parser.getRejectedCount());
+        for (int i = 0; i < lines.length; i++) {
+            String[] columns = lines[i].trim().split(" +");
+            assertArrayEquals(new int[] { Integer.parseInt(columns[0]), Integer.parseInt(columns[1]) }, records.dates.get(i));
+            float[] days = records.days.get(i);
+            for (int c = 0; c < LancasterReader.DAY_COLUMNS; c++) {
+                float expected = c + 2 < columns.length ? Float.parseFloat(columns[c + 2]) : LancasterReader.MISSING_VALUE;
+                assertEquals(columns.length > c + 2 ? columns[c + 2] : "missing",
+                        Float.floatToIntBits(expected), Float.floatToIntBits(days[c]));
+            }
+        }
+    }
+
+    /**
+     * A reading as written in the data files, or now and then with more or fewer
+     * decimal places, a sign or no leading zero
+     */
+    private static String randomToken(Random random) {
+        int kind = random.nextInt(20);
+        if (kind == 0)
+            return "-99.99";
+        if (kind == 1)
+            return String.valueOf(random.nextInt(1000));
+        if (kind == 2)
+            return "." + random.nextInt(10);
+        if (kind == 3)
+            return "-" + random.nextInt(100) + "." + random.nextInt(100);
+        if (kind == 4) {
+            StringBuilder sb = new StringBuilder().append(random.nextInt(1000)).append('.');
+            for (int d = 1 + random.nextInt(8); d > 0; d--) {
+                sb.append(random.nextInt(10));
+            }
+            return sb.toString();
+        }
+        return random.nextInt(500) + "." + random.nextInt(10);
+    }
+
+    private static void appendLine(StringBuilder text, int year, int month, ArrayList<String> tokens) {
+        text.append(year).append("     ").append(month);
+        for (String token : tokens) {
+            text.append("   ").append(token);
+        }
+        text.append('\n');
+    }
+
+    private static Records parse(String text) {
+        byte[] bytes = text.getBytes();
+        Records records = new Records();
+        records.parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length, records);
+        return records;
+    }
+
+    /**
+     * Keeps a copy of every month the parser hands over
+     */
+    private static class Records implements RecordHandler {
+
+        final ByteRecordParser parser = new ByteRecordParser();
+        final ArrayList<int[]> dates = new ArrayList<int[]>();
+        final ArrayList<float[]> days = new ArrayList<float[]>();
+
+        public void record(int year, int month, float[] days) {
+            dates.add(new int[] { year, month });
+            this.days.add(Arrays.copyOf(days, days.length));
+        }
+
+        int count() {
+            assertEquals(dates.size(), parser.getRecordCount());
+            return dates.size();
+        }
+
+    }
+
+}
@@ -0,0 +1,63 @@
+package org.rainfall.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+import org.rainfall.store.DayStore;
+
+/**
+ * Checks that a query about a period the station holds no readings for is answered
+ * with an error rather than an empty answer, and that such errors are not cached.
+ *
+ * @author Kieran
+ */
+public class QueryEngineTest {
+
+    private static final String NAME = "query-test";
+
+    @Before
+    public void setUp() {
+        float[] days = new float[31];
+        for (int d = 0; d < days.length; d++) {
+            days[d] = d < 30 ? 2.5F : DayStore.MISSING_VALUE;
+        }
+        StationDataset.Update update = new StationDataset.Update();
+        update.storeMonth(1985, 4, days);
+        StationRegistry.register(new StationDataset(NAME).apply(update));
+    }
+
+    @After
+    public void tearDown() {
+        StationRegistry.remove(NAME);
+    }
+
+    @Test
+    public void loadedMonthIsAnswered() {
+        QueryEngine engine = new QueryEngine(new QueryCache());
+        QueryResult result = engine.execute(Query.parse("total days 1985 4").forStation(NAME));
+        assertFalse(result.isError());
+        assertTrue(result.isSeries());
+        assertEquals(30, result.getSeries().size());
+        assertEquals(2.5F, result.getSeries().get(0), 0);
+    }
+
+    @Test
+    public void unloadedMonthIsAnError() {
+        QueryCache cache = new QueryCache();
+        QueryEngine engine = new QueryEngine(cache);
+        Query query = Query.parse("total days 1985 5").forStation(NAME);
+
+        QueryResult result = engine.execute(query);
+        assertTrue(result.isError());
+        assertFalse(result.isSeries());
+        assertEquals(0, cache.size());
+        assertTrue(ResultWriter.toJson(result).contains("error"));
+    }
+
+}
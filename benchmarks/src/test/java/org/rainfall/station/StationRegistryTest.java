@@ -0,0 +1,133 @@
+package org.rainfall.station;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.rainfall.store.DayStore;
+import org.rainfall.store.RandomStores;
+import org.rainfall.util.Date;
+
+/**
+ * Checks that the compare-and-swap publishing of {@link StationRegistry} never loses
+ * an update: writers racing to update the same station each retry on the version
+ * the other published, so every month any of them stored is in the final version.
+ *
+ * @author Kieran
+ */
+public class StationRegistryTest {
+
+    private static final String NAME = "registry-test";
+
+    @After
+    public void tearDown() {
+        StationRegistry.remove(NAME);
+    }
+
+    @Test
+    public void staleVersionIsNotPublished() {
+        StationDataset first = StationRegistry.register(new StationDataset(NAME));
+        StationDataset second = StationRegistry.update(NAME, monthUpdate(2000, 1, 1.5F));
+        assertNotNull(second);
+
+        // A version built from the one which has since been replaced must be rejected
+        assertFalse(StationRegistry.replace(first, first.apply(monthUpdate(2000, 2, 2.5F))));
+        assertSame(second, StationRegistry.get(NAME));
+
+        StationDataset third = second.apply(monthUpdate(2000, 2, 2.5F));
+        assertTrue(StationRegistry.replace(second, third));
+        assertSame(third, StationRegistry.get(NAME));
+        assertEquals(31 * 1.5F + 29 * 2.5F, third.getTotalYearlyRainfall(2000), 0.001);
+    }
+
+    @Test
+    public void updateOfUnknownStationReturnsNull() {
+        assertNull(StationRegistry.update(NAME, monthUpdate(2000, 1, 1F)));
+        assertNull(StationRegistry.get(NAME));
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws InterruptedException {
+        final int writers = 8, yearsEach = 2, firstYear = 1960;
+        final DayStore source = RandomStores.create(5, firstYear, writers * yearsEach, 0.05);
+        StationRegistry.register(new StationDataset(NAME));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        ArrayList<Thread> threads = new ArrayList<Thread>();
+        for (int w = writers - 1; w >= 0; w--) {
+            // Later years are started first so some updates prepend months to the store
+            final int from = firstYear + w * yearsEach;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ie) {
+                        return;
+                    }
+                    for (int year = from; year < from + yearsEach; year++) {
+                        for (int month = 1; month <= 12; month++) {
+                            if (!source.hasMonth(year, month))
+                                continue;
+                            StationDataset.Update update = new StationDataset.Update();
+                            update.storeMonth(year, month, RandomStores.monthOf(source, year, month));
+                            if (StationRegistry.update(NAME, update) == null)
+                                failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+
+        StationDataset station = StationRegistry.get(NAME);
+        DayStore store = station.getStore();
+        assertEquals(source.getFirstDayNumber(), store.getFirstDayNumber());
+        assertEquals(source.size(), store.size());
+        for (int i = 0; i < source.size(); i++) {
+            assertEquals("day " + i, source.get(i), store.get(i), 0);
+        }
+        for (int year = firstYear; year < firstYear + writers * yearsEach; year++) {
+            for (int month = 1; month <= 12; month++) {
+                assertEquals(source.hasMonth(year, month), store.hasMonth(year, month));
+            }
+            // The indexes of the final version were built across many retried updates
+            assertEquals("total of " + year, scanTotal(source, year), station.getTotalYearlyRainfall(year), 0.01);
+        }
+    }
+
+    private static StationDataset.Update monthUpdate(int year, int month, float reading) {
+        float[] days = new float[31];
+        for (int d = 0; d < days.length; d++) {
+            days[d] = d < Date.getDaysInMonth(year, month) ? reading : DayStore.MISSING_VALUE;
+        }
+        StationDataset.Update update = new StationDataset.Update();
+        update.storeMonth(year, month, days);
+        return update;
+    }
+
+    private static double scanTotal(DayStore store, int year) {
+        double total = 0;
+        int from = Math.max(store.indexOf(year, 1, 1), 0), to = Math.min(store.indexOf(year, 12, 31) + 1, store.size());
+        for (int i = from; i < to; i++) {
+            if (store.get(i) != DayStore.MISSING_VALUE)
+                total += store.get(i);
+        }
+        return total;
+    }
+
+}
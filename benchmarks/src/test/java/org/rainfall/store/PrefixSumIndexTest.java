@@ -0,0 +1,127 @@
+package org.rainfall.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the range totals and wettest windows of {@link PrefixSumIndex} against
+ * sums over every day of the range and every window in it, the way they were
+ * found before the index.
+ *
+ * @author Kieran
+ */
+public class PrefixSumIndexTest {
+
+    private static final int[] LENGTHS = { 1, 2, 3, 7, 30 };
+
+    @Test
+    public void totalsMatchScan() {
+        DayStore store = RandomStores.create(6, 1950, 40, 0.05);
+        PrefixSumIndex index = new PrefixSumIndex(store);
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            int from = random.nextInt(store.size() + 10) - 5;
+            int to = from + random.nextInt(store.size());
+            double total = 0;
+            int count = 0;
+            for (int d = Math.max(from, 0); d < Math.min(to, store.size()); d++) {
+                if (store.get(d) != DayStore.MISSING_VALUE) {
+                    total += store.get(d);
+                    count++;
+                }
+            }
+            assertEquals(total, index.total(from, to), 0.01);
+            assertEquals(count, index.count(from, to));
+        }
+    }
+
+    @Test
+    public void windowsMatchScan() {
+        DayStore store = RandomStores.create(8, 1950, 40, 0.05);
+        PrefixSumIndex index = new PrefixSumIndex(store);
+        Random random = new Random(9);
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(store.size() + 10) - 5;
+            int to = from + random.nextInt(i % 10 == 0 ? store.size() : 400);
+            assertWindows(store, index, from, to);
+        }
+        assertWindows(store, index, 0, store.size());
+    }
+
+    @Test
+    public void windowsWithoutReadingsAreNotFound() {
+        DayStore store = new DayStore();
+        float[] days = new float[31];
+        Arrays.fill(days, DayStore.MISSING_VALUE);
+        days[20] = 0F;
+        store.putMonth(2000, 1, days);
+        PrefixSumIndex index = new PrefixSumIndex(store);
+
+        // Too short for the window, or no readings in it
+        assertArrayEquals(new int[] { -1, -1 }, index.wettestWindows(0, 5, new int[] { 6, 3 }));
+        // A dry day is a reading, and the earliest window holding it wins
+        assertArrayEquals(new int[] { 20, 18 }, index.wettestWindows(0, 31, new int[] { 1, 3 }));
+    }
+
+    @Test
+    public void updatedIndexMatchesScan() {
+        DayStore source = RandomStores.create(10, 1970, 10, 0.05);
+        DayStore store = new DayStore();
+        PrefixSumIndex index = new PrefixSumIndex(store);
+        Random random = new Random(11);
+        for (int year = 1970; year < 1980; year++) {
+            for (int month = 1; month <= 12; month++) {
+                if (!source.hasMonth(year, month))
+                    continue;
+                boolean first = store.isEmpty();
+                store.putMonth(year, month, RandomStores.monthOf(source, year, month));
+                if (first)
+                    index.rebuild(store);
+                else
+                    index.update(store, store.indexOf(year, month, 1));
+
+                int from = random.nextInt(store.size());
+                assertWindows(store, index, from, store.size());
+                assertEquals(store.size(), index.size());
+            }
+        }
+    }
+
+    private static void assertWindows(DayStore store, PrefixSumIndex index, int from, int to) {
+        int[] expected = new int[LENGTHS.length];
+        for (int k = 0; k < LENGTHS.length; k++) {
+            expected[k] = scanWettestWindow(store, from, to, LENGTHS[k]);
+        }
+        assertArrayEquals("windows of [" + from + ", " + to + ")", expected, index.wettestWindows(from, to, LENGTHS));
+    }
+
+    /**
+     * Adds up every window of a length in the range, keeping the earliest of windows
+     * whose totals only differ by rounding
+     */
+    private static int scanWettestWindow(DayStore store, int from, int to, int length) {
+        from = Math.max(from, 0); to = Math.min(to, store.size());
+        int best = -1;
+        double bestTotal = 0;
+        for (int start = from; start + length <= to; start++) {
+            double total = 0;
+            int readings = 0;
+            for (int d = start; d < start + length; d++) {
+                if (store.get(d) != DayStore.MISSING_VALUE) {
+                    total += store.get(d);
+                    readings++;
+                }
+            }
+            if (readings > 0 && (best < 0 || total > bestTotal + 1e-6)) {
+                best = start;
+                bestTotal = total;
+            }
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,168 @@
+package org.rainfall.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the percentiles estimated by {@link QuantileSketch} against the exact
+ * reading of the same rank in the sorted readings, and that merging sketches gives
+ * the same answers as one sketch of every reading; then checks the same for the
+ * range sketches {@link QuantileIndex} merges from its months and years.
+ *
+ * @author Kieran
+ */
+public class QuantileSketchTest {
+
+    @Test
+    public void percentilesAreWithinRelativeAccuracy() {
+        Random random = new Random(16);
+        float[] readings = readings(random, 20000);
+        QuantileSketch sketch = new QuantileSketch();
+        for (float reading : readings) {
+            sketch.add(reading);
+        }
+        assertEquals(readings.length, sketch.getCount());
+        assertPercentiles(readings, sketch, "all readings");
+    }
+
+    @Test
+    public void mergedSketchMatchesSingleSketch() {
+        Random random = new Random(17);
+        float[] readings = readings(random, 10000);
+        QuantileSketch single = new QuantileSketch();
+        for (float reading : readings) {
+            single.add(reading);
+        }
+
+        // Sketch uneven runs of the readings, then merge them out of order
+        ArrayList<QuantileSketch> parts = new ArrayList<QuantileSketch>();
+        for (int i = 0; i < readings.length; ) {
+            QuantileSketch part = new QuantileSketch();
+            int end = Math.min(readings.length, i + 1 + random.nextInt(600));
+            for (; i < end; i++) {
+                part.add(readings[i]);
+            }
+            parts.add(part);
+        }
+        parts.add(new QuantileSketch());
+        Collections.shuffle(parts, random);
+        QuantileSketch merged = new QuantileSketch();
+        merged.merge(null);
+        for (QuantileSketch part : parts) {
+            merged.merge(part);
+        }
+
+        assertEquals(single.getCount(), merged.getCount());
+        for (float p = 0; p <= 100; p += 0.5F) {
+            assertEquals("p" + p, single.percentile(p), merged.percentile(p), 0);
+        }
+        assertPercentiles(readings, merged, "merged readings");
+    }
+
+    @Test
+    public void emptySketchHasNoPercentiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(DayStore.MISSING_VALUE);
+        assertEquals(0, sketch.getCount());
+        assertEquals(DayStore.MISSING_VALUE, sketch.percentile(50), 0);
+
+        sketch.add(0F);
+        sketch.add(0F);
+        sketch.add(12.5F);
+        assertEquals(0F, sketch.percentile(50), 0);
+        assertEquals(12.5F, sketch.percentile(100), 12.5F * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void indexRangesMatchSortedScan() {
+        DayStore store = RandomStores.create(18, 1950, 40, 0.05);
+        QuantileIndex index = new QuantileIndex(store);
+        Random random = new Random(19);
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(store.size() + 10) - 5;
+            int to = from + random.nextInt(i % 5 == 0 ? store.size() : 800);
+            ArrayList<Float> values = new ArrayList<Float>();
+            for (int d = Math.max(from, 0); d < Math.min(to, store.size()); d++) {
+                if (store.get(d) != DayStore.MISSING_VALUE) values.add(store.get(d));
+            }
+            float[] readings = new float[values.size()];
+            for (int v = 0; v < readings.length; v++) {
+                readings[v] = values.get(v);
+            }
+            QuantileSketch sketch = index.sketch(from, to);
+            assertEquals(readings.length, sketch.getCount());
+            assertPercentiles(readings, sketch, "[" + from + ", " + to + ")");
+        }
+    }
+
+    @Test
+    public void updatedIndexMatchesRebuild() {
+        DayStore source = RandomStores.create(20, 1970, 10, 0.05);
+        DayStore store = new DayStore();
+        QuantileIndex index = new QuantileIndex(store);
+        Random random = new Random(21);
+        for (int year = 1970; year < 1980; year++) {
+            for (int month = 1; month <= 12; month++) {
+                if (!source.hasMonth(year, month))
+                    continue;
+                store.putMonth(year, month, RandomStores.monthOf(source, year, month));
+                index.update(store, store.indexOf(year, month, 1));
+
+                QuantileIndex rebuilt = new QuantileIndex(store);
+                int from = random.nextInt(store.size()), to = store.size();
+                for (float p = 0; p <= 100; p += 5) {
+                    assertEquals(rebuilt.sketch(from, to).percentile(p), index.sketch(from, to).percentile(p), 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks every half percentile against the reading of rank floor(p / 100 * (n - 1))
+     */
+    private static void assertPercentiles(float[] readings, QuantileSketch sketch, String what) {
+        float[] sorted = readings.clone();
+        Arrays.sort(sorted);
+        for (float p = 0; p <= 100; p += 0.5F) {
+            float estimate = sketch.percentile(p);
+            if (sorted.length == 0) {
+                assertEquals(what + " p" + p, DayStore.MISSING_VALUE, estimate, 0);
+                continue;
+            }
+            float exact = sorted[(int)Math.floor(p / 100.0 * (sorted.length - 1))];
+            if (exact == 0) {
+                assertEquals(what + " p" + p, 0F, estimate, 0);
+            }
+            else {
+                double error = Math.abs(estimate - exact) / exact;
+                assertTrue(what + " p" + p + ": " + estimate + " for " + exact,
+                        error <= QuantileSketch.RELATIVE_ACCURACY + 1e-6);
+            }
+        }
+    }
+
+    /**
+     * Random daily readings: dry days, the usual one decimal place readings and the
+     * odd very small or very large one
+     */
+    private static float[] readings(Random random, int count) {
+        float[] readings = new float[count];
+        for (int i = 0; i < count; i++) {
+            int kind = random.nextInt(100);
+            if (kind < 40)
+                readings[i] = 0F;
+            else if (kind < 98)
+                readings[i] = Math.round(-Math.log(1 - random.nextDouble()) * 40) / 10F;
+            else
+                readings[i] = (float)Math.exp(random.nextDouble() * 12 - 6);
+        }
+        return readings;
+    }
+
+}
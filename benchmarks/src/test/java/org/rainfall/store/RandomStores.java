@@ -0,0 +1,78 @@
+package org.rainfall.store;
+
+import java.util.Random;
+import org.rainfall.io.LancasterReader;
+import org.rainfall.util.Date;
+
+/**
+ * Builds day stores of random but realistic readings for the index tests: about
+ * half the days dry, readings to one decimal place (so equal readings, and with
+ * them ties, are common), some days missing and the odd month never loaded.
+ *
+ * @author Kieran
+ */
+public class RandomStores {
+
+    private RandomStores() { }
+
+    /**
+     * Creates a store of consecutive years of random months
+     * @param seed Seed for the readings
+     * @param firstYear First year of the store
+     * @param years Number of years
+     * @param missing Chance of a day having no reading
+     * @return DayStore - the new store
+     */
+    public static DayStore create(long seed, int firstYear, int years, double missing) {
+        Random random = new Random(seed);
+        DayStore store = new DayStore();
+        for (int year = firstYear; year < firstYear + years; year++) {
+            for (int month = 1; month <= 12; month++) {
+                // Leave a gap now and then, but always load the first and last months
+                boolean edge = (year == firstYear && month == 1) || (year == firstYear + years - 1 && month == 12);
+                if (!edge && random.nextDouble() < 0.03)
+                    continue;
+                store.putMonth(year, month, month(random, year, month, missing));
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Creates one month of random readings
+     * @param random Source of the readings
+     * @param year Year of the month
+     * @param month Month number
+     * @param missing Chance of a day having no reading
+     * @return float[] - 31 readings, missing after the last day of the month
+     */
+    public static float[] month(Random random, int year, int month, double missing) {
+        float[] days = new float[LancasterReader.DAY_COLUMNS];
+        for (int d = 0; d < days.length; d++) {
+            if (d >= Date.getDaysInMonth(year, month) || random.nextDouble() < missing)
+                days[d] = DayStore.MISSING_VALUE;
+            else if (random.nextBoolean())
+                days[d] = 0F;
+            else
+                days[d] = Math.round(-Math.log(1 - random.nextDouble()) * 40) / 10F;
+        }
+        return days;
+    }
+
+    /**
+     * Reads a loaded month back out of a store, e.g. to load it into another store
+     * @param store Store holding the month
+     * @param year Year of the month
+     * @param month Month number
+     * @return float[] - 31 readings, missing after the last day of the month
+     */
+    public static float[] monthOf(DayStore store, int year, int month) {
+        float[] days = new float[LancasterReader.DAY_COLUMNS];
+        int start = store.indexOf(year, month, 1);
+        for (int d = 0; d < days.length; d++) {
+            days[d] = d < Date.getDaysInMonth(year, month) ? store.get(start + d) : DayStore.MISSING_VALUE;
+        }
+        return days;
+    }
+
+}
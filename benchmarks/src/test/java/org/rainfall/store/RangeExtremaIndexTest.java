@@ -0,0 +1,113 @@
+package org.rainfall.store;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.rainfall.util.Date;
+
+/**
+ * Checks the wettest and driest days found by {@link RangeExtremaIndex} against a
+ * scan of every day of the range, the way they were found before the index, both
+ * for an index built in one go and for one updated a month at a time.
+ *
+ * @author Kieran
+ */
+public class RangeExtremaIndexTest {
+
+    @Test
+    public void builtIndexMatchesScan() {
+        DayStore store = RandomStores.create(1, 1950, 40, 0.05);
+        RangeExtremaIndex index = new RangeExtremaIndex(store);
+        Random random = new Random(2);
+        for (int i = 0; i < 5000; i++) {
+            int from = random.nextInt(store.size() + 10) - 5;
+            int to = from + random.nextInt(i % 10 == 0 ? store.size() : 400);
+            assertRange(store, index, from, to);
+        }
+        assertRange(store, index, 0, store.size());
+    }
+
+    @Test
+    public void emptyAndMissingRangesFindNothing() {
+        DayStore store = new DayStore();
+        float[] days = new float[31];
+        Arrays.fill(days, DayStore.MISSING_VALUE);
+        days[10] = 4.2F;
+        store.putMonth(2000, 1, days);
+        RangeExtremaIndex index = new RangeExtremaIndex(store);
+
+        assertEquals(-1, index.wettest(0, 10));
+        assertEquals(-1, index.driest(0, 10));
+        assertEquals(-1, index.wettest(5, 5));
+        assertEquals(10, index.wettest(0, 31));
+        assertEquals(10, index.driest(0, 31));
+        assertEquals(-1, new RangeExtremaIndex(new DayStore()).wettest(0, 100));
+    }
+
+    @Test
+    public void incrementalUpdatesMatchScan() {
+        DayStore source = RandomStores.create(3, 1960, 12, 0.05);
+        Random random = new Random(4);
+
+        DayStore store = new DayStore();
+        store.putMonth(1960, 1, RandomStores.monthOf(source, 1960, 1));
+        RangeExtremaIndex index = new RangeExtremaIndex(store);
+
+        for (int year = 1960; year < 1972; year++) {
+            for (int month = year == 1960 ? 2 : 1; month <= 12; month++) {
+                if (!source.hasMonth(year, month))
+                    continue;
+
+                // Each step builds the next version from copies, as StationDataset does,
+                // sometimes also reloading an earlier month with different readings
+                DayStore nextStore = store.copy();
+                RangeExtremaIndex nextIndex = index.copy();
+                nextStore.putMonth(year, month, RandomStores.monthOf(source, year, month));
+                int from = nextStore.indexOf(year, month, 1);
+                if (random.nextInt(4) == 0) {
+                    int[] earlier = Date.getDateOfDayNumber(store.getFirstDayNumber() + random.nextInt(store.size()));
+                    nextStore.putMonth(earlier[0], earlier[1], RandomStores.month(random, earlier[0], earlier[1], 0.05));
+                    from = nextStore.indexOf(earlier[0], earlier[1], 1);
+                }
+                nextIndex.update(nextStore, from);
+
+                for (int i = 0; i < 20; i++) {
+                    int a = random.nextInt(nextStore.size() + 1), b = random.nextInt(nextStore.size() + 1);
+                    assertRange(nextStore, nextIndex, Math.min(a, b), Math.max(a, b));
+                }
+                assertRange(nextStore, nextIndex, 0, nextStore.size());
+                // The version the copy was made from still answers for its own days
+                assertRange(store, index, 0, store.size());
+
+                store = nextStore;
+                index = nextIndex;
+            }
+        }
+        assertEquals(source.size(), index.size());
+    }
+
+    private static void assertRange(DayStore store, RangeExtremaIndex index, int from, int to) {
+        String range = "[" + from + ", " + to + ")";
+        assertEquals("wettest of " + range, scan(store, from, to, true), index.wettest(from, to));
+        assertEquals("driest of " + range, scan(store, from, to, false), index.driest(from, to));
+    }
+
+    /**
+     * Finds the wettest or driest day by looking at every day, keeping the earliest
+     * of equal readings
+     */
+    private static int scan(DayStore store, int from, int to, boolean wettest) {
+        int best = -1;
+        for (int i = Math.max(from, 0); i < Math.min(to, store.size()); i++) {
+            float value = store.get(i);
+            if (value == DayStore.MISSING_VALUE)
+                continue;
+            if (best < 0 || (wettest ? value > store.get(best) : value < store.get(best)))
+                best = i;
+        }
+        return best;
+    }
+
+}
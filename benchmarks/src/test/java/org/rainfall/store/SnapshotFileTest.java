@@ -0,0 +1,124 @@
+package org.rainfall.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that a store read back from a {@link SnapshotFile} holds every day and
+ * loaded month of the store which was written, and that a snapshot is only fresh
+ * while its data file has the length and modification time recorded in it.
+ *
+ * @author Kieran
+ */
+public class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readStoreMatchesWrittenStore() throws IOException {
+        DayStore store = RandomStores.create(22, 1950, 30, 0.05);
+        File snapshot = folder.newFile("data.txt" + SnapshotFile.EXTENSION);
+        assertTrue(SnapshotFile.write(store, snapshot, 1234, 5678));
+
+        DayStore read = SnapshotFile.read(snapshot);
+        assertNotNull(read);
+        assertEquals(store.getFirstDayNumber(), read.getFirstDayNumber());
+        assertEquals(store.getFirstMonth(), read.getFirstMonth());
+        assertEquals(store.size(), read.size());
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals("day " + i, Float.floatToIntBits(store.get(i)), Float.floatToIntBits(read.get(i)));
+        }
+        for (int year = 1949; year <= 1981; year++) {
+            for (int month = 1; month <= 12; month++) {
+                assertEquals(year + "/" + month, store.hasMonth(year, month), read.hasMonth(year, month));
+            }
+        }
+    }
+
+    @Test
+    public void emptyStoreReadsBackEmpty() throws IOException {
+        File snapshot = folder.newFile("empty.txt" + SnapshotFile.EXTENSION);
+        assertTrue(SnapshotFile.write(new DayStore(), snapshot, 0, 0));
+        DayStore read = SnapshotFile.read(snapshot);
+        assertNotNull(read);
+        assertTrue(read.isEmpty());
+        assertEquals(0, read.size());
+    }
+
+    @Test
+    public void changedDataFileIsStale() throws IOException {
+        File dataFile = folder.newFile("station.txt");
+        write(dataFile, "1990     1   1.0   2.0\n");
+        assertTrue(dataFile.setLastModified(1000000000000L));
+        File snapshot = SnapshotFile.snapshotFor(dataFile);
+        DayStore store = RandomStores.create(23, 1990, 1, 0);
+        long length = dataFile.length(), modified = dataFile.lastModified();
+
+        assertFalse("no snapshot yet", SnapshotFile.isFresh(dataFile));
+        assertTrue(SnapshotFile.write(store, snapshot, length, modified));
+        assertTrue(SnapshotFile.isFresh(dataFile));
+
+        // Recorded from a data file of another length or modification time
+        assertTrue(SnapshotFile.write(store, snapshot, length + 1, modified));
+        assertFalse(SnapshotFile.isFresh(dataFile));
+        assertTrue(SnapshotFile.write(store, snapshot, length, modified - 1000));
+        assertFalse(SnapshotFile.isFresh(dataFile));
+
+        // The data file changing after the snapshot was made, even to an older time
+        assertTrue(SnapshotFile.write(store, snapshot, length, modified));
+        assertTrue(dataFile.setLastModified(modified - 60000));
+        assertFalse(SnapshotFile.isFresh(dataFile));
+        assertTrue(dataFile.setLastModified(modified));
+        assertTrue(SnapshotFile.isFresh(dataFile));
+        write(dataFile, "1990     1   1.0   2.0\n1990     2   3.0   4.0\n");
+        assertTrue(dataFile.setLastModified(modified));
+        assertFalse(SnapshotFile.isFresh(dataFile));
+    }
+
+    @Test
+    public void damagedSnapshotIsNotRead() throws IOException {
+        DayStore store = RandomStores.create(24, 1960, 5, 0.05);
+        File snapshot = folder.newFile("damaged.txt" + SnapshotFile.EXTENSION);
+        assertTrue(SnapshotFile.write(store, snapshot, 1, 1));
+
+        RandomAccessFile raf = new RandomAccessFile(snapshot, "rw");
+        try {
+            raf.setLength(raf.length() - 4);
+        } finally {
+            raf.close();
+        }
+        assertNull(SnapshotFile.read(snapshot));
+
+        assertTrue(SnapshotFile.write(store, snapshot, 1, 1));
+        raf = new RandomAccessFile(snapshot, "rw");
+        try {
+            raf.seek(4);
+            raf.write(99);
+        } finally {
+            raf.close();
+        }
+        assertNull(SnapshotFile.read(snapshot));
+    }
+
+    private static void write(File file, String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.rainfall.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the longest spells found by {@link SpellIndex} against runs found by
+ * walking every day of the range, both for an index built in one go and for one
+ * updated a month at a time.
+ *
+ * @author Kieran
+ */
+public class SpellIndexTest {
+
+    private static final float[] THRESHOLDS = { 1F, 10F };
+
+    @Test
+    public void topSpellsMatchScan() {
+        DayStore store = RandomStores.create(12, 1950, 40, 0.02);
+        Random random = new Random(13);
+        for (float threshold : THRESHOLDS) {
+            SpellIndex index = new SpellIndex(store, threshold);
+            for (int i = 0; i < 1000; i++) {
+                int from = random.nextInt(store.size() + 10) - 5;
+                int to = from + random.nextInt(i % 10 == 0 ? store.size() : 400);
+                int max = 1 + random.nextInt(10);
+                assertSpells(store, index, from, to, SpellIndex.WET, max);
+                assertSpells(store, index, from, to, SpellIndex.DRY, max);
+            }
+        }
+    }
+
+    @Test
+    public void missingDayEndsSpell() {
+        DayStore store = new DayStore();
+        float[] days = new float[31];
+        for (int d = 0; d < days.length; d++) {
+            days[d] = d < 10 ? 5F : 0F;
+        }
+        days[4] = DayStore.MISSING_VALUE;
+        store.putMonth(2000, 1, days);
+        SpellIndex index = new SpellIndex(store, 1F);
+
+        // Days 0-3 and 5-9 are wet, 10-30 dry; a spell crossing the range's end is cut
+        assertArrayEquals(new int[] { 5, 5, 0, 4 }, index.longest(0, 31, SpellIndex.WET, 5));
+        assertArrayEquals(new int[] { 10, 21 }, index.longest(0, 31, SpellIndex.DRY, 5));
+        assertArrayEquals(new int[] { 10, 5 }, index.longest(2, 15, SpellIndex.DRY, 5));
+        assertArrayEquals(new int[0], index.longest(0, 31, SpellIndex.WET, 0));
+    }
+
+    @Test
+    public void updatedIndexMatchesRebuild() {
+        DayStore source = RandomStores.create(14, 1970, 10, 0.02);
+        DayStore store = new DayStore();
+        SpellIndex index = new SpellIndex(store, 1F);
+        Random random = new Random(15);
+        for (int year = 1970; year < 1980; year++) {
+            for (int month = 1; month <= 12; month++) {
+                if (!source.hasMonth(year, month))
+                    continue;
+                // Mostly dry months so spells often carry on from one month into the next
+                float[] days = RandomStores.monthOf(source, year, month);
+                for (int d = 0; d < days.length; d++) {
+                    if (days[d] != DayStore.MISSING_VALUE && random.nextInt(4) != 0) days[d] = 0F;
+                }
+                boolean first = store.isEmpty();
+                store.putMonth(year, month, days);
+                if (first)
+                    index.rebuild(store);
+                else
+                    index.update(store, store.indexOf(year, month, 1));
+
+                SpellIndex rebuilt = new SpellIndex(store, 1F);
+                assertEquals(rebuilt.size(), index.size());
+                for (int kind = SpellIndex.DRY; kind <= SpellIndex.WET; kind++) {
+                    assertArrayEquals(rebuilt.longest(0, store.size(), kind, 10000),
+                            index.longest(0, store.size(), kind, 10000));
+                }
+                int from = random.nextInt(store.size());
+                assertSpells(store, index, from, store.size(), SpellIndex.DRY, 5);
+            }
+        }
+    }
+
+    private static void assertSpells(DayStore store, SpellIndex index, int from, int to, int kind, int max) {
+        String range = (kind == SpellIndex.WET ? "wet" : "dry") + " spells of [" + from + ", " + to + ")";
+        assertArrayEquals(range, scanLongest(store, from, to, kind, max, index.getThreshold()),
+                index.longest(from, to, kind, max));
+    }
+
+    /**
+     * Walks every day of the range collecting runs of a kind, then sorts them longest
+     * first and earliest first
+     * @return int[] - pairs of the offset of the first day of a spell and its length
+     */
+    private static int[] scanLongest(DayStore store, int from, int to, int kind, int max, float threshold) {
+        from = Math.max(from, 0); to = Math.min(to, store.size());
+        ArrayList<int[]> runs = new ArrayList<int[]>();
+        int runStart = -1, runKind = SpellIndex.DRY;
+        for (int i = from; i <= to; i++) {
+            float value = i < to ? store.get(i) : DayStore.MISSING_VALUE;
+            int dayKind = value >= threshold ? SpellIndex.WET : SpellIndex.DRY;
+            if (runStart >= 0 && (value == DayStore.MISSING_VALUE || dayKind != runKind)) {
+                if (runKind == kind)
+                    runs.add(new int[] { runStart, i - runStart });
+                runStart = -1;
+            }
+            if (runStart < 0 && value != DayStore.MISSING_VALUE) {
+                runStart = i;
+                runKind = dayKind;
+            }
+        }
+        Collections.sort(runs, new Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {
+                return a[1] != b[1] ? b[1] - a[1] : a[0] - b[0];
+            }
+        });
+
+        int[] spells = new int[Math.min(max, runs.size()) * 2];
+        for (int i = 0; i < spells.length / 2; i++) {
+            spells[2 * i] = runs.get(i)[0];
+            spells[2 * i + 1] = runs.get(i)[1];
+        }
+        return spells;
+    }
+
+}
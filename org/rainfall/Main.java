@@ -1,11 +1,15 @@
 package org.rainfall;
 
 import org.rainfall.gui.Interface;
+import org.rainfall.io.DataGenerator;
+import org.rainfall.metrics.Metrics;
+import org.rainfall.query.BatchQueryRunner;
+import org.rainfall.report.ChartExporter;
 
 /**
  *
  * @author Kieran
- * @version 0.01
+ * @version 0.02
  * File: Main.java.
  * Created: 15:24:15
  */
@@ -13,9 +17,34 @@ public class Main {
 
     /**
      * Main Method
-     * @param args Array of strings (unused)
+     * @param args Array of strings, empty to open the interface or
+     *          "--batch" followed by the {@link BatchQueryRunner} arguments to
+     *          answer queries without a display, or "--generate" followed by
+     *          the {@link DataGenerator} arguments to write synthetic data files,
+     *          or "--export" followed by the {@link ChartExporter} arguments to
+     *          render charts to PNG files without a display
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            String[] batchArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, batchArgs, 0, batchArgs.length);
+            BatchQueryRunner.main(batchArgs);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--generate")) {
+            String[] generateArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, generateArgs, 0, generateArgs.length);
+            DataGenerator.main(generateArgs);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--export")) {
+            String[] exportArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, exportArgs, 0, exportArgs.length);
+            ChartExporter.main(exportArgs);
+            return;
+        }
+
+        Metrics.registerMBean();
         Interface i = new Interface();
         i.setVisible(true);
     }
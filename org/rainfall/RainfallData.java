@@ -2,19 +2,33 @@ package org.rainfall;
 
 import org.rainfall.util.Date;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.NoSuchElementException;
-import org.rainfall.lang.Output;
+import org.rainfall.metrics.LatencyHistogram;
+import org.rainfall.metrics.Metrics;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+import org.rainfall.store.DayStore;
+import org.rainfall.store.PrefixSumIndex;
+import org.rainfall.store.RangeExtremaIndex;
+import org.rainfall.store.RollupCube;
+import org.rainfall.store.SpellIndex;
+import org.rainfall.util.DayReading;
+import org.rainfall.util.Spell;
 
 /**
- * Stores the data set which is loaded in from a file reader. Data is parsed into a HashMap
- * based on Date objects (Year, Month) as the key and the an array of floats consisting
- * of the total rainfall per day of each month of a given year in the data set. <br /><br />
+ * Stores the data set which is loaded in from a file reader. Data is parsed into a
+ * columnar {@link DayStore} which holds the rainfall of every day of the data set in a
+ * single primitive array indexed by the day offset from the first loaded month. A
+ * {@link PrefixSumIndex} over the store answers the total of any range of days in
+ * constant time and a {@link RangeExtremaIndex} finds the wettest and driest day of
+ * any range in logarithmic time. Monthly, seasonal and yearly aggregates are read
+ * from a {@link RollupCube} which is computed once when the data is loaded. <br /><br />
  * Also provides a large amount of functionality which can be performed on the data set
  * such as searching for Wettest, Driest, Averages and Total rainfall values over a selection
- * of time periods such as Years, Months, Weeks and Days.
+ * of time periods such as Years, Months, Weeks and Days. <br /><br />
+ * The data and indexes belong to a {@link StationDataset}; these static methods
+ * operate on the default station of the {@link StationRegistry}. Each query is
+ * timed in a {@link Metrics} histogram named after its method.
  *
  * @author Kieran
  * @version 1.8
@@ -22,23 +36,67 @@ import org.rainfall.lang.Output;
  */
 public class RainfallData extends Date {
 
-    private static HashMap<Date, ArrayList<Float>> rainData = new HashMap<Date, ArrayList<Float>>();
+    /* Query timings */
+    private static final LatencyHistogram WETTEST_DAY_OF_MONTH = Metrics.query("getWettestDayOfMonth");
+    private static final LatencyHistogram WETTEST_DAY_OF_MULTIPLE_MONTHS = Metrics.query("getWettestDayOfMultipleMonths");
+    private static final LatencyHistogram WETTEST_DAY_OF_YEAR = Metrics.query("getWettestDayOfYear");
+    private static final LatencyHistogram WETTEST_DAY_PER_MONTH_OF_YEAR = Metrics.query("getWettestDayPerMonthOfYear");
+    private static final LatencyHistogram WETTEST_DAY_OF_MULTIPLE_YEARS = Metrics.query("getWettestDayOfMultipleYears");
+    private static final LatencyHistogram DRIEST_DAY_OF_MONTH = Metrics.query("getDriestDayOfMonth");
+    private static final LatencyHistogram DRIEST_DAY_OF_YEAR = Metrics.query("getDriestDayOfYear");
+    private static final LatencyHistogram TOTAL_DAILY_RAINFALL = Metrics.query("getTotalDailyRainfall");
+    private static final LatencyHistogram TOTAL_WEEKLY_RAINFALL_LIST = Metrics.query("getTotalWeeklyRainfallList");
+    private static final LatencyHistogram TOTAL_WEEKLY_RAINFALL = Metrics.query("getTotalWeeklyRainfall");
+    private static final LatencyHistogram AVERAGE_WEEKLY_RAINFALL = Metrics.query("getAverageWeeklyRainfall");
+    private static final LatencyHistogram MONTHLY_RAINFALL = Metrics.query("getMonthlyRainfall");
+    private static final LatencyHistogram TOTAL_MONTHLY_RAINFALL = Metrics.query("getTotalMonthlyRainfall");
+    private static final LatencyHistogram AVERAGE_MONTHLY_RAINFALL = Metrics.query("getAverageMonthlyRainfall");
+    private static final LatencyHistogram AVERAGE_MONTHLY_RAINFALL_OVER_TIME = Metrics.query("getAverageMonthlyRainfallOverTime");
+    private static final LatencyHistogram AVERAGE_YEARLY_RAINFALL_PER_MONTH = Metrics.query("getAverageYearlyRainfallPerMonth");
+    private static final LatencyHistogram TOTAL_YEARLY_RAINFALL_PER_MONTH = Metrics.query("getTotalYearlyRainfallPerMonth");
+    private static final LatencyHistogram TOTAL_YEARLY_RAINFALL_OVER_TIME = Metrics.query("getTotalYearlyRainfallOverTime");
+    private static final LatencyHistogram TOTAL_YEARLY_RAINFALL = Metrics.query("getTotalYearlyRainfall");
+    private static final LatencyHistogram AVERAGE_YEARLY_RAINFALL = Metrics.query("getAverageYearlyRainfall");
+    private static final LatencyHistogram AVERAGE_YEARLY_RAINFALL_OVER_TIME = Metrics.query("getAverageYearlyRainfallOverTime");
+    private static final LatencyHistogram TOTAL_SEASONAL_RAINFALL = Metrics.query("getTotalSeasonalRainfall");
+    private static final LatencyHistogram WETTEST_DAY_OF_SEASON = Metrics.query("getWettestDayOfSeason");
+    private static final LatencyHistogram MISSING_DAYS_OF_YEAR = Metrics.query("getMissingDaysOfYear");
+    private static final LatencyHistogram TOTAL_RAINFALL = Metrics.query("getTotalRainfall");
+    private static final LatencyHistogram AVERAGE_RAINFALL = Metrics.query("getAverageRainfall");
+    private static final LatencyHistogram RECORDED_DAYS = Metrics.query("getRecordedDays");
+    private static final LatencyHistogram DAYS_ABOVE = Metrics.query("getDaysAbove");
+    private static final LatencyHistogram WETTEST_DAY = Metrics.query("getWettestDay");
+    private static final LatencyHistogram DRIEST_DAY = Metrics.query("getDriestDay");
+    private static final LatencyHistogram WETTEST_PERIOD = Metrics.query("getWettestPeriod");
+    private static final LatencyHistogram WETTEST_PERIODS = Metrics.query("getWettestPeriods");
+    private static final LatencyHistogram WETTEST_PERIOD_OF_YEAR = Metrics.query("getWettestPeriodOfYear");
+    private static final LatencyHistogram WETTEST_PERIODS_OF_RECORD = Metrics.query("getWettestPeriodsOfRecord");
+    private static final LatencyHistogram LONGEST_SPELL = Metrics.query("getLongestSpell");
+    private static final LatencyHistogram LONGEST_SPELLS = Metrics.query("getLongestSpells");
+    private static final LatencyHistogram LONGEST_SPELL_OF_YEAR = Metrics.query("getLongestSpellOfYear");
+    private static final LatencyHistogram PERCENTILES = Metrics.query("getPercentiles");
+    private static final LatencyHistogram PERCENTILE_OF_YEAR = Metrics.query("getPercentileOfYear");
+    private static final LatencyHistogram PERCENTILE_OF_SEASON = Metrics.query("getPercentileOfSeason");
 
     /** Constructor */
     public RainfallData() {
         super();
     }
 
+    /**
+     * The station the static query methods operate on
+     * @return StationDataset - the default station of the registry
+     */
+    public static StationDataset getStation() {
+        return StationRegistry.getDefault();
+    }
+
     /**
      * List of the years collected from the inputted data file
      * @return ArrayList of years from the data file (we don't know how many items there will be)
      */
     public static HashSet<Integer> getYears() {
-        HashSet<Integer> years = new HashSet<Integer>();
-        for (Date key : rainData.keySet()) {
-            years.add(key.getYear());
-        }
-        return years;
+        return getStation().getYears();
     }
 
     /**
@@ -46,9 +104,7 @@ public class RainfallData extends Date {
      * <Year, Month> : [ Rainfall Data 1:31 days ]
      */
     public static void printRainfallData() {
-        for (Date key : rainData.keySet()) {
-            Output.print("<" + key.getYear() + ", " + key.getMonth() + "> : " + rainData.get(key));
-        }
+        getStation().printRainfallData();
     }
 
     /**
@@ -59,20 +115,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the wettest day of the specified month is returned.
      */
     public static float getWettestDayOfMonth(int year, int month) {
-        if (year <= 0 && (month <= 0 || month > 12)) {
-            Output.error("Please specify a year and month number");
-            return -99.99F;
-        }
-        else {
-            ArrayList<Float> rain = getMonthlyRainfall(year, month);
-            if (rain != null) {
-                try {
-                    return Collections.max(rain);
-                } catch (NoSuchElementException nse) { return 0; }
-            }
-            else
-                return 0;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getWettestDayOfMonth(year, month);
+        WETTEST_DAY_OF_MONTH.recordSince(start);
+        return result;
     }
 
     /**
@@ -83,32 +129,10 @@ public class RainfallData extends Date {
      * @return ArrayList of floats containing the wettest day over a number of months
      */
     public static ArrayList<Float> getWettestDayOfMultipleMonths(int year, int month, int duration) {
-        ArrayList<Float> data = new ArrayList<Float>();
-
-        // Go backwards (year - duration)
-        for (int k = duration; k > 0; k--) {
-            if ((month - k) < 1 && year-1 >= getOldestYear()) {
-                year--; month = 12;
-                data.add(getWettestDayOfMonth(year, month));
-            }
-            else {
-                data.add(getWettestDayOfMonth(year, month - k));
-            }
-        }
-        // Get year
-        data.add(getWettestDayOfMonth(year, month));
-        // Get year + duration
-        for (int k = 1; k <= duration; k++) {
-            if ((month + k) > 12 && (year+1 <= getMostRecentYear())) {
-                year++; month = 1;
-                data.add(getWettestDayOfMonth(year, month));
-            }
-            else {
-                data.add(getWettestDayOfMonth(year, month + k));
-            }
-        }
-
-        return data;
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getWettestDayOfMultipleMonths(year, month, duration);
+        WETTEST_DAY_OF_MULTIPLE_MONTHS.recordSince(start);
+        return result;
     }
 
     /**
@@ -118,29 +142,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the wettest day of the specified year is returned.
      */
     public static float getWettestDayOfYear(int year) {
-        if (year <= 0) {
-            Output.error("Please specify a year number");
-            return -99.99F;
-        }
-        else {
-            Date[] months = getDateObjectsForYear(year);
-            float yearMax = 0;
-
-            if (months[0] != null) {
-                for (int i = 0; i < months.length; i++) {
-                    int month = months[i].getMonth();
-                    ArrayList<Float> rainMonth = getMonthlyRainfall(year, month);
-
-                    float monthMax;
-                    
-                    try { monthMax = Collections.max(rainMonth); }
-                    catch (NoSuchElementException nsee) { monthMax = 0; }
-                    if (monthMax > yearMax)
-                        yearMax = monthMax;
-                }
-            }
-            return yearMax;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getWettestDayOfYear(year);
+        WETTEST_DAY_OF_YEAR.recordSince(start);
+        return result;
     }
 
     /**
@@ -149,15 +154,10 @@ public class RainfallData extends Date {
      * @return ArrayList of 12 floats one for each month of the given year consisting of the wettest day value
      */
     public static ArrayList<Float> getWettestDayPerMonthOfYear(int year) {
-        Date[] dateObject = getDateObjectsForYear(year);
-        ArrayList<Float> data = new ArrayList<Float>();
-
-        for (int i = 0; i < dateObject.length; i++) {
-            int month = dateObject[i].getMonth();
-            data.add(getWettestDayOfMonth(year, month));
-        }
-
-        return data;
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getWettestDayPerMonthOfYear(year);
+        WETTEST_DAY_PER_MONTH_OF_YEAR.recordSince(start);
+        return result;
     }
 
     /**
@@ -167,31 +167,10 @@ public class RainfallData extends Date {
      * @return ArrayList of floats consisting of the wettest day over multiple years
      */
     public static ArrayList<Float> getWettestDayOfMultipleYears(int year, int duration) {
-        if (year <= 0) {
-            Output.error("Please specify a year number");
-            return null;
-        }
-        else {
-            ArrayList<Float> data = new ArrayList<Float>();
-            Date[] months = null;
-            float yearMax = 0;
-            
-            // Go backwards (year - duration)
-            for (int k = duration; k > 0; k--) {
-                yearMax = getWettestDayOfYear(year - k);
-                data.add(yearMax);
-            }
-            // Get year
-            yearMax = getWettestDayOfYear(year);
-            data.add(yearMax);
-            // Get year + duration
-            for (int k = 1; k <= duration; k++) {
-                yearMax = getWettestDayOfYear(year + k);
-                data.add(yearMax);
-            }
-
-            return data;
-        }
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getWettestDayOfMultipleYears(year, duration);
+        WETTEST_DAY_OF_MULTIPLE_YEARS.recordSince(start);
+        return result;
     }
 
     /**
@@ -202,14 +181,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the driest day of the specified month is returned.
      */
     public static float getDriestDayOfMonth(int year, int month) {
-        if (year <= 0 && (month <= 0 || month > 12)) {
-            Output.error("Please specify a year and month number");
-            return -99.99F;
-        }
-        else {
-            ArrayList<Float> rain = getMonthlyRainfall(year, month);
-            return Collections.min(rain);
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getDriestDayOfMonth(year, month);
+        DRIEST_DAY_OF_MONTH.recordSince(start);
+        return result;
     }
 
     /**
@@ -219,24 +194,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the driest day of the specified year is returned.
      */
     public static float getDriestDayOfYear(int year) {
-        if (year <= 0) {
-            Output.error("Please specify a year number");
-            return -99.99F;
-        }
-        else {
-            Date[] months = getDateObjectsForYear(year);
-            float yearMin = 0;
-
-            for (int i = 0; i < months.length; i++) {
-                int month = months[i].getMonth();
-                ArrayList<Float> rainMonth = getMonthlyRainfall(year, month);
-
-                float monthMin = Collections.min(rainMonth);
-                if (monthMin > yearMin)
-                    yearMin = monthMin;
-            }
-            return yearMin;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getDriestDayOfYear(year);
+        DRIEST_DAY_OF_YEAR.recordSince(start);
+        return result;
     }
 
     /**
@@ -248,14 +209,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the rainfall on the specified day is returned.
      */
     public static float getTotalDailyRainfall(int year, int month, int day) {
-        if (year <= 0 && month <= 0 && day <= 0) {
-            Output.error("Please specify a year, month and day number");
-            return -99.99F;
-        }
-        else {
-            ArrayList<Float> rain = getMonthlyRainfall(year, month);
-            return rain.get(day - 1);  // change day by -1 because array starts at 0
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getTotalDailyRainfall(year, month, day);
+        TOTAL_DAILY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -266,43 +223,10 @@ public class RainfallData extends Date {
      * @return ArrayList of floats containing the rainfall for each day of that particular week.
      */
     public static ArrayList<Float> getTotalWeeklyRainfallList(int year, int month, int week) {
-        if (year <= 0 && month <= 0 && week <= 0) {
-            Output.error("Please specify a year, month and week number");
-            return null;
-        }
-        else if (week <= 0 || week > 5) {
-            Output.error("Invalid week number specified");
-            return null;
-        }
-        else {
-            ArrayList<Float> data = new ArrayList<Float>();
-            int counter = 0;
-            float totalWeeksInMonth = (float)getDaysInMonth(year, month) / 7;
-
-            while (true) {
-                ArrayList<Float> rain = getMonthlyRainfall(year, month);
-
-                // We want weeks to start from 0 so 0*7 loops through the first few days 0 - 6
-                for (int day = (week-1)*7; counter < 7; day++, counter++) {
-                    if (day >= 31 || rain.get(day) == -99.99F) break;
-
-                    data.add(rain.get(day));
-                }
-
-                // if all is good finish the loop checking for a rollover week (see below)
-                if (week <= totalWeeksInMonth) break;
-                // if the week number flows into another month
-                else if (week > totalWeeksInMonth && totalWeeksInMonth < 5) {
-                    week = 1;
-                    month++; // flow into the next month
-                    if (month > 12) { // flow into the next year
-                        year++;
-                        month = 1;
-                    }
-                }
-            }
-            return data;
-        }
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getTotalWeeklyRainfallList(year, month, week);
+        TOTAL_WEEKLY_RAINFALL_LIST.recordSince(start);
+        return result;
     }
 
     /**
@@ -315,43 +239,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the rainfall on the specified day is returned.
      */
     public static float getTotalWeeklyRainfall(int year, int month, int week) {
-        if (year <= 0 && month <= 0 && week <= 0) {
-            Output.error("Please specify a year, month and week number");
-            return -99.99F;
-        }
-        else if (week <= 0 || week > 5) {
-            Output.error("Invalid week number specified");
-            return -99.99F;
-        }
-        else {
-            float total = 0;
-            int counter = 0;
-            float totalWeeksInMonth = (float)getDaysInMonth(year, month) / 7;
-
-            while (true) {
-                ArrayList<Float> rain = getMonthlyRainfall(year, month);
-
-                // We want weeks to start from 0 so 0*7 loops through the first few days 0 - 6
-                for (int day = (week-1)*7; counter < 7; day++, counter++) {
-                    if (day >= 31 || rain.get(day) == -99.99F) break;
-
-                    total += rain.get(day);
-                }
-
-                // if all is good finish the loop checking for a rollover week (see below)
-                if (week <= totalWeeksInMonth) break;
-                // if the week number flows into another month
-                else if (week > totalWeeksInMonth && totalWeeksInMonth < 5) {
-                    week = 1;
-                    month++; // flow into the next month
-                    if (month > 12) { // flow into the next year
-                        year++;
-                        month = 1;
-                    }
-                }
-            }
-            return total;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getTotalWeeklyRainfall(year, month, week);
+        TOTAL_WEEKLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -364,13 +255,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the rainfall on the specified week is returned.
      */
     public static float getAverageWeeklyRainfall(int year, int month, int week) {
-        if (year <= 0 && month <= 0 && week <= 0) {
-            Output.error("Please specify a year, month and week number");
-            return -99.99F;
-        }
-        else {
-            return getTotalWeeklyRainfall(year, month, week) / 7;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getAverageWeeklyRainfall(year, month, week);
+        AVERAGE_WEEKLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -381,14 +269,10 @@ public class RainfallData extends Date {
      *                     Otherwise an ArrayList of floats consisting of the rainfall data for that month (1 - 31 days.)
      */
     public static ArrayList<Float> getMonthlyRainfall(int year, int month) {
-        if (year <= 0 && month <= 0) {
-            Output.error("Please specify a year and month number");
-            return null;
-        }
-        else {
-            // getDateObjectForMonth(): Returns a Date object for the specified month/year used as the key in the hashmap
-            return rainData.get(getDateObjectForMonth(year, month));
-        }
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getMonthlyRainfall(year, month);
+        MONTHLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -399,22 +283,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the rainfall on the specified month is returned.
      */
     public static float getTotalMonthlyRainfall(int year, int month) {
-        if (year <= 0 && month <= 0) {
-            Output.error("Please specify a year and month number");
-            return -99.99F;
-        }
-        else {
-            ArrayList<Float> rain = getMonthlyRainfall(year, month);
-            float total = 0;
-            if (rain != null) {
-                // Loop through each day totalling up the rainfall
-                for (int day = 0; day < rain.size(); day++) {
-                    if (rain.get(day) == -99.99F) break;
-                    total += rain.get(day);
-                }
-            }
-            return total;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getTotalMonthlyRainfall(year, month);
+        TOTAL_MONTHLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -425,13 +297,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the rainfall on the specified month is returned.
      */
     public static float getAverageMonthlyRainfall(int year, int month) {
-        if (year <= 0 && month <= 0) {
-            Output.error("Please specify a year and month number");
-            return -99.99F;
-        }
-        else {
-            return getTotalMonthlyRainfall(year, month)/getDaysInMonth(year, month);
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getAverageMonthlyRainfall(year, month);
+        AVERAGE_MONTHLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -442,32 +311,10 @@ public class RainfallData extends Date {
      * @return ArrayList of floats consisting of the average rainfall over a number of months
      */
     public static ArrayList<Float> getAverageMonthlyRainfallOverTime(int year, int month, int duration) {
-        ArrayList<Float> data = new ArrayList<Float>();
-
-        // Go backwards (month - duration)
-        for (int k = duration; k > 0; k--) {
-            if ((month - k) < 1 && year-1 >= getOldestYear()) {
-                year--; month = 12;
-                data.add(getAverageMonthlyRainfall(year, month));
-            }
-            else {
-                data.add(getAverageMonthlyRainfall(year, month - k));
-            }
-        }
-        // Get month
-        data.add(getAverageMonthlyRainfall(year, month));
-        // Get month + duration
-        for (int k = 1; k <= duration; k++) {
-            if ((month + k) > 12 && (year+1 <= getMostRecentYear())) {
-                year++; month = 1;
-                data.add(getAverageMonthlyRainfall(year, month));
-            }
-            else {
-                data.add(getAverageMonthlyRainfall(year, month + k));
-            }
-        }
-
-        return data;
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getAverageMonthlyRainfallOverTime(year, month, duration);
+        AVERAGE_MONTHLY_RAINFALL_OVER_TIME.recordSince(start);
+        return result;
     }
 
     /**
@@ -476,14 +323,10 @@ public class RainfallData extends Date {
      * @return ArrayList of floats containing the average rainfall per month over a particular year
      */
     public static ArrayList<Float> getAverageYearlyRainfallPerMonth(int year) {
-        Date[] dateObject = getDateObjectsForYear(year);
-        ArrayList<Float> data = new ArrayList<Float>();
-
-        for (int i = 0; i < dateObject.length; i++) {
-            int month = dateObject[i].getMonth();
-            data.add(getAverageMonthlyRainfall(year, month));
-        }
-        return data;
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getAverageYearlyRainfallPerMonth(year);
+        AVERAGE_YEARLY_RAINFALL_PER_MONTH.recordSince(start);
+        return result;
     }
 
     /**
@@ -492,20 +335,10 @@ public class RainfallData extends Date {
      * @return An array list of floats consisting of the total rainfall per month
      */
     public static ArrayList<Float> getTotalYearlyRainfallPerMonth(int year) {
-        if (year <= 0) {
-            Output.error("Please specify a year and month number");
-            return null;
-        }
-        else {
-            Date[] dateObject = getDateObjectsForYear(year);
-            ArrayList<Float> data = new ArrayList<Float>();
-
-            for (int i = 0; i < dateObject.length; i++) {
-                int month = dateObject[i].getMonth();
-                data.add(getTotalMonthlyRainfall(year, month));
-            }
-            return data;
-        }
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getTotalYearlyRainfallPerMonth(year);
+        TOTAL_YEARLY_RAINFALL_PER_MONTH.recordSince(start);
+        return result;
     }
 
     /**
@@ -515,26 +348,10 @@ public class RainfallData extends Date {
      * @return An array list of floats consisting of the total rainfall per year
      */
     public static ArrayList<Float> getTotalYearlyRainfallOverTime(int year, int duration) {
-        if (year <= 0) {
-            Output.error("Please specify a year and duration number");
-            return null;
-        }
-        else {
-            ArrayList<Float> data = new ArrayList<Float>();
-
-            // Go backwards (year - duration)
-            for (int k = duration; k > 0; k--) {
-                data.add(getTotalYearlyRainfall(year - k));
-            }
-            // Get year
-            data.add(getTotalYearlyRainfall(year));
-            // Get year + duration
-            for (int k = 1; k <= duration; k++) {
-                data.add(getTotalYearlyRainfall(year + k));
-            }
-
-            return data;
-        }
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getTotalYearlyRainfallOverTime(year, duration);
+        TOTAL_YEARLY_RAINFALL_OVER_TIME.recordSince(start);
+        return result;
     }
 
     /**
@@ -544,21 +361,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the total rainfall on the specified year is returned.
      */
     public static float getTotalYearlyRainfall(int year) {
-        if (year <= 0) {
-            Output.error("Please specify a year and month number");
-            return -99.99F;
-        }
-        else {
-            Date[] dateObject = getDateObjectsForYear(year);
-            float total = 0;
-            if (dateObject[0] != null) {
-                for (int i = 0; i < dateObject.length; i++) {
-                    int month = dateObject[i].getMonth();
-                    total += getTotalMonthlyRainfall(year, month);
-                }
-            }
-            return total;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getTotalYearlyRainfall(year);
+        TOTAL_YEARLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -568,13 +374,10 @@ public class RainfallData extends Date {
      *                 Otherwise a float for the average rainfall on the specified year is returned.
      */
     public static float getAverageYearlyRainfall(int year) {
-        if (year <= 0) {
-            Output.error("Please specify a year and month number");
-            return -99.99F;
-        }
-        else {
-            return getTotalYearlyRainfall(year)/365;
-        }
+        long start = Metrics.startTimer();
+        float result = getStation().getAverageYearlyRainfall(year);
+        AVERAGE_YEARLY_RAINFALL.recordSince(start);
+        return result;
     }
 
     /**
@@ -584,47 +387,410 @@ public class RainfallData extends Date {
      * @return ArrayList of floats containing the average rainfall over each year
      */
     public static ArrayList<Float> getAverageYearlyRainfallOverTime(int year, int duration) {
-        ArrayList<Float> data = new ArrayList<Float>();
+        long start = Metrics.startTimer();
+        ArrayList<Float> result = getStation().getAverageYearlyRainfallOverTime(year, duration);
+        AVERAGE_YEARLY_RAINFALL_OVER_TIME.recordSince(start);
+        return result;
+    }
 
-        // Go backwards (year - duration)
-        for (int k = duration; k > 0; k--) {
-            data.add(getAverageYearlyRainfall(year - k));
-        }
-        // Get year
-        data.add(getAverageYearlyRainfall(year));
-        // Get year + duration
-        for (int k = 1; k <= duration; k++) {
-            data.add(getAverageYearlyRainfall(year + k));
-        }
+    /**
+     * Calculates the total rainfall of a meteorological season
+     * @param year The year you wish to lookup (winter includes December of the previous year)
+     * @param season The season number, one of RollupCube.WINTER, SPRING, SUMMER or AUTUMN
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the total rainfall of the season is returned.
+     */
+    public static float getTotalSeasonalRainfall(int year, int season) {
+        long start = Metrics.startTimer();
+        float result = getStation().getTotalSeasonalRainfall(year, season);
+        TOTAL_SEASONAL_RAINFALL.recordSince(start);
+        return result;
+    }
 
-        return data;
+    /**
+     * Calculates the wettest day of a meteorological season
+     * @param year The year you wish to lookup (winter includes December of the previous year)
+     * @param season The season number, one of RollupCube.WINTER, SPRING, SUMMER or AUTUMN
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the wettest day of the season is returned.
+     */
+    public static float getWettestDayOfSeason(int year, int season) {
+        long start = Metrics.startTimer();
+        float result = getStation().getWettestDayOfSeason(year, season);
+        WETTEST_DAY_OF_SEASON.recordSince(start);
+        return result;
     }
 
     /**
-     * Parses the array of data collected from the file reader into a HashMap
-     * consisting of Date objects (Year, Month) and an array of floats consisting
-     * of the total rainfall per day of a given month.
+     * Counts the days of a year which have no reading in the loaded data
+     * @param year The year you wish to lookup
+     * @return int - If there is an error -1 is returned<br />
+     *               Otherwise the number of missing days in the loaded months of the year.
+     */
+    public static int getMissingDaysOfYear(int year) {
+        long start = Metrics.startTimer();
+        int result = getStation().getMissingDaysOfYear(year);
+        MISSING_DAYS_OF_YEAR.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Calculates the total rainfall between two dates (inclusive), for example from
+     * the 15th March 1980 to the 2nd February 1983
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the total rainfall over the range is returned.
+     */
+    public static float getTotalRainfall(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        long start = Metrics.startTimer();
+        float result = getStation().getTotalRainfall(fromYear, fromMonth, fromDay, toYear, toMonth, toDay);
+        TOTAL_RAINFALL.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Calculates the mean (average) daily rainfall between two dates (inclusive),
+     * dividing the total by the number of days in the range
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the average rainfall over the range is returned.
+     */
+    public static float getAverageRainfall(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        long start = Metrics.startTimer();
+        float result = getStation().getAverageRainfall(fromYear, fromMonth, fromDay, toYear, toMonth, toDay);
+        AVERAGE_RAINFALL.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Counts the days with a recorded reading between two dates (inclusive)
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return int - If there is an error -1 is returned<br />
+     *               Otherwise the number of days with a reading is returned.
+     */
+    public static int getRecordedDays(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        long start = Metrics.startTimer();
+        int result = getStation().getRecordedDays(fromYear, fromMonth, fromDay, toYear, toMonth, toDay);
+        RECORDED_DAYS.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Counts the days between two dates (inclusive) with more rainfall than a threshold
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param threshold Rainfall (mm) the days must exceed
+     * @return int - If there is an error -1 is returned<br />
+     *               Otherwise the number of days over the threshold is returned.
+     */
+    public static int getDaysAbove(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, float threshold) {
+        long start = Metrics.startTimer();
+        int result = getStation().getDaysAbove(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, threshold);
+        DAYS_ABOVE.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the wettest day between two dates (inclusive) and the date it occurred on
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return DayReading - If there is an error or no readings in the range null is returned<br />
+     *                      Otherwise the wettest day and its rainfall is returned.
+     */
+    public static DayReading getWettestDay(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        long start = Metrics.startTimer();
+        DayReading result = getStation().getWettestDay(fromYear, fromMonth, fromDay, toYear, toMonth, toDay);
+        WETTEST_DAY.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the driest day between two dates (inclusive) and the date it occurred on
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return DayReading - If there is an error or no readings in the range null is returned<br />
+     *                      Otherwise the driest day and its rainfall is returned.
+     */
+    public static DayReading getDriestDay(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        long start = Metrics.startTimer();
+        DayReading result = getStation().getDriestDay(fromYear, fromMonth, fromDay, toYear, toMonth, toDay);
+        DRIEST_DAY.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the wettest run of consecutive days between two dates (inclusive), e.g.
+     * the largest 7-day total of a decade. Missing days count as dry.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param days Length of the run in days
+     * @return DayReading - If there is an error or no readings in the range null is returned<br />
+     *                      Otherwise the first day of the wettest run and the run's total rainfall is returned.
+     */
+    public static DayReading getWettestPeriod(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int days) {
+        long start = Metrics.startTimer();
+        DayReading result = getStation().getWettestPeriod(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, days);
+        WETTEST_PERIOD.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the wettest run of consecutive days of each of several lengths between two
+     * dates (inclusive), e.g. the largest 3, 7 and 30-day totals, in one pass over the range.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param days Length of each run in days
+     * @return DayReading[] - If there is an error an array of nulls is returned<br />
+     *                        Otherwise the first day and total rainfall of the wettest run
+     *                        of each length, or null for a length with no readings.
+     */
+    public static DayReading[] getWettestPeriods(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int[] days) {
+        long start = Metrics.startTimer();
+        DayReading[] result = getStation().getWettestPeriods(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, days);
+        WETTEST_PERIODS.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the wettest run of consecutive days within a year
+     * @param year The year you wish to lookup
+     * @param days Length of the run in days
+     * @return DayReading - If there is an error or no readings in the year null is returned<br />
+     *                      Otherwise the first day of the wettest run and the run's total rainfall is returned.
+     */
+    public static DayReading getWettestPeriodOfYear(int year, int days) {
+        long start = Metrics.startTimer();
+        DayReading result = getStation().getWettestPeriodOfYear(year, days);
+        WETTEST_PERIOD_OF_YEAR.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the wettest run of consecutive days of each of several lengths across the
+     * whole data set
+     * @param days Length of each run in days
+     * @return DayReading[] - If there is an error an array of nulls is returned<br />
+     *                        Otherwise the first day and total rainfall of the wettest run
+     *                        of each length, or null for a length with no readings.
+     */
+    public static DayReading[] getWettestPeriodsOfRecord(int[] days) {
+        long start = Metrics.startTimer();
+        DayReading[] result = getStation().getWettestPeriodsOfRecord(days);
+        WETTEST_PERIODS_OF_RECORD.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the longest spell of wet or dry days between two dates (inclusive), e.g.
+     * the longest drought of a decade. A missing day ends a spell and a spell running
+     * over either date is cut at it.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @return Spell - If there is an error or no spell of the kind in the range null is returned<br />
+     *                 Otherwise the longest spell (the earliest of equally long spells) is returned.
+     */
+    public static Spell getLongestSpell(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int kind) {
+        long start = Metrics.startTimer();
+        Spell result = getStation().getLongestSpell(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, kind);
+        LONGEST_SPELL.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the longest spells of wet or dry days between two dates (inclusive)
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @param count Most spells to return
+     * @param threshold Rainfall (mm) a day needs to be wet, usually {@link SpellIndex#WET_DAY_THRESHOLD}
+     * @return ArrayList - If there is an error null is returned<br />
+     *                     Otherwise up to count spells, longest first.
+     */
+    public static ArrayList<Spell> getLongestSpells(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay,
+            int kind, int count, float threshold) {
+        long start = Metrics.startTimer();
+        ArrayList<Spell> result = getStation().getLongestSpells(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, kind, count, threshold);
+        LONGEST_SPELLS.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Finds the longest spell of wet or dry days within a year
+     * @param year The year you wish to lookup
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @return Spell - If there is an error or no spell of the kind in the year null is returned<br />
+     *                 Otherwise the longest spell (the earliest of equally long spells) is returned.
+     */
+    public static Spell getLongestSpellOfYear(int year, int kind) {
+        long start = Metrics.startTimer();
+        Spell result = getStation().getLongestSpellOfYear(year, kind);
+        LONGEST_SPELL_OF_YEAR.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Estimates several percentiles of the daily rainfall between two dates (inclusive),
+     * e.g. the 90th, 95th and 99th of a decade. Each estimate is within 1% of the exact
+     * value; days without a reading are left out.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param percentiles Percentiles from 0 to 100
+     * @return float[] - If there is an error or no readings in the range every value is -99.99<br />
+     *                   Otherwise the estimated daily rainfall at each percentile.
+     */
+    public static float[] getPercentiles(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, float[] percentiles) {
+        long start = Metrics.startTimer();
+        float[] result = getStation().getPercentiles(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, percentiles);
+        PERCENTILES.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Estimates a percentile of the daily rainfall of a year
+     * @param year The year you wish to lookup
+     * @param percentile Percentile from 0 to 100
+     * @return float - If there is an error or no readings in the year -99.99 is returned<br />
+     *                 Otherwise the estimated daily rainfall at the percentile is returned.
+     */
+    public static float getPercentileOfYear(int year, float percentile) {
+        long start = Metrics.startTimer();
+        float result = getStation().getPercentileOfYear(year, percentile);
+        PERCENTILE_OF_YEAR.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Estimates a percentile of the daily rainfall of a meteorological season
+     * @param year The year you wish to lookup (winter includes December of the previous year)
+     * @param season The season number, one of RollupCube.WINTER, SPRING, SUMMER or AUTUMN
+     * @param percentile Percentile from 0 to 100
+     * @return float - If there is an error or no readings in the season -99.99 is returned<br />
+     *                 Otherwise the estimated daily rainfall at the percentile is returned.
+     */
+    public static float getPercentileOfSeason(int year, int season, float percentile) {
+        long start = Metrics.startTimer();
+        float result = getStation().getPercentileOfSeason(year, season, percentile);
+        PERCENTILE_OF_SEASON.recordSince(start);
+        return result;
+    }
+
+    /**
+     * Parses the array of data collected from the file reader into the day store,
+     * each line consisting of the year, the month and the rainfall per day of that month.
+     * Every line is stored in one new version of the default station, so queries see
+     * either none or all of the file.
      * @param data String array of the data collected from the File Reader
      */
     public static void storeObjects(String[] data) {
+        StationDataset.Update update = new StationDataset.Update();
         for (int i = 0; i < data.length; i++) {
             String[] split = data[i].split(" ");
 
             int year = Integer.parseInt(split[0]);
             int month = Integer.parseInt(split[1]);
-            Date d = new Date(year, month);
-            storeDateObject(d);
-
-            ArrayList<Float> monthData = new ArrayList<Float>();
-            for (int c = 2; c < split.length; c++)
-            {
-                float value = Float.parseFloat(split[c]);
-                if (value != -99.99F)
-                    monthData.add(value);
+
+            float[] monthData = new float[split.length - 2];
+            for (int c = 2; c < split.length; c++) {
+                monthData[c - 2] = Float.parseFloat(split[c]);
             }
 
-            rainData.put(d, monthData);
+            update.storeMonth(year, month, monthData);
         }
+        StationRegistry.updateDefault(update);
+    }
+
+    /**
+     * Applies the months and dates collected in an update to the default station,
+     * publishing a single new version of it; a streaming file reader adds each
+     * month to the update and calls this once at the end of the file.
+     * @param update Months to store and dates to add or remove
+     */
+    public static void storeUpdate(StationDataset.Update update) {
+        StationRegistry.updateDefault(update);
+    }
+
+    /**
+     * Stores a single month of data.
+     * @param year The year of the readings
+     * @param month The month of the readings
+     * @param days Rainfall for day 1 onwards (-99.99 for days without a reading),
+     *          the values are copied so the array can be reused by the caller
+     * @deprecated Each call copies the whole data set to publish a new version, so
+     *          storing a file a month at a time takes quadratic time. Collect the
+     *          months in a {@link StationDataset.Update} and pass it to
+     *          {@link #storeUpdate(StationDataset.Update)}, or use
+     *          {@link #storeObjects(String[])} or {@link org.rainfall.io.RainfallLoader}.
+     */
+    @Deprecated
+    public static void storeMonth(int year, int month, float[] days) {
+        StationDataset.Update update = new StationDataset.Update();
+        update.storeMonth(year, month, days);
+        storeUpdate(update);
+    }
+
+    /**
+     * Replaces the whole data set of the default station with an already populated
+     * store (for example one read from a snapshot file).
+     * @param store Store holding the new data set
+     */
+    public static void replaceData(DayStore store) {
+        StationRegistry.setDefault(new StationDataset(getStation().getName(), store));
+    }
+
+    /**
+     * Gets the store holding the current data set, which must not be changed
+     * @return DayStore - the loaded data
+     */
+    public static DayStore getDayStore() {
+        return getStation().getStore();
     }
 
 }
@@ -36,6 +36,15 @@ public class Interface extends JFrame {
     public static JRadioButton wettestButton = new JRadioButton("Wettest"), wettestButtonGraph = new JRadioButton("Wettest");
     public static JRadioButton driestButton = new JRadioButton("Driest");
 
+    /* Menu Items */
+    public static JMenuItem openLancasterFileMenuItem = new JMenuItem(MenuListener.OPEN_FILE_NAME1);
+    public static JCheckBoxMenuItem followFileMenuItem = new JCheckBoxMenuItem(MenuListener.FOLLOW_FILE_NAME);
+
+    /* Load Progress */
+    public static JProgressBar loadProgressBar = new JProgressBar(0, 1000);
+    public static JButton cancelLoadButton = new JButton(MenuListener.CANCEL_LOAD_NAME);
+    private static JPanel loadPanel = new JPanel(new BorderLayout(5, 0));
+
     /* Labels */
     private static JLabel queryResultsLabel = new JLabel("No Results.");
     private static JLabel graphResultsLabel = new JLabel("Nothing to see here.");
@@ -54,6 +63,7 @@ public class Interface extends JFrame {
 
         initMenuComponents();
         initTabbedPane();
+        initLoadPanel();
 
         pack();
     }
@@ -70,11 +80,14 @@ public class Interface extends JFrame {
         // File Menu
         JMenu fileMenu = new JMenu(menuObject.FILE_NAME);
             JMenu openFileMenuItem = new JMenu(menuObject.OPEN_FILE_NAME);
-                JMenuItem openLancasterFile = new JMenuItem(menuObject.OPEN_FILE_NAME1);
-                openLancasterFile.addActionListener(menuObject);
-                openFileMenuItem.add(openLancasterFile);
+                openLancasterFileMenuItem.addActionListener(menuObject);
+                openFileMenuItem.add(openLancasterFileMenuItem);
             fileMenu.add(openFileMenuItem);
 
+            followFileMenuItem.setEnabled(false);
+            followFileMenuItem.addActionListener(menuObject);
+            fileMenu.add(followFileMenuItem);
+
             fileMenu.addSeparator();
 
             JMenuItem exitMenuItem = new JMenuItem(menuObject.EXIT_NAME);
@@ -108,6 +121,31 @@ public class Interface extends JFrame {
         framePanel.add(tabbedPane);
     }
 
+    /**
+     * Initialises the progress bar and cancel button shown at the bottom of the
+     * window while a file is loading
+     */
+    private void initLoadPanel() {
+        loadPanel.setBorder(BorderFactory.createEmptyBorder(5,5,5,5));
+            loadProgressBar.setStringPainted(true);
+            loadPanel.add(loadProgressBar, BorderLayout.CENTER);
+            cancelLoadButton.addActionListener(menuObject);
+            loadPanel.add(cancelLoadButton, BorderLayout.EAST);
+        loadPanel.setVisible(false);
+        framePanel.add(loadPanel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Shows or hides the load progress bar
+     * @param visible true while a file is loading
+     */
+    public static void setLoadPanelVisible(boolean visible) {
+        loadProgressBar.setValue(0);
+        loadProgressBar.setString(visible ? "Opening file..." : "");
+        cancelLoadButton.setEnabled(visible);
+        loadPanel.setVisible(visible);
+    }
+
     /**
      * Initialises components for the calculation buttons section of the interface
      * @param method integer (0 / 1) to check whether we're looking at the query
@@ -54,7 +54,29 @@ public class BarChart extends Graph {
             }
         }
 
-        chart = ChartFactory.createBarChart (
+        chart = createChart(title, xLabel, yLabel, dataset);
+    }
+
+    /**
+     * Creates a bar chart without displaying it, e.g. to render it to an image
+     *
+     * @param title The title for the bar chart
+     * @param xLabel The label for the x axis of the bar chart
+     * @param yLabel The label for the y axis of the bar chart
+     * @param data The values of the bars
+     * @param categories The label of each bar, one per value
+     * @return JFreeChart - the chart
+     */
+    public static JFreeChart createChart(String title, String xLabel, String yLabel, ArrayList<Float> data, String[] categories) {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (int i = 0; i < data.size(); i++) {
+            dataset.setValue(data.get(i), yLabel, categories[i]);
+        }
+        return createChart(title, xLabel, yLabel, dataset);
+    }
+
+    private static JFreeChart createChart(String title, String xLabel, String yLabel, DefaultCategoryDataset dataset) {
+        return ChartFactory.createBarChart (
                         title, xLabel, yLabel, dataset,	// main parameters
                         PlotOrientation.VERTICAL,			// orientation
                         true, false, false );				// show legend, but no tooltips or urls
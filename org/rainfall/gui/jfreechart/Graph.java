@@ -42,7 +42,7 @@ public class Graph extends JFrame implements ActionListener {
         this.setSize(500,270);
 
         JPanel pnl = new JPanel(new BorderLayout());
-        ChartPanel chartPanel = new ChartPanel(chart);
+        ChartPanel chartPanel = createChartPanel(chart);
         pnl.add(chartPanel, BorderLayout.NORTH);
         EXPORT_GRAPH.addActionListener(this);
         pnl.add(EXPORT_GRAPH, BorderLayout.CENTER);
@@ -53,14 +53,25 @@ public class Graph extends JFrame implements ActionListener {
         this.setVisible(true);
     }
 
+    /**
+     * Creates the panel the chart is drawn on, which subclasses may override to
+     * change how the chart responds to the mouse
+     * @param chart The chart to display
+     * @return ChartPanel - the panel
+     */
+    protected ChartPanel createChartPanel(JFreeChart chart) {
+        return new ChartPanel(chart);
+    }
+
     /**
      * Converts an ArrayList of floats to an array of Point2D.Floats, which is the
-     * required data set to produced a graph using JFreeChart.
+     * required data set to produced a graph using JFreeChart. Static as it needs no
+     * frame, so it can be used without a display.
      * @param data ArrayList of floats consisting of rainfall data for a given period.
      * @return Point2D.Float array of the converted data set.
      */
-    public Point2D.Float[] convertDataSet(ArrayList<Float> data, int monthPivot) {
-        Point2D.Float[] dataPoints = new Point2D.Float[61];
+    public static Point2D.Float[] convertDataSet(ArrayList<Float> data, int monthPivot) {
+        Point2D.Float[] dataPoints = new Point2D.Float[data.size()];
 
         for (int i = 0; i < data.size(); i++) {
             dataPoints[i] = new Point2D.Float(i+1, data.get(i));
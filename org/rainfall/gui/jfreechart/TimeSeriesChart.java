@@ -0,0 +1,179 @@
+package org.rainfall.gui.jfreechart;
+
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.geom.Rectangle2D;
+import java.util.TimeZone;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.AxisChangeListener;
+import org.jfree.data.Range;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.rainfall.station.StationDataset;
+import org.rainfall.store.DayStore;
+import org.rainfall.store.Downsampler;
+
+/**
+ * A line chart of every day of a station's record, for periods far longer than a
+ * bar chart can show. The chart never holds more points than it is pixels wide:
+ * the days drawn are chosen by the station's {@link Downsampler} and chosen again
+ * whenever the chart is zoomed (by dragging over it) or resized, so zooming in
+ * on a decade reveals its individual days.
+ *
+ * @author Kieran
+ * @see StationDataset#getDownsampledDays(int, int, int, int)
+ */
+public class TimeSeriesChart extends Graph {
+
+    private static final long serialVersionUID = 1L;
+    private static final long DAY_IN_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final StationDataset station;
+    private final DayStore store;
+    private final int method;
+    private final XYSeries series;
+    private final DateAxis domainAxis;
+    private final Range fullRange;
+    private ChartPanel chartPanel;
+
+    /* What the series currently holds, so repeated axis events are ignored */
+    private int sampledFrom = -1, sampledTo = -1, sampledPoints = -1;
+
+    /**
+     * Create a line chart of every day of a station's record
+     *
+     * @param title The title for the chart
+     * @param yLabel The label for the y axis of the chart
+     * @param station The station to draw, which must not be empty
+     * @param method {@link Downsampler#MIN_MAX} or {@link Downsampler#LARGEST_TRIANGLE}
+     */
+    public TimeSeriesChart(String title, String yLabel, StationDataset station, int method) {
+        super();
+
+        this.station = station;
+        this.store = station.getStore();
+        this.method = method;
+        this.series = new XYSeries(yLabel, false, true);
+
+        JFreeChart chart = createChart(title, yLabel, series);
+        domainAxis = (DateAxis)chart.getXYPlot().getDomainAxis();
+        fullRange = new Range(toMillis(store, 0), toMillis(store, Math.max(store.size() - 1, 1)));
+        domainAxis.setRange(fullRange);
+        domainAxis.addChangeListener(new AxisChangeListener() {
+            public void axisChanged(AxisChangeEvent event) {
+                resample();
+            }
+        });
+
+        super.createFrame(chart);
+        chartPanel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                resample();
+            }
+        });
+        resample();
+    }
+
+    /**
+     * Creates a chart of every day of a station's record without displaying it,
+     * e.g. to render it to an image
+     *
+     * @param title The title for the chart
+     * @param yLabel The label for the y axis of the chart
+     * @param station The station to draw
+     * @param method {@link Downsampler#MIN_MAX} or {@link Downsampler#LARGEST_TRIANGLE}
+     * @param width Width of the image in pixels, the most days which are drawn
+     * @return JFreeChart - the chart
+     */
+    public static JFreeChart createChart(String title, String yLabel, StationDataset station, int method, int width) {
+        XYSeries series = new XYSeries(yLabel, false, true);
+        fill(series, station, 0, station.getStore().size(), width, method);
+        return createChart(title, yLabel, series);
+    }
+
+    private static JFreeChart createChart(String title, String yLabel, XYSeries series) {
+        JFreeChart chart = ChartFactory.createTimeSeriesChart(
+                        title, "Date", yLabel, new XYSeriesCollection(series),
+                        true, false, false );       // show legend, but no tooltips or urls
+
+        // Day numbers count days since 1970 in UTC, which is also where dates start
+        ((DateAxis)chart.getXYPlot().getDomainAxis()).setTimeZone(TimeZone.getTimeZone("UTC"));
+        return chart;
+    }
+
+    /**
+     * Replaces the points of a series with the days chosen to draw [from, to)
+     */
+    private static void fill(XYSeries series, StationDataset station, int from, int to, int points, int method) {
+        DayStore store = station.getStore();
+        int[] days = station.getDownsampledDays(from, to, points, method);
+        series.setNotify(false);
+        series.clear();
+        for (int day : days) {
+            series.add(toMillis(store, day), store.get(day), false);
+        }
+        series.setNotify(true);
+    }
+
+    /**
+     * Zooming only changes the dates shown; the rainfall axis always fits the
+     * days on screen. Restoring the zoom goes back to the whole record rather
+     * than to the days currently sampled.
+     */
+    @Override
+    protected ChartPanel createChartPanel(JFreeChart chart) {
+        chartPanel = new ChartPanel(chart) {
+            @Override
+            public void restoreAutoDomainBounds() {
+                domainAxis.setRange(fullRange);
+            }
+        };
+        chartPanel.setRangeZoomable(false);
+        return chartPanel;
+    }
+
+    /**
+     * Chooses the days to draw for the dates currently on the axis and the width
+     * of the chart, replacing the series if either has changed
+     */
+    private void resample() {
+        if (chartPanel == null)
+            return; // still being built
+
+        // One day either side so the line runs off the edges of the chart
+        Range visible = domainAxis.getRange();
+        int firstDay = store.getFirstDayNumber();
+        int from = Math.max((int)Math.floor(visible.getLowerBound() / DAY_IN_MILLIS) - firstDay - 1, 0);
+        int to = Math.min((int)Math.ceil(visible.getUpperBound() / DAY_IN_MILLIS) - firstDay + 2, store.size());
+        int points = Math.max(getPlotWidth(), 3);
+        if (from == sampledFrom && to == sampledTo && points == sampledPoints)
+            return;
+
+        fill(series, station, from, to, points, method);
+        sampledFrom = from;
+        sampledTo = to;
+        sampledPoints = points;
+    }
+
+    /**
+     * Width of the plot in pixels, or of the whole panel before it has been drawn
+     */
+    private int getPlotWidth() {
+        Rectangle2D area = chartPanel.getScreenDataArea();
+        if (area != null && area.getWidth() > 0)
+            return (int)area.getWidth();
+        if (chartPanel.getWidth() > 0)
+            return chartPanel.getWidth();
+        return ChartPanel.DEFAULT_WIDTH;
+    }
+
+    private static long toMillis(DayStore store, int index) {
+        return (store.getFirstDayNumber() + (long)index) * DAY_IN_MILLIS;
+    }
+
+}
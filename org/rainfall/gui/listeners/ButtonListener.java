@@ -2,17 +2,26 @@ package org.rainfall.gui.listeners;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import javax.swing.JComboBox;
 import javax.swing.JRadioButton;
-import org.rainfall.RainfallData;
 import org.rainfall.gui.Interface;
+import org.rainfall.RainfallData;
 import org.rainfall.gui.jfreechart.BarChart;
+import org.rainfall.gui.jfreechart.TimeSeriesChart;
+import org.rainfall.query.Query;
+import org.rainfall.query.QueryCache;
+import org.rainfall.query.QueryEngine;
+import org.rainfall.station.StationDataset;
+import org.rainfall.store.Downsampler;
 
 /**
  * Hides some of the complexities of the action listener which was previously 
  * held within the interface class. <br />
  * This class listens for user interaction events and perform the necessary action,
- * all rainfall data query methods are linked to this class.
+ * all rainfall data query methods are linked to this class. <br />
+ * Queries are answered through a cached {@link QueryEngine}, so toggling between
+ * charts and searches for the same period does not recalculate them.
  *
  * @author Kieran
  */
@@ -34,6 +43,9 @@ public class ButtonListener implements ActionListener {
     private final String SEARCH_BUTTON_TEXT = Interface.SEARCH_BUTTON_TEXT;
     private final String GRAPH_BUTTON_TEXT = Interface.GRAPH_BUTTON_TEXT;
 
+    /* Query Objects */
+    private static final QueryEngine engine = new QueryEngine(new QueryCache());
+
     /**
      * Listens for actions on specific GUI components
      * @param e ActionEvent for a given user interaction
@@ -63,20 +75,20 @@ public class ButtonListener implements ActionListener {
     private String drawYearGraphs(int year) {
         if (totalButtonGraph.isSelected()) {
             String title = "Total Rainfall over the year " + year;
-            new BarChart(title, "Month", "Rainfall (mm)", RainfallData.getTotalYearlyRainfallPerMonth(year), 0);
+            new BarChart(title, "Month", "Rainfall (mm)", series(Query.TOTAL, Query.MONTHS, year, 0, 0), 0);
             return "Nothing to see here!";
         }
         else if (averageButtonGraph.isSelected()) {
             String duration = durationBox.getSelectedItem().toString();
             if (duration != " ") {
                 String title = "Average Rainfall over the year " + year + " (+/- " + duration + " years)";
-                new BarChart(title, "Year", "Rainfall (mm)", RainfallData.getAverageYearlyRainfallOverTime(year, Integer.parseInt(duration)), 0);
+                new BarChart(title, "Year", "Rainfall (mm)", series(Query.AVERAGE, Query.YEAR, year, 0, Integer.parseInt(duration)), 0);
 
                 return "Nothing to see here!";
             }
             else {
                 String title = "Average Rainfall per month of the year " + year;
-                new BarChart(title, "Month", "Rainfall (mm)", RainfallData.getAverageYearlyRainfallPerMonth(year), 0);
+                new BarChart(title, "Month", "Rainfall (mm)", series(Query.AVERAGE, Query.MONTHS, year, 0, 0), 0);
 
                 return "Nothing to see here!";
             }
@@ -85,13 +97,13 @@ public class ButtonListener implements ActionListener {
             String duration = durationBox.getSelectedItem().toString();
             if (duration != " ") {
                 String title = "Wettest day of the year " + year + " (+/- " + duration + " years)";
-                new BarChart(title, "Year", "Rainfall (mm)", RainfallData.getWettestDayOfMultipleYears(year, Integer.parseInt(duration)), 0);
+                new BarChart(title, "Year", "Rainfall (mm)", series(Query.WETTEST, Query.YEAR, year, 0, Integer.parseInt(duration)), 0);
 
                 return "Nothing to see here!";
             }
             else {
                 String title = "Wettest day for each month of " + year;
-                new BarChart(title, "Month", "Rainfall (mm)", RainfallData.getWettestDayPerMonthOfYear(year), 0);
+                new BarChart(title, "Month", "Rainfall (mm)", series(Query.WETTEST, Query.MONTHS, year, 0, 0), 0);
 
                 return "Nothing to see here!";
             }
@@ -103,14 +115,14 @@ public class ButtonListener implements ActionListener {
     private String drawMonthGraphs(int year, int month) {
         if (totalButtonGraph.isSelected()) {
             String title = "Total Rainfall over month " + month + " of " + year;
-            new BarChart(title, "Day", "Rainfall (mm)", RainfallData.getMonthlyRainfall(year, month), 0);
+            new BarChart(title, "Day", "Rainfall (mm)", series(Query.TOTAL, Query.DAYS, year, month, 0), 0);
             return "Nothing to see here!";
         }
         else if (averageButtonGraph.isSelected()) {
             String duration = durationBox.getSelectedItem().toString();
             if (duration != " ") {
                 String title = "Average Rainfall over months " + month + " (+/- " + duration + " month(s)) for the year " + year;
-                new BarChart(title, "Month", "Rainfall (mm)", RainfallData.getAverageMonthlyRainfallOverTime(year, month, Integer.parseInt(duration)), month);
+                new BarChart(title, "Month", "Rainfall (mm)", series(Query.AVERAGE, Query.MONTH, year, month, Integer.parseInt(duration)), month);
 
                 return "Nothing to see here!";
             }
@@ -119,7 +131,7 @@ public class ButtonListener implements ActionListener {
             String duration = durationBox.getSelectedItem().toString();
             if (duration != " ") {
                 String title = "Wettest day of the months " + month + " (+/- " + duration + " month(s)) for the year " + year;
-                new BarChart(title, "Month", "Rainfall (mm)", RainfallData.getWettestDayOfMultipleMonths(year, month, Integer.parseInt(duration)), month);
+                new BarChart(title, "Month", "Rainfall (mm)", series(Query.WETTEST, Query.MONTH, year, month, Integer.parseInt(duration)), month);
 
                 return "Nothing to see here!";
             }
@@ -128,6 +140,16 @@ public class ButtonListener implements ActionListener {
         return "Erm.. I don't quite understand what you're trying to do!";
     }
 
+    private String drawRecordGraph() {
+        StationDataset station = RainfallData.getStation();
+        if (station.getStore().isEmpty())
+            return "Please open a data file first!";
+
+        String title = "Daily Rainfall for " + station.getName();
+        new TimeSeriesChart(title, "Rainfall (mm)", station, Downsampler.MIN_MAX);
+        return "Drag over the chart to zoom in on a period";
+    }
+
     private String drawGraphForCorrectPeriod() {
         int year = yearBoxGraphs.getSelectedItem() != " " ? Integer.parseInt(yearBoxGraphs.getSelectedItem().toString()) : 0;
         int month = monthBoxGraphs.getSelectedItem() != " " ? Integer.parseInt(monthBoxGraphs.getSelectedItem().toString()) : 0;
@@ -142,6 +164,11 @@ public class ButtonListener implements ActionListener {
         {
             return drawMonthGraphs(year, month);
         }
+        // The whole record
+        else if (yearBoxGraphs.getSelectedIndex() == 0 && monthBoxGraphs.getSelectedIndex() == 0)
+        {
+            return drawRecordGraph();
+        }
         return "Erm.. I don't quite understand what you're trying to do!";
     }
 
@@ -150,14 +177,14 @@ public class ButtonListener implements ActionListener {
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
 
-            return "Average Yearly Rainfall: " + RainfallData.getAverageYearlyRainfall(year);
+            return "Average Yearly Rainfall: " + value(Query.AVERAGE, Query.YEAR, year, 0, 0, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() == 0 && daysBox.getSelectedIndex() == 0)
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
 
-            return "Average Monthly Rainfall: " + RainfallData.getAverageMonthlyRainfall(year, month);
+            return "Average Monthly Rainfall: " + value(Query.AVERAGE, Query.MONTH, year, month, 0, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() > 0 && daysBox.getSelectedIndex() == 0)
         {
@@ -165,7 +192,7 @@ public class ButtonListener implements ActionListener {
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
             int week = Integer.parseInt(weeksBox.getSelectedItem().toString());
 
-            return "Average Weekly Rainfall: " + RainfallData.getAverageWeeklyRainfall(year, month, week);
+            return "Average Weekly Rainfall: " + value(Query.AVERAGE, Query.WEEK, year, month, week, 0);
         }
         return "<html>No results, please try chosing a different time period.<br /> Consult the \"Help\" menu for guidance.</html>";
     }
@@ -175,14 +202,14 @@ public class ButtonListener implements ActionListener {
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
 
-            return "Total Yearly Rainfall: " + RainfallData.getTotalYearlyRainfall(year);
+            return "Total Yearly Rainfall: " + value(Query.TOTAL, Query.YEAR, year, 0, 0, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() == 0 && daysBox.getSelectedIndex() == 0)
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
 
-            return "Total Monthly Rainfall: " + RainfallData.getTotalMonthlyRainfall(year, month);
+            return "Total Monthly Rainfall: " + value(Query.TOTAL, Query.MONTH, year, month, 0, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() > 0 && daysBox.getSelectedIndex() == 0)
         {
@@ -190,7 +217,7 @@ public class ButtonListener implements ActionListener {
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
             int week = Integer.parseInt(weeksBox.getSelectedItem().toString());
 
-            return "Total Weekly Rainfall: " + RainfallData.getTotalWeeklyRainfall(year, month, week);
+            return "Total Weekly Rainfall: " + value(Query.TOTAL, Query.WEEK, year, month, week, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() == 0 && daysBox.getSelectedIndex() > 0)
         {
@@ -198,7 +225,7 @@ public class ButtonListener implements ActionListener {
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
             int day = Integer.parseInt(daysBox.getSelectedItem().toString());
 
-            return "Total Weekly Rainfall: " + RainfallData.getTotalDailyRainfall(year, month, day);
+            return "Total Weekly Rainfall: " + value(Query.TOTAL, Query.DAY, year, month, 0, day);
         }
         return "<html>No results, please try chosing a different time period.<br /> Consult the \"Help\" menu for guidance.</html>";
     }
@@ -208,14 +235,14 @@ public class ButtonListener implements ActionListener {
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
 
-            return "Wettest day of the year: " + RainfallData.getWettestDayOfYear(year);
+            return "Wettest day of the year: " + value(Query.WETTEST, Query.YEAR, year, 0, 0, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() == 0 && daysBox.getSelectedIndex() == 0)
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
 
-            return "Wettest day of the month: " + RainfallData.getWettestDayOfMonth(year, month);
+            return "Wettest day of the month: " + value(Query.WETTEST, Query.MONTH, year, month, 0, 0);
         }
         return "<html>No results, please try chosing a different time period.<br /> Consult the \"Help\" menu for guidance.</html>";
     }
@@ -225,16 +252,24 @@ public class ButtonListener implements ActionListener {
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
 
-            return "Driest day of the year: " + RainfallData.getDriestDayOfYear(year);
+            return "Driest day of the year: " + value(Query.DRIEST, Query.YEAR, year, 0, 0, 0);
         }
         else if (yearBox.getSelectedIndex() > 0 && monthBox.getSelectedIndex() > 0 && weeksBox.getSelectedIndex() == 0 && daysBox.getSelectedIndex() == 0)
         {
             int year = Integer.parseInt(yearBox.getSelectedItem().toString());
             int month = Integer.parseInt(monthBox.getSelectedItem().toString());
 
-            return "Driest day of the month: " + RainfallData.getDriestDayOfMonth(year, month);
+            return "Driest day of the month: " + value(Query.DRIEST, Query.MONTH, year, month, 0, 0);
         }
         return "<html>No results, please try chosing a different time period.<br /> Consult the \"Help\" menu for guidance.</html>";
     }
 
+    private float value(int operation, int period, int year, int month, int week, int day) {
+        return engine.execute(new Query(null, operation, period, year, month, week, day, 0)).getValue();
+    }
+
+    private ArrayList<Float> series(int operation, int period, int year, int month, int duration) {
+        return engine.execute(new Query(null, operation, period, year, month, 0, 0, duration)).getSeries();
+    }
+
 }
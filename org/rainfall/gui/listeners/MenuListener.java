@@ -5,14 +5,24 @@ import java.awt.event.ActionListener;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
+import javax.swing.JMenuItem;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import org.rainfall.RainfallData;
 import org.rainfall.gui.AboutInterface;
 import org.rainfall.gui.Interface;
-import org.rainfall.io.LancasterReader;
+import org.rainfall.io.FileFollower;
+import org.rainfall.io.ProgressListener;
+import org.rainfall.io.RainfallLoader;
 import org.rainfall.lang.Output;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
 
 /**
  * Listens for actions performed on all menus of the interface. <br />
@@ -26,7 +36,9 @@ public class MenuListener implements ActionListener {
     public static final String FILE_NAME = "File";
     public static final String OPEN_FILE_NAME = "Open File";
     public static final String OPEN_FILE_NAME1 = "Lancaster Data";
+    public static final String FOLLOW_FILE_NAME = "Follow File";
     public static final String EXIT_NAME = "Exit";
+    public static final String CANCEL_LOAD_NAME = "Cancel";
 
     /* Help menu names */
     public static final String HELP_NAME = "Help";
@@ -37,6 +49,17 @@ public class MenuListener implements ActionListener {
     private JComboBox monthBox = Interface.monthBox, monthBoxGraphs = Interface.monthBoxGraphs;
     private JComboBox weeksBox = Interface.weeksBox;
     private JComboBox daysBox = Interface.daysBox;
+    private JCheckBoxMenuItem followFileMenuItem = Interface.followFileMenuItem;
+    private JMenuItem openLancasterFileMenuItem = Interface.openLancasterFileMenuItem;
+    private JProgressBar loadProgressBar = Interface.loadProgressBar;
+
+    /* Follows the open file for appended lines */
+    private File openFile;
+    private long openFileLength;   // bytes of the open file which were loaded
+    private FileFollower follower;
+
+    /* Loads the chosen file off the event dispatch thread */
+    private LoadWorker loadWorker;
 
     /**
      * Listens for actions on specific GUI components
@@ -45,8 +68,16 @@ public class MenuListener implements ActionListener {
     public void actionPerformed(ActionEvent e) {
         if (e.getActionCommand().equals(OPEN_FILE_NAME1)) {
             openFileDialogBox(OPEN_FILE_NAME1);
-            toogleSearchBoxes(true);
-            updateSearchBoxValues();
+        }
+        else if (e.getActionCommand().equals(CANCEL_LOAD_NAME)) {
+            if (loadWorker != null) {
+                loadWorker.cancel(false);
+                loadProgressBar.setString("Cancelling...");
+                Interface.cancelLoadButton.setEnabled(false);
+            }
+        }
+        else if (e.getActionCommand().equals(FOLLOW_FILE_NAME)) {
+            toogleFollowFile(followFileMenuItem.isSelected());
         }
         else if (e.getActionCommand().equals(EXIT_NAME)) {
             System.exit(0);
@@ -63,15 +94,9 @@ public class MenuListener implements ActionListener {
     }
 
     private void updateSearchBoxValues() {
-        // Only update the boxes once..
-        if (yearBox.getItemCount() == 1) {
-            /* Update Years */
-            ArrayList<Integer> years = new ArrayList<Integer>(RainfallData.getYears());
-            Collections.sort(years);
-            for (Integer s : years) {
-                yearBox.addItem(s);
-                yearBoxGraphs.addItem(s);
-            }
+        updateYearBoxes();
+        // Only update the other boxes once..
+        if (monthBox.getItemCount() == 1) {
             /* Update Months */
             for (int i = 1; i <= 12; i++) {
                 monthBox.addItem(i);
@@ -88,6 +113,63 @@ public class MenuListener implements ActionListener {
         }
     }
 
+    /**
+     * Removes every year from the year boxes, leaving the blank item, so the years
+     * of a newly opened file replace those of the previous one
+     */
+    private void clearYearBoxes() {
+        while (yearBox.getItemCount() > 1) {
+            yearBox.removeItemAt(1);
+        }
+        while (yearBoxGraphs.getItemCount() > 1) {
+            yearBoxGraphs.removeItemAt(1);
+        }
+    }
+
+    /**
+     * Adds any years of the data set which are not yet in the year boxes, keeping
+     * them in order (new years appear while a file is being followed)
+     */
+    private void updateYearBoxes() {
+        ArrayList<Integer> years = new ArrayList<Integer>(RainfallData.getYears());
+        Collections.sort(years);
+        int index = 1; // after the blank item
+        for (Integer year : years) {
+            if (index < yearBox.getItemCount() && year.equals(yearBox.getItemAt(index))) {
+                index++;
+                continue;
+            }
+            yearBox.insertItemAt(year, index);
+            yearBoxGraphs.insertItemAt(year, index);
+            index++;
+        }
+    }
+
+    private void toogleFollowFile(boolean toogle) {
+        if (follower != null) {
+            follower.stop();
+            follower = null;
+        }
+        if (toogle && openFile != null) {
+            follower = new FileFollower(openFile.getAbsolutePath(), RainfallData.getStation(), openFileLength);
+            follower.setListener(new Runnable() {
+                public void run() {
+                    // Called on the follower thread
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            updateYearBoxes();
+                        }
+                    });
+                }
+            });
+            if (!follower.start()) {
+                follower = null;
+                Output.errorToGUI("Unable to follow " + openFile.getName());
+            }
+        }
+        followFileMenuItem.setSelected(follower != null);
+    }
+
     private void toogleSearchBoxes(boolean toogle) {
         yearBox.setEnabled(toogle); yearBoxGraphs.setEnabled(toogle);
         monthBox.setEnabled(toogle); monthBoxGraphs.setEnabled(toogle);
@@ -95,13 +177,44 @@ public class MenuListener implements ActionListener {
         daysBox.setEnabled(toogle); 
     }
 
+    /**
+     * Starts loading a file in the background. The search boxes stay disabled until
+     * it has loaded; the current data set is kept if the load fails or is cancelled.
+     * @param file The file to load
+     */
     private void openLancasterFile(File file) {
-        LancasterReader rf = new LancasterReader();
-        String[] rainfallData = rf.getRainfallData(file.getAbsolutePath());
-        if (rainfallData != null)
-            RainfallData.storeObjects(rainfallData);
-        else
-            Output.errorToGUI("Invalid file type chosen, please try again!");
+        // The follower belongs to the station being replaced
+        toogleFollowFile(false);
+        toogleSearchBoxes(false);
+        followFileMenuItem.setEnabled(false);
+        openLancasterFileMenuItem.setEnabled(false);
+        Interface.setLoadPanelVisible(true);
+
+        loadWorker = new LoadWorker(file);
+        loadWorker.execute();
+    }
+
+    /**
+     * Called on the event dispatch thread once a load has finished, failed or been
+     * cancelled
+     * @param file The file which was being loaded
+     * @param length Number of bytes of the file which were loaded
+     * @param loaded Whether it was loaded and is now the default data set
+     */
+    private void loadFinished(File file, long length, boolean loaded) {
+        loadWorker = null;
+        Interface.setLoadPanelVisible(false);
+        openLancasterFileMenuItem.setEnabled(true);
+
+        if (loaded) {
+            openFile = file;
+            openFileLength = length;
+            clearYearBoxes();
+            updateSearchBoxValues();
+        }
+        // Otherwise the previous data set, if any, is still loaded
+        toogleSearchBoxes(openFile != null);
+        followFileMenuItem.setEnabled(openFile != null);
     }
 
     private void openFileDialogBox(String fileType) {
@@ -115,4 +228,69 @@ public class MenuListener implements ActionListener {
         }
     }
 
+    /**
+     * Loads a file on a worker thread, publishing the bytes and rows read to the
+     * progress bar. The station is only made the default once the worker has
+     * finished on the event dispatch thread without being cancelled, so a cancelled
+     * load never replaces the data set, even if it was past its last progress report
+     * (indexing, writing the snapshot or reading a snapshot) when it was cancelled.
+     */
+    private class LoadWorker extends SwingWorker<StationDataset, long[]> implements ProgressListener {
+
+        private final File file;
+        private volatile long bytesRead = 0;
+
+        LoadWorker(File file) {
+            this.file = file;
+        }
+
+        @Override
+        protected StationDataset doInBackground() {
+            RainfallLoader loader = new RainfallLoader();
+            loader.setProgressListener(this);
+            StationDataset station = loader.readStation(file.getName(), file.getAbsolutePath());
+            bytesRead = loader.getBytesRead();
+            return station;
+        }
+
+        public boolean progress(long bytesRead, long totalBytes, long rows) {
+            publish(new long[] { bytesRead, totalBytes, rows });
+            return !isCancelled();
+        }
+
+        @Override
+        protected void process(List<long[]> chunks) {
+            if (isCancelled())
+                return;
+            long[] latest = chunks.get(chunks.size() - 1);
+            loadProgressBar.setValue(latest[1] == 0 ? 0 : (int)(latest[0] * 1000 / latest[1]));
+            loadProgressBar.setString(String.format("%s: %.1f of %.1f MB, %d rows",
+                    file.getName(), latest[0] / 1048576.0, latest[1] / 1048576.0, latest[2]));
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                Output.print("Cancelled loading " + file.getName());
+                loadFinished(file, 0, false);
+                return;
+            }
+            StationDataset station = null;
+            try {
+                station = get();
+            } catch (InterruptedException ie) {
+                Output.error("LoadWorker: " + ie.getMessage());
+            } catch (ExecutionException ee) {
+                Output.error("LoadWorker: " + ee.getCause());
+            }
+            boolean loaded = station != null;
+            if (loaded)
+                StationRegistry.replaceDefault(station); // the GUI shows one station at a time
+            loadFinished(file, bytesRead, loaded);
+            if (!loaded)
+                Output.errorToGUI("Invalid file type chosen, please try again!");
+        }
+
+    }
+
 }
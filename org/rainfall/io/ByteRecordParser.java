@@ -0,0 +1,126 @@
+package org.rainfall.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Tokenises Hazelrigg data lines directly from bytes. Numbers are read digit by
+ * digit as fixed precision decimals (e.g. 12.3, 0.0, -99.99) so no String objects
+ * are created while parsing; the only per-parser allocation is the day buffer
+ * which is reused for every line. <br /><br />
+ * A line is accepted when it only contains the characters 0-9, space, '.' and '-'
+ * (the same rule as the text reader) and has at least a year and a month column.
+ *
+ * @author Kieran
+ * @see LancasterReader#readRainfallDataMapped(String, RecordHandler)
+ */
+class ByteRecordParser {
+
+    private static final double[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000 };
+
+    private final float[] days = new float[LancasterReader.DAY_COLUMNS];
+    private long records = 0, rejected = 0;
+
+    /**
+     * Parses every complete line in [from, to) of the buffer. from must point at the
+     * start of a line; a final line without a terminating new line is parsed as well.
+     * @param buf Buffer holding the file data
+     * @param from Position of the first byte to parse
+     * @param to Position after the last byte to parse
+     * @param handler Receives each parsed month
+     */
+    void parse(ByteBuffer buf, int from, int to, RecordHandler handler) {
+        int pos = from;
+        while (pos < to) {
+            pos = parseLine(buf, pos, to, handler) + 1;
+        }
+    }
+
+    /**
+     * Number of lines passed to the handler
+     * @return long - record count
+     */
+    long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Number of non-empty lines which were not valid data lines. The header is
+     * skipped before parsing, so only malformed rows are counted.
+     * @return long - rejected line count
+     */
+    long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Parses one line in a single pass over its bytes
+     * @return int - position of the new line character ending the line (or to)
+     */
+    private int parseLine(ByteBuffer buf, int pos, int to, RecordHandler handler) {
+        int year = 0, month = 0, column = 0;
+        byte b = 0;
+
+        while (pos < to && (b = buf.get(pos)) != '\n') {
+            if (b == ' ' || b == '\r') { pos++; continue; } // '\r' tolerates CRLF files
+
+            // Read one token as a fixed precision decimal
+            boolean negative = false, fraction = false, digits = false;
+            long mantissa = 0;
+            int scale = 0;
+            if (b == '-') { negative = true; pos++; }
+            while (pos < to && (b = buf.get(pos)) != ' ' && b != '\n' && b != '\r') {
+                if (b >= '0' && b <= '9') {
+                    if (scale < POWERS_OF_TEN.length - 1 && mantissa < Long.MAX_VALUE / 10) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (fraction) scale++;
+                    }
+                    digits = true;
+                }
+                else if (b == '.' && !fraction) {
+                    fraction = true;
+                }
+                else {
+                    return reject(buf, pos, to); // a stray character or a second '.'/'-' in the token
+                }
+                pos++;
+            }
+            if (!digits)
+                return reject(buf, pos, to);
+
+            if (column == 0 || column == 1) {
+                if (fraction || negative)
+                    return reject(buf, pos, to);
+                if (column == 0) year = (int)mantissa; else month = (int)mantissa;
+            }
+            else if (column - 2 < days.length) {
+                double value = mantissa / POWERS_OF_TEN[scale];
+                days[column - 2] = (float)(negative ? -value : value);
+            }
+            column++;
+        }
+
+        if (column == 0)
+            return pos; // blank line
+        if (column < 2) {
+            rejected++;
+            return pos;
+        }
+        for (int c = column - 2; c < days.length; c++) {
+            days[c] = LancasterReader.MISSING_VALUE;
+        }
+        records++;
+        handler.record(year, month, days);
+        return pos;
+    }
+
+    /**
+     * Counts a rejected line and skips to its end
+     * @return int - position of the new line character ending the line (or to)
+     */
+    private int reject(ByteBuffer buf, int pos, int to) {
+        rejected++;
+        while (pos < to && buf.get(pos) != '\n') pos++;
+        return pos;
+    }
+
+}
@@ -0,0 +1,423 @@
+package org.rainfall.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import org.rainfall.lang.Output;
+
+/**
+ * Writes synthetic data files in the Hazelrigg format, for testing the application
+ * with far more data than the real station files hold. <br /><br />
+ * Rain is simulated day by day with a seeded stochastic model: whether it rains
+ * follows a two-state (wet/dry) Markov chain, so wet and dry spells persist, and
+ * the amount on a wet day is drawn from a gamma distribution. The chance of rain
+ * and the mean amount follow the seasons of a north-west England station, and each
+ * station is given its own overall wetness. Readings go missing both one day at a
+ * time and in longer outages, and the days after the end of each month are filled
+ * with -99.99 as in the real files. <br /><br />
+ * The same seed always gives byte-for-byte the same files. Wet day amounts are
+ * looked up in a table of gamma quantiles drawn once, lines are formatted straight
+ * into bytes and written through a {@link FileChannel} in large blocks, so files
+ * of several gigabytes take seconds. <br /><br />
+ * <pre>
+ *  java org.rainfall.io.DataGenerator [--seed n] [--stations n] [--years n] [--first-year y]
+ *          [--missing fraction] [--outages fraction] output.txt | output-directory
+ * </pre>
+ * One station is written to the given file; with more than one station, files
+ * station1.txt, station2.txt, ... are written into the given directory. Note that
+ * only years from 1950 to the current year are loaded by the application.
+ *
+ * @author Kieran
+ * @see LancasterReader
+ */
+public class DataGenerator {
+
+    /** Seed used when none is given */
+    public static final long DEFAULT_SEED = 1974;
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    /** Years are written in four columns */
+    private static final int MAXIMUM_YEAR = 9999;
+    private static final int LINE_LENGTH = 4 + 6 + 7 * LancasterReader.DAY_COLUMNS + 1;
+    private static final byte[] MISSING = " -99.99".getBytes();
+    /** Readings up to 999.9 mm are copied from pre-formatted text */
+    private static final int FORMATTED_READINGS = 10000;
+    private static final byte[] FORMATTED = new byte[FORMATTED_READINGS * 7];
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    /* Seasonal model, January to December */
+    private static final double[] WET_DAY_CHANCE = { 0.62, 0.55, 0.56, 0.48, 0.47, 0.47, 0.50, 0.53, 0.54, 0.61, 0.64, 0.63 };
+    private static final double[] WET_DAY_MEAN = { 4.6, 4.1, 3.7, 3.3, 3.6, 3.9, 4.4, 5.0, 5.2, 5.4, 5.1, 4.9 };
+    /** How much more likely rain is after a wet day than on average (0 = independent days) */
+    private static final double PERSISTENCE = 0.35;
+    /** Gamma shape of wet day amounts; below 1 gives many light days and a few very heavy ones */
+    private static final double AMOUNT_SHAPE = 0.75;
+    private static final double MEAN_OUTAGE_DAYS = 12;
+    /** Number of gamma quantiles amounts are drawn from */
+    private static final int AMOUNT_TABLE_SIZE = 1 << 16;
+    private static final double UNIT = 1.0 / (1 << 24);
+
+    static {
+        for (int tenths = 0; tenths < FORMATTED_READINGS; tenths++) {
+            formatTenths(FORMATTED, tenths * 7, tenths);
+        }
+    }
+
+    private long seed = DEFAULT_SEED;
+    private int firstYear = 1950;
+    private int years = 50;
+    private double missingDays = 0.01;
+    private double outages = 0.001;
+
+    /**
+     * Main constructor
+     */
+    public DataGenerator() { }
+
+    /**
+     * Sets the seed of the random model
+     * @param seed The seed, files written with the same seed and settings are identical
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the first year of the data
+     * @param firstYear Year of the first line of each file
+     */
+    public void setFirstYear(int firstYear) {
+        this.firstYear = firstYear;
+    }
+
+    /**
+     * Sets the number of years written to each station file
+     * @param years Number of years (12 lines each)
+     */
+    public void setYears(int years) {
+        this.years = years;
+    }
+
+    /**
+     * Sets the chance of a single day's reading being missing
+     * @param missingDays Fraction of days, between 0 and 1
+     */
+    public void setMissingDays(double missingDays) {
+        this.missingDays = missingDays;
+    }
+
+    /**
+     * Sets the chance of an outage starting on any day, during which no readings
+     * are taken for 12 days on average
+     * @param outages Fraction of days, between 0 and 1
+     */
+    public void setOutages(double outages) {
+        this.outages = outages;
+    }
+
+    /**
+     * Writes the data of one station
+     * @param fileLocation The file to write (replaced if it exists)
+     * @param station Number of the station; each station has its own data for a seed
+     * @return long - number of bytes written
+     * @throws IOException if the file cannot be written
+     */
+    public long write(String fileLocation, int station) throws IOException {
+        Station weather = new Station(new SplittableRandom(seed * 31 + station));
+
+        FileChannel channel = FileChannel.open(new File(fileLocation).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        byte[] line = new byte[LINE_LENGTH];
+        long written = 0;
+        try {
+            buf.put((LancasterReader.FILE_HEADER + "\nDaily rainfall totals (mm)\nYear Month Day1 ... Day31\n").getBytes());
+            for (int year = firstYear; year < firstYear + years; year++) {
+                for (int month = 1; month <= 12; month++) {
+                    int length = weather.month(line, year, month);
+                    if (buf.remaining() < length)
+                        written += flush(channel, buf);
+                    buf.put(line, 0, length);
+                }
+            }
+            written += flush(channel, buf);
+        } finally {
+            channel.close();
+        }
+        return written;
+    }
+
+    /**
+     * Writes the data of several stations into a directory
+     * @param directory Directory for the files (created if needed)
+     * @param stations Number of stations
+     * @return File array - station1.txt, station2.txt, ...
+     * @throws IOException if a file cannot be written
+     */
+    public File[] writeStations(File directory, int stations) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create directory " + directory);
+
+        File[] files = new File[stations];
+        for (int s = 0; s < stations; s++) {
+            files[s] = new File(directory, "station" + (s + 1) + ".txt");
+            write(files[s].getPath(), s + 1);
+        }
+        return files;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)))
+            return 29;
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    /**
+     * Sorted draws from the gamma distribution of wet day amounts, in tenths of a
+     * mm for a mean of 1 mm
+     */
+    private static double[] amountTable(SplittableRandom random) {
+        double[] table = new double[AMOUNT_TABLE_SIZE];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = gamma(random, AMOUNT_SHAPE) / AMOUNT_SHAPE * 10;
+        }
+        Arrays.sort(table);
+        return table;
+    }
+
+    /**
+     * Draws from a gamma distribution of the given shape and a scale of 1
+     * (Marsaglia and Tsang's method, boosted for shapes below 1)
+     */
+    private static double gamma(SplittableRandom random, double shape) {
+        if (shape < 1)
+            return gamma(random, shape + 1) * Math.pow(random.nextDouble(), 1 / shape);
+
+        double d = shape - 1.0 / 3, c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x, v;
+            do {
+                x = gaussian(random);
+                v = 1 + c * x;
+            } while (v <= 0);
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v))
+                return d * v;
+        }
+    }
+
+    /**
+     * Draws from the standard normal distribution (polar method)
+     */
+    private static double gaussian(SplittableRandom random) {
+        double x, y, s;
+        do {
+            x = 2 * random.nextDouble() - 1;
+            y = 2 * random.nextDouble() - 1;
+            s = x * x + y * y;
+        } while (s >= 1 || s == 0);
+        return x * Math.sqrt(-2 * Math.log(s) / s);
+    }
+
+    /**
+     * Writes a whole number right aligned in a column of the given width
+     */
+    private static int writeNumber(byte[] line, int pos, int value, int width) {
+        int end = pos + width;
+        int i = end;
+        do {
+            line[--i] = (byte)('0' + value % 10);
+            value /= 10;
+        } while (value > 0 && i > pos);
+        while (i > pos) {
+            line[--i] = ' ';
+        }
+        return end;
+    }
+
+    /**
+     * Writes a reading (in tenths of a mm) as e.g. "   12.3"
+     */
+    private static int formatTenths(byte[] line, int pos, int tenths) {
+        int end = pos + 7;
+        line[end - 1] = (byte)('0' + tenths % 10);
+        line[end - 2] = '.';
+        writeNumber(line, pos, tenths / 10, 5);
+        return end;
+    }
+
+    private static int writeMissing(byte[] line, int pos) {
+        System.arraycopy(MISSING, 0, line, pos, MISSING.length);
+        return pos + MISSING.length;
+    }
+
+    private static int flush(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        int written = buf.remaining();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+        return written;
+    }
+
+    /**
+     * The weather of one station, simulated a month at a time
+     */
+    private class Station {
+
+        private final SplittableRandom random;
+        private final double wetness;
+        private final double[] amounts;
+        private boolean wet = false;
+        private int outage = 0;
+
+        Station(SplittableRandom random) {
+            this.random = random;
+            // Some stations are wetter than others
+            this.wetness = 0.7 + 0.6 * random.nextDouble();
+            this.amounts = amountTable(random);
+        }
+
+        /**
+         * Simulates a month and formats it as a data line
+         * @return int - length of the line, including the new line character
+         */
+        int month(byte[] line, int year, int month) {
+            double chance = WET_DAY_CHANCE[month - 1];
+            double afterWet = chance + PERSISTENCE * (1 - chance), afterDry = chance * (1 - PERSISTENCE);
+            double mean = WET_DAY_MEAN[month - 1] * wetness;
+            int daysInMonth = daysInMonth(year, month);
+
+            int pos = writeNumber(line, 0, year, 4);
+            pos = writeNumber(line, pos, month, 6);
+            for (int day = 1; day <= daysInMonth; day++) {
+                // One draw per day: 24 bits decide rain, 24 bits a missing reading
+                // and 16 bits pick the amount
+                long bits = random.nextLong();
+                wet = (bits >>> 40) * UNIT < (wet ? afterWet : afterDry);
+                double missing = ((bits >>> 16) & 0xFFFFFF) * UNIT;
+                if (outage == 0 && missing < outages)
+                    outage = 1 + (int)(-MEAN_OUTAGE_DAYS * Math.log(1 - random.nextDouble()));
+
+                if (outage > 0) {
+                    outage--;
+                    pos = writeMissing(line, pos);
+                }
+                else if (missing < outages + missingDays) {
+                    pos = writeMissing(line, pos);
+                }
+                else {
+                    int tenths = wet ? Math.max(1, (int)(amounts[(int)bits & (AMOUNT_TABLE_SIZE - 1)] * mean + 0.5)) : 0;
+                    if (tenths < FORMATTED_READINGS) {
+                        for (int i = tenths * 7, end = i + 7; i < end; i++) {
+                            line[pos++] = FORMATTED[i];
+                        }
+                    }
+                    else {
+                        pos = formatTenths(line, pos, Math.min(tenths, 99999));
+                    }
+                }
+            }
+            for (int day = daysInMonth + 1; day <= LancasterReader.DAY_COLUMNS; day++) {
+                pos = writeMissing(line, pos);
+            }
+            line[pos++] = '\n';
+            return pos;
+        }
+
+    }
+
+    /**
+     * Generates data files from the command line
+     * @param args [--seed n] [--stations n] [--years n] [--first-year y]
+     *          [--missing fraction] [--outages fraction] output file or directory
+     */
+    public static void main(String[] args) {
+        DataGenerator generator = new DataGenerator();
+        int stations = 1;
+        int firstYear = generator.firstYear, years = generator.years;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--seed") && i + 1 < args.length) generator.setSeed(parseNumber(args[++i], Long.MIN_VALUE, Long.MAX_VALUE, "--seed takes a whole number"));
+            else if (args[i].equals("--stations") && i + 1 < args.length) stations = (int)parseNumber(args[++i], 1, Integer.MAX_VALUE, "--stations takes a number from 1");
+            else if (args[i].equals("--years") && i + 1 < args.length) years = (int)parseNumber(args[++i], 1, MAXIMUM_YEAR, "--years takes a number from 1");
+            else if (args[i].equals("--first-year") && i + 1 < args.length) firstYear = (int)parseNumber(args[++i], 1, MAXIMUM_YEAR, "--first-year takes a year from 1 to " + MAXIMUM_YEAR);
+            else if (args[i].equals("--missing") && i + 1 < args.length) generator.setMissingDays(parseFraction(args[++i], "--missing takes a fraction of days from 0 to 1"));
+            else if (args[i].equals("--outages") && i + 1 < args.length) generator.setOutages(parseFraction(args[++i], "--outages takes a fraction of days from 0 to 1"));
+            else output = args[i];
+        }
+        if (firstYear + years - 1 > MAXIMUM_YEAR) {
+            Output.error("Years after " + MAXIMUM_YEAR + " do not fit in a data line: --first-year " + firstYear + " --years " + years);
+            usage();
+        }
+        if (output == null)
+            usage();
+        generator.setFirstYear(firstYear);
+        generator.setYears(years);
+
+        long start = System.nanoTime();
+        long bytes = 0;
+        try {
+            if (stations == 1) {
+                bytes = generator.write(output, 1);
+            }
+            else {
+                for (File file : generator.writeStations(new File(output), stations)) {
+                    bytes += file.length();
+                }
+            }
+        } catch (IOException ioe) {
+            Output.error("DataGenerator: " + ioe.getMessage());
+            System.exit(1);
+        }
+        long ms = (System.nanoTime() - start) / 1000000;
+        Output.print("Wrote " + stations + " station(s), " + (bytes / 1024 / 1024) + "MB in " + ms + "ms");
+    }
+
+    /**
+     * Reads a whole number given to an option, printing the problem and the usage and
+     * exiting if it is not a number in range
+     */
+    private static long parseNumber(String value, long min, long max, String problem) {
+        try {
+            long n = Long.parseLong(value);
+            if (n >= min && n <= max)
+                return n;
+        } catch (NumberFormatException nfe) {
+            // Reported below
+        }
+        Output.error(problem + ": " + value);
+        usage();
+        return -1;
+    }
+
+    /**
+     * Reads a fraction given to an option, printing the problem and the usage and
+     * exiting if it is not a number from 0 to 1
+     */
+    private static double parseFraction(String value, String problem) {
+        try {
+            double fraction = Double.parseDouble(value);
+            if (fraction >= 0 && fraction <= 1)
+                return fraction;
+        } catch (NumberFormatException nfe) {
+            // Reported below
+        }
+        Output.error(problem + ": " + value);
+        usage();
+        return -1;
+    }
+
+    private static void usage() {
+        Output.error("Usage: DataGenerator [--seed n] [--stations n] [--years n] [--first-year y] "
+                + "[--missing fraction] [--outages fraction] output.txt | output-directory");
+        System.exit(2);
+    }
+
+}
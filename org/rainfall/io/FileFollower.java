@@ -0,0 +1,270 @@
+package org.rainfall.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import org.rainfall.lang.Output;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+import org.rainfall.store.DayStore;
+
+/**
+ * Follows a data file which is being appended to (tail -f style). The follower
+ * remembers the byte offset of the end of the last complete line it has read and,
+ * whenever the file changes, parses only the bytes after that offset into a new
+ * version of the station, which is published in the {@link StationRegistry} in
+ * place of the version it was built from. Only the new lines are parsed and the
+ * indexes are brought up to date from the first new day, but each version is built
+ * on full copies of the store and indexes, so picking up a new month still costs
+ * time in proportion to the days already loaded (far less than reloading the file,
+ * which parses every line again). <br /><br />
+ * Changes are detected with a {@link WatchService} on the file's directory, on a
+ * daemon thread started by {@link #start()}. {@link #poll()} can also be called
+ * directly to check for new lines. If the file shrinks (it was replaced or
+ * rewritten) the whole file is loaded again and published as a new station under
+ * the same name.
+ *
+ * @author Kieran
+ * @see StationDataset#apply(StationDataset.Update)
+ */
+public class FileFollower {
+
+    private final File file;
+    private final String stationName;
+    private final long loadedLength;
+    private final ByteRecordParser parser = new ByteRecordParser();
+    private long offset = 0;
+    private Runnable listener;
+
+    private WatchService watcher;
+    private Thread thread;
+
+    /**
+     * Main constructor
+     * @param fileLocation The absolute location of the data file, already loaded into the station
+     * @param station The station which receives the appended lines; new versions are
+     *          published under its name
+     * @param loadedLength Number of bytes of the file the station was loaded from
+     *          (see {@link RainfallLoader#getBytesRead()})
+     */
+    public FileFollower(String fileLocation, StationDataset station, long loadedLength) {
+        this.file = new File(fileLocation).getAbsoluteFile();
+        this.stationName = station.getName();
+        this.loadedLength = loadedLength;
+    }
+
+    /**
+     * Sets a listener which is run (on the follower thread) after new lines have been
+     * stored and the new version of the station published
+     * @param listener Listener to run, or null for none
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts following the file from the end of the part the station was loaded from.
+     * Lines appended since the load are read straight away; a final line without a
+     * new line is read again once it has been completed.
+     * @return true if the file is being followed
+     */
+    public synchronized boolean start() {
+        if (thread != null)
+            return true;
+
+        try {
+            // A file shorter than what was loaded has been rewritten, which the first poll picks up
+            offset = loadedLength <= file.length() ? endOfLastLine(loadedLength) : loadedLength;
+            watcher = FileSystems.getDefault().newWatchService();
+            file.getParentFile().toPath().register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException ioe) {
+            Output.error("FileFollower.start(): Unable to watch " + file + ": " + ioe.getMessage());
+            return false;
+        }
+
+        thread = new Thread(new Runnable() {
+            public void run() {
+                follow();
+            }
+        }, "rainfall-follower-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+        Output.print("Following file: " + file);
+        poll();
+        return true;
+    }
+
+    /**
+     * Stops following the file
+     */
+    public synchronized void stop() {
+        if (thread == null)
+            return;
+        try {
+            watcher.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        thread.interrupt();
+        thread = null;
+        Output.print("Stopped following file: " + file);
+    }
+
+    /**
+     * Checks whether the file is being followed
+     * @return true between {@link #start()} and {@link #stop()}
+     */
+    public synchronized boolean isFollowing() {
+        return thread != null;
+    }
+
+    /**
+     * Reads any complete lines appended since the last poll into the station. If the
+     * file has shrunk (it was replaced or rewritten) it is loaded again from the start.
+     * @return int - number of data lines stored, or the number of days loaded if the
+     *          file was loaded again
+     */
+    public synchronized int poll() {
+        long size = file.length();
+        if (size < offset)
+            return reload();
+        if (size == offset)
+            return 0;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate((int)(size - offset));
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, offset + buf.position()) <= 0) break;
+            }
+
+            // Leave a line which is still being written for the next poll
+            int end = buf.position();
+            while (end > 0 && buf.get(end - 1) != '\n') end--;
+            if (end == 0)
+                return 0;
+
+            final StationDataset.Update update = new StationDataset.Update();
+            parser.parse(buf, 0, end, new RecordHandler() {
+                public void record(int year, int month, float[] days) {
+                    update.storeMonth(year, month, days);
+                }
+            });
+            offset += end;
+
+            if (update.size() > 0) {
+                if (StationRegistry.update(stationName, update) == null) {
+                    Output.error("FileFollower.poll(): Station " + stationName + " is no longer loaded");
+                    return 0;
+                }
+                if (listener != null)
+                    listener.run();
+            }
+            return update.size();
+        } catch (IOException ioe) {
+            Output.error("FileFollower.poll(): Unable to read " + file + ": " + ioe.getMessage());
+            return 0;
+        } finally {
+            try {
+                if (raf != null) raf.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Loads the whole file into a new station which replaces the followed one, so
+     * days which were removed from the file don't stay in the station
+     * @return int - number of days loaded
+     */
+    private int reload() {
+        Output.print("File was truncated, loading again: " + file);
+        RainfallLoader loader = new RainfallLoader();
+        DayStore store = loader.readStore(file.getPath());
+        if (store == null) {
+            Output.error("FileFollower.poll(): Unable to load " + file + " again");
+            return 0;
+        }
+        StationDataset next = new StationDataset(stationName, store);
+        while (true) {
+            StationDataset current = StationRegistry.get(stationName);
+            if (current == null) {
+                Output.error("FileFollower.poll(): Station " + stationName + " is no longer loaded");
+                return 0;
+            }
+            if (StationRegistry.replace(current, next))
+                break;
+        }
+        try {
+            offset = endOfLastLine(loader.getBytesRead());
+        } catch (IOException ioe) {
+            offset = loader.getBytesRead();
+        }
+        if (listener != null)
+            listener.run();
+        return store.size();
+    }
+
+    /**
+     * Waits for changes to the watched directory and polls when the data file changes
+     */
+    private void follow() {
+        Path name = file.toPath().getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context()))
+                        changed = true;
+                }
+                if (changed)
+                    poll();
+                if (!key.reset())
+                    break;
+            }
+        } catch (InterruptedException ie) {
+            // stopped
+        } catch (ClosedWatchServiceException cwse) {
+            // stopped
+        }
+    }
+
+    /**
+     * Finds the offset just after the last new line in the first size bytes of the file
+     */
+    private long endOfLastLine(long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long pos = size;
+            byte[] block = new byte[4096];
+            while (pos > 0) {
+                int length = (int)Math.min(block.length, pos);
+                raf.seek(pos - length);
+                raf.readFully(block, 0, length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (block[i] == '\n')
+                        return pos - length + i + 1;
+                }
+                pos -= length;
+            }
+            return 0;
+        } finally {
+            raf.close();
+        }
+    }
+
+}
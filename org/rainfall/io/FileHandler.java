@@ -30,7 +30,7 @@ public class FileHandler {
         FileReader fr = null;
         BufferedReader br = null;
         String dataLine = "";
-        String data = "";
+        StringBuilder data = new StringBuilder();
 
         Output.print("Opening file: " + fileLocation);
 
@@ -39,7 +39,7 @@ public class FileHandler {
             br = new BufferedReader(fr);
 
             while ((dataLine = br.readLine()) != null) {
-                data += dataLine + '\n';
+                data.append(dataLine).append('\n');
             }
         } catch (FileNotFoundException e) {
             e.printStackTrace();
@@ -56,7 +56,7 @@ public class FileHandler {
             Output.print("Closing file: " + fileLocation);
         }
 
-        return data;
+        return data.toString();
     }
 
     /**
@@ -1,7 +1,16 @@
 package org.rainfall.io;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import org.rainfall.lang.Output;
+import org.rainfall.metrics.Metrics;
 
 /**
  * Adds a layer of abstraction from the FileHandler class due to the specific
@@ -11,6 +20,22 @@ import org.rainfall.lang.Output;
  */
 public class LancasterReader extends FileHandler {
 
+    /** Header text which identifies a Hazelrigg data file */
+    public static final String FILE_HEADER = "Hazelrigg Weather Station, Lancaster University";
+    /** Number of day columns on each data line */
+    public static final int DAY_COLUMNS = 31;
+    /** Fill value used for days without a reading */
+    public static final float MISSING_VALUE = -99.99F;
+
+    /** Largest region of a file mapped at once by the memory-mapped reader */
+    static final int MAP_WINDOW_SIZE = 256 * 1024 * 1024;
+    /** Bytes parsed between progress reports */
+    static final int PROGRESS_BLOCK_SIZE = 1024 * 1024;
+
+    private ProgressListener progressListener;
+    /** Bytes of the file covered by the last successful mapped or parallel read */
+    long bytesRead = 0;
+
     /**
      * Main constructor
      */
@@ -18,6 +43,25 @@ public class LancasterReader extends FileHandler {
         super();
     }
 
+    /**
+     * Sets a listener to report the progress of {@link #readRainfallDataMapped(String, RecordHandler)}
+     * to, which may also cancel the read
+     * @param progressListener The listener, or null for none
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Number of bytes of the file the last successful call to
+     * {@link #readRainfallDataMapped(String, RecordHandler)} read, which is where a
+     * {@link FileFollower} should continue from
+     * @return long - length of the file when it was opened
+     */
+    long getBytesRead() {
+        return bytesRead;
+    }
+
     /**
      * Organises and sanitizes all the data from the file. For example data is structured
      * such that: 1974      1    0.0    0.0    0.0    1.2 [...]
@@ -33,13 +77,19 @@ public class LancasterReader extends FileHandler {
         }
         
         // Read the file (like any other)
+        long start = System.nanoTime();
         String rawData = super.readFile( fileLocation );
 
         if (!rawData.equals("readFile():error") && !rawData.equals("")) {
             // Extract line by line into array
             String[] rawDataLines = super.extractLines( rawData );
-            if (isValidFile(rawDataLines))
-                return sanitizeData( rawDataLines ); // Remove any unwanted data
+            if (isValidFile(rawDataLines)) {
+                long lines = countNonBlank(rawDataLines);
+                String[] data = sanitizeData( rawDataLines ); // Remove any unwanted data
+                Metrics.recordParse(fileLocation, rawData.length(), lines, data.length,
+                        lines - 1 - data.length, System.nanoTime() - start);
+                return data;
+            }
             else {
                 Output.error("getRainfallData(): Invalid file type.");
                 return null;
@@ -51,14 +101,250 @@ public class LancasterReader extends FileHandler {
         }
     }
 
-    private boolean isValidFile(String[] data) {
-        if (data[0].contains("Hazelrigg Weather Station, Lancaster University"))
+    /**
+     * Streams the data file line by line, passing each month straight to the given
+     * handler. Only the current line is held in memory, so files of any size can be
+     * loaded without building the file up as a String. Unlike the mapped reader it
+     * also reads files which can't be mapped, such as named pipes.
+     * @param fileLocation The absolute location of the data file
+     * @param handler Receives each (year, month, days) record as it is parsed
+     * @return true if the file was read, false if it was invalid or could not be read
+     */
+    public boolean readRainfallData(String fileLocation, RecordHandler handler) {
+        if (!fileLocation.endsWith(".txt")) {
+            Output.error("readRainfallData(): Invalid file type.");
+            return false;
+        }
+
+        BufferedReader br = null;
+        Output.print("Opening file: " + fileLocation);
+
+        try {
+            long start = System.nanoTime();
+            br = new BufferedReader(new FileReader(fileLocation));
+
+            String line = br.readLine();
+            if (line == null || !isValidHeader(line)) {
+                Output.error("readRainfallData(): Invalid file type.");
+                return false;
+            }
+
+            float[] days = new float[DAY_COLUMNS]; // reused for every line
+            long rows = 0, rejected = 0;
+            while ((line = br.readLine()) != null) {
+                if (isBlank(line))
+                    continue;
+                if (isDataLine(line) && parseLine(line, days, handler))
+                    rows++;
+                else
+                    rejected++;
+            }
+            Metrics.recordParse(fileLocation, new File(fileLocation).length(), 1 + rows + rejected, rows, rejected,
+                    System.nanoTime() - start);
             return true;
-        else
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            Output.error("readRainfallData(): There was an error reading the file.");
             return false;
+        } finally {
+            try {
+                if (br != null) br.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            Output.print("Closing file: " + fileLocation);
+        }
     }
 
-    private String[] sanitizeData(String[] fileData) {
+    /**
+     * Memory-maps the data file and tokenises the numeric columns directly from
+     * the mapped bytes, without creating a String for each line or value. This is
+     * considerably faster than {@link #readRainfallData(String, RecordHandler)} on
+     * large files. Files bigger than the map window are mapped a window at a time,
+     * each window ending on a line boundary. Progress is reported to the
+     * {@link ProgressListener}, if one is set, after every block of lines.
+     * @param fileLocation The absolute location of the data file
+     * @param handler Receives each (year, month, days) record as it is parsed
+     * @return true if the file was read, false if it was invalid, could not be read or
+     *          the read was cancelled
+     */
+    public boolean readRainfallDataMapped(String fileLocation, RecordHandler handler) {
+        if (!fileLocation.endsWith(".txt")) {
+            Output.error("readRainfallDataMapped(): Invalid file type.");
+            return false;
+        }
+
+        RandomAccessFile raf = null;
+        Output.print("Opening file: " + fileLocation);
+
+        try {
+            long started = System.nanoTime();
+            raf = new RandomAccessFile(fileLocation, "r");
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            ByteRecordParser parser = new ByteRecordParser();
+            long position = 0;
+            boolean header = true;
+
+            while (position < size) {
+                int windowSize = (int)Math.min(MAP_WINDOW_SIZE, size - position);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+
+                // Only parse up to the last complete line unless this is the end of the file
+                int end = windowSize;
+                if (position + windowSize < size) {
+                    while (end > 0 && buf.get(end - 1) != '\n') end--;
+                    if (end == 0) {
+                        Output.error("readRainfallDataMapped(): Line too long, invalid file type.");
+                        return false;
+                    }
+                }
+
+                int start = 0;
+                if (header) {
+                    start = skipHeader(buf, end);
+                    if (start < 0) {
+                        Output.error("readRainfallDataMapped(): Invalid file type.");
+                        return false;
+                    }
+                    header = false;
+                }
+
+                if (progressListener == null) {
+                    parser.parse(buf, start, end, handler);
+                }
+                else {
+                    // Parse a block at a time (each ending on a line) to report progress
+                    while (start < end) {
+                        int blockEnd = Math.min(start + PROGRESS_BLOCK_SIZE, end);
+                        while (blockEnd < end && buf.get(blockEnd - 1) != '\n') blockEnd++;
+                        parser.parse(buf, start, blockEnd, handler);
+                        start = blockEnd;
+                        if (!progressListener.progress(position + start, size, parser.getRecordCount())) {
+                            Output.print("Cancelled reading: " + fileLocation);
+                            return false;
+                        }
+                    }
+                }
+                position += end;
+            }
+            if (header) {
+                Output.error("readRainfallDataMapped(): Empty file, invalid file type.");
+                return false;
+            }
+
+            Metrics.recordParse(fileLocation, size, 1 + parser.getRecordCount() + parser.getRejectedCount(),
+                    parser.getRecordCount(), parser.getRejectedCount(), System.nanoTime() - started);
+            bytesRead = size;
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            Output.error("readRainfallDataMapped(): There was an error reading the file.");
+            return false;
+        } finally {
+            try {
+                if (raf != null) raf.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            Output.print("Closing file: " + fileLocation);
+        }
+    }
+
+    /**
+     * Validates the header line at the start of a mapped file
+     * @param buf Buffer holding the start of the file
+     * @param end Position after the last byte which may be read
+     * @return int - position of the line after the header or -1 if the header is invalid
+     */
+    int skipHeader(ByteBuffer buf, int end) {
+        int lineEnd = 0;
+        while (lineEnd < end && buf.get(lineEnd) != '\n') lineEnd++;
+
+        byte[] line = new byte[lineEnd];
+        buf.get(line);
+        buf.rewind();
+        return isValidHeader(new String(line)) ? Math.min(lineEnd + 1, end) : -1;
+    }
+
+    private boolean isValidFile(String[] data) {
+        return isValidHeader(data[0]);
+    }
+
+    private boolean isValidHeader(String line) {
+        return line.contains(FILE_HEADER);
+    }
+
+    private boolean isBlank(String line) {
+        return line.trim().length() == 0;
+    }
+
+    private long countNonBlank(String[] lines) {
+        long count = 0;
+        for (String line : lines) {
+            if (!isBlank(line)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Equivalent of matching the line against ^[0-9 .-]+$ without the regex
+     */
+    private boolean isDataLine(String line) {
+        int length = line.length();
+        if (length == 0)
+            return false;
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if ((c < '0' || c > '9') && c != ' ' && c != '.' && c != '-')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Splits a data line on runs of spaces into the year, month and day columns
+     * and passes them to the handler. Malformed lines are skipped.
+     * @return true if the line was passed to the handler, false if it was malformed
+     */
+    private boolean parseLine(String line, float[] days, RecordHandler handler) {
+        int year = 0, month = 0, column = 0, length = line.length(), i = 0;
+
+        try {
+            while (i < length) {
+                while (i < length && line.charAt(i) == ' ') i++;
+                if (i == length) break;
+                int start = i;
+                while (i < length && line.charAt(i) != ' ') i++;
+
+                if (column == 0)
+                    year = Integer.parseInt(line.substring(start, i));
+                else if (column == 1)
+                    month = Integer.parseInt(line.substring(start, i));
+                else if (column - 2 < days.length)
+                    days[column - 2] = Float.parseFloat(line.substring(start, i));
+                column++;
+            }
+        } catch (NumberFormatException nfe) {
+            Output.error("readRainfallData(): Skipping malformed line: " + line);
+            return false;
+        }
+
+        if (column < 2)
+            return false;
+        for (int c = column - 2; c < days.length; c++) {
+            days[c] = MISSING_VALUE;
+        }
+        handler.record(year, month, days);
+        return true;
+    }
+
+    /**
+     * Keeps only the data lines of a file, with their spaces trimmed
+     * @param fileData Every line of the file (the array is modified)
+     * @return String array of the data lines
+     */
+    String[] sanitizeData(String[] fileData) {
         // We don't know the size of the array we're going to create so use arraylist
         ArrayList<String> data = new ArrayList<String>();
 
@@ -0,0 +1,217 @@
+package org.rainfall.io;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.rainfall.lang.Output;
+import org.rainfall.metrics.Metrics;
+
+/**
+ * Loads large data files on several threads. The file is split into chunks which
+ * end on line boundaries, each chunk is memory-mapped and parsed on a ForkJoinPool
+ * into its own {@link RecordBatch}, and the batches are then handed to the record
+ * handler one after another in file order. The handler is therefore only ever
+ * called from the calling thread and sees the months in the same order as the
+ * single threaded readers.
+ *
+ * @author Kieran
+ * @see LancasterReader#readRainfallDataMapped(String, RecordHandler)
+ * @see RainfallLoader#setParallelism(int)
+ */
+public class ParallelLancasterReader extends LancasterReader {
+
+    /** Files smaller than this are not worth splitting */
+    private static final int MINIMUM_CHUNK_SIZE = 1024 * 1024;
+    /** Chunks per thread, so a slow chunk doesn't leave the other threads idle */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** Approximate number of bytes per data line, used to size the batches */
+    private static final int BYTES_PER_LINE = 230;
+
+    private final int parallelism;
+
+    /**
+     * Creates a reader which uses one thread per available processor
+     */
+    public ParallelLancasterReader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a reader with a fixed number of parsing threads
+     * @param parallelism Number of threads used to parse the file
+     */
+    public ParallelLancasterReader(int parallelism) {
+        super();
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Number of threads used to parse the file
+     * @return int - parallelism level
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Parses the data file in parallel chunks and passes every month to the handler
+     * in file order.
+     * @param fileLocation The absolute location of the data file
+     * @param handler Receives each (year, month, days) record (on the calling thread)
+     * @return true if the file was read, false if it was invalid or could not be read
+     */
+    public boolean readRainfallDataParallel(String fileLocation, RecordHandler handler) {
+        if (!fileLocation.endsWith(".txt")) {
+            Output.error("readRainfallDataParallel(): Invalid file type.");
+            return false;
+        }
+
+        RandomAccessFile raf = null;
+        ForkJoinPool pool = null;
+        Output.print("Opening file: " + fileLocation);
+
+        try {
+            long start = System.nanoTime();
+            raf = new RandomAccessFile(fileLocation, "r");
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+
+            long dataStart = findDataStart(channel, size);
+            if (dataStart < 0) {
+                Output.error("readRainfallDataParallel(): Invalid file type.");
+                return false;
+            }
+
+            long[] bounds = splitOnLines(channel, dataStart, size);
+            ArrayList<ChunkTask> tasks = new ArrayList<ChunkTask>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                tasks.add(new ChunkTask(channel, bounds[i], bounds[i + 1]));
+            }
+
+            pool = new ForkJoinPool(parallelism);
+            for (ChunkTask task : tasks) {
+                pool.execute(task);
+            }
+
+            // Merge in file order as each chunk completes
+            long rows = 0, rejected = 0;
+            for (ChunkTask task : tasks) {
+                RecordBatch batch = task.join();
+                if (batch == null) {
+                    Output.error("readRainfallDataParallel(): There was an error reading the file.");
+                    return false;
+                }
+                batch.replay(handler);
+                rows += batch.size();
+                rejected += batch.getRejectedCount();
+            }
+            Metrics.recordParse(fileLocation, size, 1 + rows + rejected, rows, rejected, System.nanoTime() - start);
+            bytesRead = size;
+            return true;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            Output.error("readRainfallDataParallel(): There was an error reading the file.");
+            return false;
+        } finally {
+            if (pool != null) pool.shutdownNow();
+            try {
+                if (raf != null) raf.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            Output.print("Closing file: " + fileLocation);
+        }
+    }
+
+    /**
+     * Validates the header and finds the position of the line after it
+     * @return long - position of the first line after the header or -1 if invalid
+     */
+    private long findDataStart(FileChannel channel, long size) throws IOException {
+        int window = (int)Math.min(size, 64 * 1024);
+        if (window == 0)
+            return -1;
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, window);
+        return skipHeader(buf, window);
+    }
+
+    /**
+     * Splits [start, size) into chunks which each begin at the start of a line
+     * @return long[] - chunk boundaries, the first being start and the last size
+     */
+    private long[] splitOnLines(FileChannel channel, long start, long size) throws IOException {
+        long length = size - start;
+        long chunkSize = Math.max(MINIMUM_CHUNK_SIZE, length / ((long)parallelism * CHUNKS_PER_THREAD));
+        chunkSize = Math.min(chunkSize, MAP_WINDOW_SIZE / 2); // leave room to extend to the next line
+
+        ArrayList<Long> bounds = new ArrayList<Long>();
+        bounds.add(start);
+        ByteBuffer scan = ByteBuffer.allocate(4096);
+        long position = start + chunkSize;
+
+        while (position < size) {
+            // Move the boundary forward to just after the next new line
+            long boundary = -1;
+            while (boundary < 0 && position < size) {
+                scan.clear();
+                int read = channel.read(scan, position);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (scan.get(i) == '\n') { boundary = position + i + 1; break; }
+                }
+                if (boundary < 0) position += read;
+            }
+            if (boundary < 0 || boundary >= size) break;
+
+            bounds.add(boundary);
+            position = boundary + chunkSize;
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Maps and parses one chunk of the file
+     */
+    private static class ChunkTask extends RecursiveTask<RecordBatch> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long from, to;
+
+        ChunkTask(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RecordBatch compute() {
+            int length = (int)(to - from);
+            RecordBatch batch = new RecordBatch(length / BYTES_PER_LINE + 1);
+            try {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+                ByteRecordParser parser = new ByteRecordParser();
+                parser.parse(buf, 0, length, batch);
+                batch.setRejectedCount(parser.getRejectedCount());
+                return batch;
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                return null;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.rainfall.io;
+
+/**
+ * Receives progress reports while a data file is being parsed, and can cancel
+ * the parse.
+ *
+ * @author Kieran
+ * @see LancasterReader#setProgressListener(ProgressListener)
+ */
+public interface ProgressListener {
+
+    /**
+     * Called on the reading thread after each block of the file has been parsed
+     * @param bytesRead Bytes of the file parsed so far
+     * @param totalBytes Size of the file
+     * @param rows Data rows (months) parsed so far
+     * @return true to carry on reading, false to cancel the parse
+     */
+    boolean progress(long bytesRead, long totalBytes, long rows);
+
+}
@@ -0,0 +1,179 @@
+package org.rainfall.io;
+
+import java.io.File;
+import org.rainfall.lang.Output;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+import org.rainfall.store.DayStore;
+import org.rainfall.store.SnapshotFile;
+import org.rainfall.util.Date;
+
+/**
+ * Loads data files into the {@link StationRegistry}, using a binary snapshot of the
+ * data when one exists that was made from the text file as it is now. When the text file has to
+ * be parsed a snapshot is written next to it so the next load is near-instant.
+ *
+ * @author Kieran
+ * @see SnapshotFile
+ */
+public class RainfallLoader {
+
+    private boolean writeSnapshots = true;
+    private int parallelism = Integer.getInteger("rainfall.loadThreads", 1);
+    private ProgressListener progressListener;
+    private long bytesRead = 0;
+
+    /**
+     * Main constructor
+     */
+    public RainfallLoader() { }
+
+    /**
+     * Enables or disables writing a snapshot after parsing a text file
+     * @param writeSnapshots true to save snapshots (the default)
+     */
+    public void setWriteSnapshots(boolean writeSnapshots) {
+        this.writeSnapshots = writeSnapshots;
+    }
+
+    /**
+     * Sets the number of threads used to parse text files. With more than one the
+     * file is split into chunks which are parsed in parallel by a
+     * {@link ParallelLancasterReader}; that reader doesn't report progress, so the
+     * progress listener is not called and the load can't be cancelled. Defaults to
+     * one, or to -Drainfall.loadThreads=&lt;n&gt; when set.
+     * @param parallelism Number of parsing threads
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Sets a listener to report the progress of parsing text files to, which may
+     * also cancel the load (snapshots are read without progress reports)
+     * @param progressListener The listener, or null for none
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Length of the data file the last store loaded by this loader was read from,
+     * whether it came from the text file or from a snapshot of it. Lines appended
+     * after this offset are not in the store, so a {@link FileFollower} for the
+     * file starts from here.
+     * @return long - bytes read, 0 for a file which isn't a regular file
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Loads a Lancaster data file as a station named after the file and makes it the
+     * default station, replacing the data set RainfallData operates on. The default
+     * station is only replaced once the whole file has been loaded.
+     * @param fileLocation The absolute location of the .txt data file
+     * @return true if the data was loaded
+     */
+    public boolean load(String fileLocation) {
+        StationDataset station = loadStation(new File(fileLocation).getName(), fileLocation);
+        if (station == null)
+            return false;
+
+        StationRegistry.setDefault(station);
+        return true;
+    }
+
+    /**
+     * Loads a Lancaster data file as a station, leaving the default station untouched.
+     * A station already registered under the name is replaced.
+     * @param name The name to register the station under
+     * @param fileLocation The absolute location of the .txt data file
+     * @return StationDataset - the registered station or null if the file could not be loaded
+     */
+    public StationDataset loadStation(String name, String fileLocation) {
+        StationDataset station = readStation(name, fileLocation);
+        if (station == null)
+            return null;
+
+        return StationRegistry.register(station);
+    }
+
+    /**
+     * Loads a Lancaster data file as a station without registering it, so the caller
+     * can decide whether to publish it (e.g. only if the load was not cancelled)
+     * @param name The name the station will be registered under
+     * @param fileLocation The absolute location of the .txt data file
+     * @return StationDataset - the station or null if the file could not be loaded
+     */
+    public StationDataset readStation(String name, String fileLocation) {
+        DayStore store = readStore(fileLocation);
+        if (store == null)
+            return null;
+
+        return new StationDataset(name, store);
+    }
+
+    /**
+     * Reads a Lancaster data file into a new store without touching the loaded data
+     * @param fileLocation The absolute location of the .txt data file
+     * @return DayStore - the data from the file or null if it could not be loaded
+     */
+    public DayStore readStore(String fileLocation) {
+        File dataFile = new File(fileLocation);
+        bytesRead = 0;
+
+        // Taken before the snapshot is checked, so a fresh snapshot was made from exactly this many bytes
+        long sourceLength = dataFile.length();
+        if (SnapshotFile.isFresh(dataFile)) {
+            long start = System.nanoTime();
+            DayStore store = SnapshotFile.read(SnapshotFile.snapshotFor(dataFile));
+            if (store != null) {
+                Output.print("Loaded snapshot of " + fileLocation + " in "
+                        + (System.nanoTime() - start) / 1000000 + "ms");
+                bytesRead = sourceLength;
+                return store;
+            }
+            // fall through and rebuild an unreadable snapshot from the text file
+        }
+
+        // Taken before parsing, so the snapshot of a file which changes while it is read is never used
+        sourceLength = dataFile.length();
+        long sourceModified = dataFile.lastModified();
+
+        final DayStore store = new DayStore();
+        RecordHandler handler = new RecordHandler() {
+            public void record(int year, int month, float[] days) {
+                // Dates outside of the supported range are never looked up
+                if (Date.isSupported(year, month))
+                    store.putMonth(year, month, days);
+            }
+        };
+        boolean read;
+        LancasterReader reader = null;
+        if (!dataFile.isFile()) {
+            // A pipe or device can't be memory-mapped or split, so stream it a line at a time
+            read = new LancasterReader().readRainfallData(fileLocation, handler);
+        }
+        else if (parallelism > 1) {
+            ParallelLancasterReader parallelReader = new ParallelLancasterReader(parallelism);
+            read = parallelReader.readRainfallDataParallel(fileLocation, handler);
+            reader = parallelReader;
+        }
+        else {
+            reader = new LancasterReader();
+            reader.setProgressListener(progressListener);
+            read = reader.readRainfallDataMapped(fileLocation, handler);
+        }
+        if (!read)
+            return null;
+
+        if (reader != null)
+            bytesRead = reader.getBytesRead();
+
+        if (writeSnapshots && dataFile.isFile())
+            SnapshotFile.write(store, SnapshotFile.snapshotFor(dataFile), sourceLength, sourceModified);
+        return store;
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.rainfall.io;
+
+/**
+ * Buffers parsed months in primitive arrays so that a chunk of a file can be
+ * parsed on one thread and handed to the store later on another, in file order.
+ *
+ * @author Kieran
+ * @see ParallelLancasterReader
+ */
+class RecordBatch implements RecordHandler {
+
+    private static final int COLUMNS = LancasterReader.DAY_COLUMNS;
+
+    private int[] years, months;
+    private float[] days;
+    private int size = 0;
+    private long rejected = 0;
+
+    /**
+     * @param expectedRecords Initial capacity (the batch grows if it is exceeded)
+     */
+    RecordBatch(int expectedRecords) {
+        int capacity = Math.max(expectedRecords, 16);
+        years = new int[capacity];
+        months = new int[capacity];
+        days = new float[capacity * COLUMNS];
+    }
+
+    /**
+     * Copies a parsed month into the batch
+     * @param year The year of the readings
+     * @param month The month of the readings
+     * @param values Rainfall for day 1 onwards
+     */
+    public void record(int year, int month, float[] values) {
+        if (size == years.length)
+            grow();
+        years[size] = year;
+        months[size] = month;
+        System.arraycopy(values, 0, days, size * COLUMNS, COLUMNS);
+        size++;
+    }
+
+    /**
+     * Passes every buffered month to a handler in the order they were recorded
+     * @param handler Receives each month
+     */
+    void replay(RecordHandler handler) {
+        float[] values = new float[COLUMNS];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(days, i * COLUMNS, values, 0, COLUMNS);
+            handler.record(years[i], months[i], values);
+        }
+    }
+
+    /**
+     * Number of buffered months
+     * @return int - record count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Number of lines of the chunk which were not data lines
+     * @return long - rejected line count
+     */
+    long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * @param rejected Number of lines of the chunk which were not data lines
+     */
+    void setRejectedCount(long rejected) {
+        this.rejected = rejected;
+    }
+
+    private void grow() {
+        int capacity = years.length * 2;
+        int[] grownYears = new int[capacity];
+        int[] grownMonths = new int[capacity];
+        float[] grownDays = new float[capacity * COLUMNS];
+        System.arraycopy(years, 0, grownYears, 0, size);
+        System.arraycopy(months, 0, grownMonths, 0, size);
+        System.arraycopy(days, 0, grownDays, 0, size * COLUMNS);
+        years = grownYears;
+        months = grownMonths;
+        days = grownDays;
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.rainfall.io;
+
+/**
+ * Receives each month of rainfall data as it is parsed from a data file, allowing
+ * readers to feed a store directly without building the whole file in memory.
+ *
+ * @author Kieran
+ * @see LancasterReader#readRainfallData(String, RecordHandler)
+ */
+public interface RecordHandler {
+
+    /**
+     * Called once for every data line read from the file
+     * @param year The year of the readings
+     * @param month The month of the readings
+     * @param days Rainfall for day 1 onwards, with -99.99 for days that have no
+     *          reading. The array is reused for the next line so it must be copied
+     *          if it is kept.
+     */
+    public void record(int year, int month, float[] days);
+
+}
@@ -1,5 +1,6 @@
 package org.rainfall.lang;
 
+import java.io.PrintStream;
 import javax.swing.JOptionPane;
 
 /**
@@ -12,13 +13,25 @@ import javax.swing.JOptionPane;
 public class Output
 {
 
+    private static PrintStream messages = System.out;
+
     /**
      * Prints a given message to console
      * @param message String to send to console
      */
     public static void print(String message)
     {
-        System.out.println(message);
+        messages.println(message);
+    }
+
+    /**
+     * Changes where {@link #print(String)} sends messages, e.g. to the error stream
+     * when the output stream is used for results
+     * @param stream Stream to print messages to
+     */
+    public static void setMessageStream(PrintStream stream)
+    {
+        messages = stream;
     }
 
     /**
@@ -0,0 +1,187 @@
+package org.rainfall.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, in the style of HdrHistogram. Values are
+ * counted in buckets which are exact below 64ns and above that split each power
+ * of two into 64 sub-buckets, so any recorded value is known to within about 1.6%
+ * from 1ns up to {@link #HIGHEST_TRACKABLE_VALUE} (larger values are counted in
+ * the last bucket). <br /><br />
+ * Recording is a bucket calculation and an atomic increment; nothing is allocated,
+ * so it is safe to record on every query from any number of threads.
+ *
+ * @author Kieran
+ * @see Metrics
+ */
+public class LatencyHistogram {
+
+    /** Largest value counted in its own bucket, about 68 seconds */
+    public static final long HIGHEST_TRACKABLE_VALUE = (1L << 36) - 1;
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = bucketOf(HIGHEST_TRACKABLE_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Main constructor
+     * @param name What is being timed, e.g. a query method name
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * What is being timed
+     * @return String - the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records one latency
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucketOf(Math.min(nanos, HIGHEST_TRACKABLE_VALUE)));
+        total.addAndGet(nanos);
+
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) { }
+    }
+
+    /**
+     * Records the time since a timer was started, if metrics are enabled
+     * @param start Value returned by {@link Metrics#startTimer()}
+     */
+    public void recordSince(long start) {
+        if (Metrics.ENABLED)
+            record(System.nanoTime() - start);
+    }
+
+    /**
+     * Number of latencies recorded
+     * @return long - count
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Mean of the recorded latencies
+     * @return double - mean in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double)total.get() / count;
+    }
+
+    /**
+     * Largest recorded latency
+     * @return long - exact maximum in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Latency below which a percentage of the recorded latencies fall
+     * @param percentile e.g. 99.0 for the 99th percentile
+     * @return long - the highest value in the bucket holding the percentile
+     *          (never more than the maximum), 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0)
+            return 0;
+
+        long target = Math.max(1, (long)Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target)
+                return Math.min(highestValueIn(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Clears every recorded latency
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Summary of the histogram
+     * @return String - e.g. "getTotalYearlyRainfall count=10 mean=0.8us p50=0.7us ..."
+     */
+    @Override
+    public String toString() {
+        return String.format("%-40s count=%-9d mean=%-10s p50=%-10s p90=%-10s p99=%-10s p99.9=%-10s max=%s",
+                name, getCount(), format((long)getMean()), format(getValueAtPercentile(50)),
+                format(getValueAtPercentile(90)), format(getValueAtPercentile(99)),
+                format(getValueAtPercentile(99.9)), format(getMax()));
+    }
+
+    /**
+     * Formats a latency with a sensible unit, e.g. 850ns, 12.4us, 3.1ms, 2.0s
+     * @param nanos Latency in nanoseconds
+     * @return String - formatted latency
+     */
+    public static String format(long nanos) {
+        if (nanos < 1000)
+            return nanos + "ns";
+        if (nanos < 1000000)
+            return String.format("%.1fus", nanos / 1e3);
+        if (nanos < 1000000000)
+            return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.1fs", nanos / 1e9);
+    }
+
+    /**
+     * Bucket a value is counted in: values below 64 have a bucket each, then each
+     * power of two has 64 buckets
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)(value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Largest value counted in a bucket
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long)(bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+}
@@ -0,0 +1,251 @@
+package org.rainfall.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.rainfall.lang.Output;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+
+/**
+ * Runtime metrics of the application: how much data has been parsed and how fast,
+ * the size of the loaded stores and a {@link LatencyHistogram} for each type of
+ * query. <br /><br />
+ * Queries are timed where they enter the application, i.e. in the static
+ * RainfallData methods and in the QueryEngine used by the interface, the batch
+ * runner and the server, under the name of the RainfallData method which answers
+ * them. The readers record each file they parse. <br /><br />
+ * The metrics can be read with {@link #dump()} or, once {@link #registerMBean()}
+ * has been called, over JMX (e.g. with jconsole) as {@value #OBJECT_NAME}.
+ * Timing can be turned off with -Drainfall.metrics=false.
+ *
+ * @author Kieran
+ * @see RainfallMetricsMBean
+ */
+public class Metrics {
+
+    /** Whether queries are timed; set with the rainfall.metrics system property */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("rainfall.metrics"));
+
+    /** Name the metrics are registered under with the platform MBean server */
+    public static final String OBJECT_NAME = "org.rainfall:type=Metrics";
+
+    private static final ConcurrentHashMap<String, LatencyHistogram> queries = new ConcurrentHashMap<String, LatencyHistogram>();
+
+    private static final AtomicLong filesParsed = new AtomicLong();
+    private static final AtomicLong bytesParsed = new AtomicLong();
+    private static final AtomicLong linesRead = new AtomicLong();
+    private static final AtomicLong rowsParsed = new AtomicLong();
+    private static final AtomicLong rejectedLines = new AtomicLong();
+    private static final AtomicLong parseNanos = new AtomicLong();
+    private static volatile String lastFile;
+    private static volatile long lastBytes, lastNanos;
+
+    private static boolean registered = false;
+
+    private Metrics() { }
+
+    /**
+     * Starts timing a query
+     * @return long - the start time to pass to {@link LatencyHistogram#recordSince(long)},
+     *          or 0 when metrics are disabled
+     */
+    public static long startTimer() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * The histogram for a type of query, created the first time it is asked for
+     * @param name Name of the query, by convention the RainfallData method answering it
+     * @return LatencyHistogram - the histogram
+     */
+    public static LatencyHistogram query(String name) {
+        LatencyHistogram histogram = queries.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name);
+            histogram = queries.putIfAbsent(name, created);
+            if (histogram == null)
+                histogram = created;
+        }
+        return histogram;
+    }
+
+    /**
+     * Records a data file which has been parsed
+     * @param file The file
+     * @param bytes Size of the file
+     * @param lines Number of non-blank lines read (the header, rows and rejected lines)
+     * @param rows Number of data rows parsed
+     * @param rejected Number of lines after the header which were not valid data rows
+     * @param nanos Time taken to parse the file
+     */
+    public static void recordParse(String file, long bytes, long lines, long rows, long rejected, long nanos) {
+        filesParsed.incrementAndGet();
+        bytesParsed.addAndGet(bytes);
+        linesRead.addAndGet(lines);
+        rowsParsed.addAndGet(rows);
+        rejectedLines.addAndGet(rejected);
+        parseNanos.addAndGet(nanos);
+        lastFile = file;
+        lastBytes = bytes;
+        lastNanos = nanos;
+    }
+
+    /**
+     * Number of data files parsed
+     * @return long - file count
+     */
+    public static long getFilesParsed() {
+        return filesParsed.get();
+    }
+
+    /**
+     * Total size of the data files parsed
+     * @return long - bytes
+     */
+    public static long getBytesParsed() {
+        return bytesParsed.get();
+    }
+
+    /**
+     * Number of non-blank lines read from data files, including headers
+     * @return long - line count
+     */
+    public static long getLinesRead() {
+        return linesRead.get();
+    }
+
+    /**
+     * Number of data rows (one month each) parsed
+     * @return long - row count
+     */
+    public static long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    /**
+     * Number of malformed lines; headers are counted as lines read but not as rejected
+     * @return long - line count
+     */
+    public static long getRejectedLines() {
+        return rejectedLines.get();
+    }
+
+    /**
+     * Total time spent parsing data files
+     * @return long - nanoseconds
+     */
+    public static long getParseNanos() {
+        return parseNanos.get();
+    }
+
+    /**
+     * Parse throughput over every file parsed so far
+     * @return double - MB per second, 0 if nothing was parsed
+     */
+    public static double getParseThroughput() {
+        return throughput(bytesParsed.get(), parseNanos.get());
+    }
+
+    /**
+     * Parse throughput of the most recently parsed file
+     * @return double - MB per second, 0 if nothing was parsed
+     */
+    public static double getLastParseThroughput() {
+        return throughput(lastBytes, lastNanos);
+    }
+
+    /**
+     * The most recently parsed file
+     * @return String - file location, or null if nothing was parsed
+     */
+    public static String getLastFile() {
+        return lastFile;
+    }
+
+    /**
+     * Memory held by the day stores of every registered station
+     * @return long - bytes
+     */
+    public static long getStoreSizeInBytes() {
+        long bytes = 0;
+        for (String name : StationRegistry.getStationNames()) {
+            StationDataset station = StationRegistry.get(name);
+            if (station != null)
+                bytes += station.getStore().sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Histograms of every query type which has been timed, sorted by name
+     * @return LatencyHistogram array
+     */
+    public static LatencyHistogram[] getQueryHistograms() {
+        return new TreeMap<String, LatencyHistogram>(queries).values().toArray(new LatencyHistogram[0]);
+    }
+
+    /**
+     * Clears the parse counters and every query histogram
+     */
+    public static void reset() {
+        filesParsed.set(0);
+        bytesParsed.set(0);
+        linesRead.set(0);
+        rowsParsed.set(0);
+        rejectedLines.set(0);
+        parseNanos.set(0);
+        lastFile = null;
+        lastBytes = lastNanos = 0;
+        for (LatencyHistogram histogram : queries.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Text report of every metric
+     * @return String - one metric per line
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("Parsing\n");
+        out.append(String.format("  files=%d bytes=%d lines=%d rows=%d rejected=%d time=%s throughput=%.1fMB/s%n",
+                getFilesParsed(), getBytesParsed(), getLinesRead(), getRowsParsed(), getRejectedLines(),
+                LatencyHistogram.format(getParseNanos()), getParseThroughput()));
+        if (lastFile != null)
+            out.append(String.format("  last=%s bytes=%d time=%s throughput=%.1fMB/s%n",
+                    lastFile, lastBytes, LatencyHistogram.format(lastNanos), getLastParseThroughput()));
+        out.append("Stores\n");
+        out.append(String.format("  stations=%d bytes=%d%n", StationRegistry.getStationNames().size(), getStoreSizeInBytes()));
+        out.append("Queries").append(ENABLED ? "" : " (timing disabled)").append('\n');
+        for (LatencyHistogram histogram : getQueryHistograms()) {
+            if (histogram.getCount() > 0)
+                out.append("  ").append(histogram).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, once
+     */
+    public static synchronized void registerMBean() {
+        if (registered)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new RainfallMetrics(), new ObjectName(OBJECT_NAME));
+            registered = true;
+        } catch (JMException jme) {
+            Output.error("registerMBean(): " + jme.getMessage());
+        }
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return nanos == 0 ? 0 : bytes / 1048576.0 / (nanos / 1e9);
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.rainfall.metrics;
+
+import java.util.ArrayList;
+import org.rainfall.station.StationRegistry;
+
+/**
+ * Standard MBean exposing the {@link Metrics} over JMX
+ *
+ * @author Kieran
+ * @see Metrics#registerMBean()
+ */
+public class RainfallMetrics implements RainfallMetricsMBean {
+
+    public long getFilesParsed() {
+        return Metrics.getFilesParsed();
+    }
+
+    public long getBytesParsed() {
+        return Metrics.getBytesParsed();
+    }
+
+    public long getLinesRead() {
+        return Metrics.getLinesRead();
+    }
+
+    public long getRowsParsed() {
+        return Metrics.getRowsParsed();
+    }
+
+    public long getRejectedLines() {
+        return Metrics.getRejectedLines();
+    }
+
+    public long getParseTimeMillis() {
+        return Metrics.getParseNanos() / 1000000;
+    }
+
+    public double getParseThroughput() {
+        return Metrics.getParseThroughput();
+    }
+
+    public double getLastParseThroughput() {
+        return Metrics.getLastParseThroughput();
+    }
+
+    public String getLastFile() {
+        return Metrics.getLastFile();
+    }
+
+    public long getStoreSizeInBytes() {
+        return Metrics.getStoreSizeInBytes();
+    }
+
+    public int getStationCount() {
+        return StationRegistry.getStationNames().size();
+    }
+
+    public String[] getQueryLatencies() {
+        ArrayList<String> latencies = new ArrayList<String>();
+        for (LatencyHistogram histogram : Metrics.getQueryHistograms()) {
+            if (histogram.getCount() > 0)
+                latencies.add(histogram.toString());
+        }
+        return latencies.toArray(new String[latencies.size()]);
+    }
+
+    public String dump() {
+        return Metrics.dump();
+    }
+
+    public void reset() {
+        Metrics.reset();
+    }
+
+}
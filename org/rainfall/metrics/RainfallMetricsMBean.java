@@ -0,0 +1,58 @@
+package org.rainfall.metrics;
+
+/**
+ * JMX view of the {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}
+ *
+ * @author Kieran
+ * @see RainfallMetrics
+ */
+public interface RainfallMetricsMBean {
+
+    /** @return long - number of data files parsed */
+    long getFilesParsed();
+
+    /** @return long - total size in bytes of the data files parsed */
+    long getBytesParsed();
+
+    /** @return long - number of lines read from data files */
+    long getLinesRead();
+
+    /** @return long - number of data rows parsed */
+    long getRowsParsed();
+
+    /** @return long - number of malformed lines (headers are not counted) */
+    long getRejectedLines();
+
+    /** @return long - total time spent parsing in milliseconds */
+    long getParseTimeMillis();
+
+    /** @return double - MB per second over every file parsed */
+    double getParseThroughput();
+
+    /** @return double - MB per second of the most recently parsed file */
+    double getLastParseThroughput();
+
+    /** @return String - the most recently parsed file */
+    String getLastFile();
+
+    /** @return long - memory held by the day stores of every station in bytes */
+    long getStoreSizeInBytes();
+
+    /** @return int - number of registered stations */
+    int getStationCount();
+
+    /** @return String array - one summary line per query type which has been timed */
+    String[] getQueryLatencies();
+
+    /**
+     * Text report of every metric
+     * @return String - the report
+     */
+    String dump();
+
+    /**
+     * Clears the parse counters and every query histogram
+     */
+    void reset();
+
+}
@@ -0,0 +1,163 @@
+package org.rainfall.query;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import org.rainfall.io.RainfallLoader;
+import org.rainfall.lang.Output;
+import org.rainfall.metrics.Metrics;
+
+/**
+ * Headless entry point which loads a data file once and answers a batch of
+ * queries, one per line, from a file or standard input. Results are streamed to
+ * standard output as CSV or JSON; messages go to the error stream. AWT is never
+ * touched so the runner works on servers without a display. <br /><br />
+ * <pre>
+ *  java org.rainfall.query.BatchQueryRunner [--format csv|json] [--no-snapshot] [--cache n] [--metrics] data.txt [queries.txt | -]
+ * </pre>
+ * --no-snapshot stops a snapshot of the data file being written after it is parsed.
+ * Results of up to n different queries (default {@link QueryCache#DEFAULT_CAPACITY})
+ * are cached so repeated queries are answered with a lookup; --cache 0 turns this off.
+ * --metrics prints the parse counters and query latencies when the batch is done.
+ * Blank lines and lines starting with '#' are skipped. See {@link Query} for the
+ * query syntax.
+ *
+ * @author Kieran
+ * @see QueryEngine
+ */
+public class BatchQueryRunner {
+
+    private final QueryEngine engine;
+
+    /**
+     * Main constructor - every query is calculated
+     */
+    public BatchQueryRunner() {
+        this(null);
+    }
+
+    /**
+     * Creates a runner which answers repeated queries from a cache
+     * @param cache Cache to use, or null to calculate every query
+     */
+    public BatchQueryRunner(QueryCache cache) {
+        engine = new QueryEngine(cache);
+    }
+
+    /**
+     * Answers every query read from a reader
+     * @param in Queries, one per line
+     * @param writer Receives each result in the order the queries were read
+     * @return int - number of queries answered (including those which failed)
+     * @throws IOException if the queries cannot be read or the results written
+     */
+    public int run(BufferedReader in, ResultWriter writer) throws IOException {
+        int count = 0;
+        writer.writeHeader();
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.length() == 0 || line.charAt(0) == '#')
+                continue;
+
+            QueryResult result;
+            try {
+                result = engine.execute(Query.parse(line));
+            } catch (IllegalArgumentException iae) {
+                result = QueryResult.error(line, iae.getMessage());
+            }
+            writer.write(result);
+            count++;
+
+            // Stream results to an interactive reader instead of holding them in the buffer
+            if (!in.ready())
+                writer.flush();
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Runs a batch from the command line
+     * @param args [--format csv|json] [--no-snapshot] [--cache n] [--metrics] data file [query file or - for standard input]
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Output.setMessageStream(System.err);
+
+        String format = ResultWriter.CSV;
+        boolean snapshots = true;
+        int cacheSize = QueryCache.DEFAULT_CAPACITY;
+        boolean metrics = false;
+        String dataFile = null, queryFile = "-";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--format") && i + 1 < args.length)
+                format = args[++i];
+            else if (args[i].equals("--no-snapshot"))
+                snapshots = false;
+            else if (args[i].equals("--cache") && i + 1 < args.length) {
+                try {
+                    cacheSize = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException nfe) {
+                    cacheSize = -1;
+                }
+                if (cacheSize < 0)
+                    Output.error("--cache takes a number of results, or 0 for no cache: " + args[i]);
+            }
+            else if (args[i].equals("--metrics"))
+                metrics = true;
+            else if (dataFile == null)
+                dataFile = args[i];
+            else
+                queryFile = args[i];
+        }
+        if (dataFile == null || cacheSize < 0) {
+            Output.error("Usage: BatchQueryRunner [--format csv|json] [--no-snapshot] [--cache n] [--metrics] data.txt [queries.txt | -]");
+            System.exit(2);
+        }
+
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        ResultWriter writer = ResultWriter.forFormat(format, out);
+        if (writer == null) {
+            Output.error("Unknown format: " + format);
+            System.exit(2);
+        }
+
+        RainfallLoader loader = new RainfallLoader();
+        loader.setWriteSnapshots(snapshots);
+        if (!loader.load(dataFile)) {
+            Output.error("Unable to load " + dataFile);
+            System.exit(1);
+        }
+
+        InputStream in = null;
+        try {
+            in = queryFile.equals("-") ? System.in : new FileInputStream(queryFile);
+            long start = System.nanoTime();
+            QueryCache cache = cacheSize > 0 ? new QueryCache(cacheSize) : null;
+            int count = new BatchQueryRunner(cache).run(new BufferedReader(new InputStreamReader(in), 1 << 16), writer);
+            long elapsed = System.nanoTime() - start;
+            Output.print(count + " queries in " + elapsed / 1000000 + "ms ("
+                    + (long)(count / Math.max(elapsed / 1e9, 1e-9)) + " queries/s)");
+            if (cache != null)
+                Output.print("Query cache: " + cache);
+            if (metrics)
+                Output.print(Metrics.dump());
+        } catch (IOException ioe) {
+            Output.error("BatchQueryRunner: " + ioe.getMessage());
+            System.exit(1);
+        } finally {
+            try {
+                if (in != null && in != System.in) in.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+package org.rainfall.query;
+
+import java.util.regex.Pattern;
+
+/**
+ * A single rainfall query: an operation (total, average, wettest or driest) over a
+ * period (a year, month, week or day, or the per-month/per-day series of a year or
+ * month) with an optional +/- duration. Queries are written as text as <br /><br />
+ * <pre>
+ *  operation period year [month [week | day]] [duration]
+ *
+ *  total year 1990            total rainfall of 1990
+ *  average year 1990 2        average rainfall of each year 1988 - 1992
+ *  wettest month 1990 5 1     wettest day of each month April - June 1990
+ *  total week 1990 5 2        total rainfall of the 2nd week of May 1990
+ *  total day 1990 5 14        rainfall on 14 May 1990
+ *  average months 1990        average rainfall of each month of 1990
+ *  total days 1990 5          rainfall of each day of May 1990
+ * </pre>
+ * Fields may be separated by spaces, tabs or commas.
+ *
+ * @author Kieran
+ * @see QueryEngine
+ */
+public class Query {
+
+    /** Operations */
+    public static final int TOTAL = 0, AVERAGE = 1, WETTEST = 2, DRIEST = 3;
+
+    /** Periods; MONTHS is each month of a year and DAYS each day of a month */
+    public static final int YEAR = 0, MONTH = 1, WEEK = 2, DAY = 3, MONTHS = 4, DAYS = 5;
+
+    private static final String[] OPERATION_NAMES = { "total", "average", "wettest", "driest" };
+    private static final String[] PERIOD_NAMES = { "year", "month", "week", "day", "months", "days" };
+    private static final int[] PERIOD_FIELDS = { 1, 2, 3, 3, 1, 2 }; // date fields after the period name
+
+    private static final Pattern SEPARATOR = Pattern.compile("[\\s,]+");
+
+    private final String station;
+    private final int operation, period;
+    private final int year, month, week, day, duration;
+
+    /**
+     * Main constructor
+     * @param station Name of the station to query, or null for the default station
+     * @param operation One of TOTAL, AVERAGE, WETTEST or DRIEST
+     * @param period One of YEAR, MONTH, WEEK, DAY, MONTHS or DAYS
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup (0 when not used by the period)
+     * @param week The week you wish to lookup (0 when not used by the period)
+     * @param day The day you wish to lookup (0 when not used by the period)
+     * @param duration +/- number of years or months, 0 for none
+     */
+    public Query(String station, int operation, int period, int year, int month, int week, int day, int duration) {
+        if (operation < TOTAL || operation > DRIEST)
+            throw new IllegalArgumentException("Unknown operation " + operation);
+        if (period < YEAR || period > DAYS)
+            throw new IllegalArgumentException("Unknown period " + period);
+        this.station = station;
+        this.operation = operation;
+        this.period = period;
+        this.year = year;
+        this.month = month;
+        this.week = week;
+        this.day = day;
+        this.duration = duration;
+    }
+
+    /**
+     * Parses a query written as text (see the class description)
+     * @param text The query
+     * @return Query - the parsed query
+     * @throws IllegalArgumentException if the text is not a valid query
+     */
+    public static Query parse(String text) {
+        String[] fields = SEPARATOR.split(text.trim());
+        if (fields.length < 3)
+            throw new IllegalArgumentException("Expected: operation period year [month [week | day]] [duration]");
+
+        int operation = parseOperation(fields[0]);
+        int period = parsePeriod(fields[1]);
+        int dateFields = PERIOD_FIELDS[period];
+        if (fields.length < 2 + dateFields || fields.length > 3 + dateFields)
+            throw new IllegalArgumentException("A " + PERIOD_NAMES[period] + " query takes " + dateFields
+                    + " date field(s) and an optional duration");
+
+        int[] values = new int[fields.length - 2];
+        for (int i = 0; i < values.length; i++) {
+            try {
+                values[i] = Integer.parseInt(fields[i + 2]);
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Not a number: " + fields[i + 2]);
+            }
+        }
+
+        int year = values[0];
+        int month = dateFields > 1 ? values[1] : 0;
+        int week = period == WEEK ? values[2] : 0;
+        int day = period == DAY ? values[2] : 0;
+        int duration = values.length > dateFields ? values[dateFields] : 0;
+        if (duration < 0)
+            throw new IllegalArgumentException("Duration must not be negative");
+        return new Query(null, operation, period, year, month, week, day, duration);
+    }
+
+    /**
+     * Copy of the query for another station
+     * @param station Name of the station to query, or null for the default station
+     * @return Query - the query for the station
+     */
+    public Query forStation(String station) {
+        return new Query(station, operation, period, year, month, week, day, duration);
+    }
+
+    /**
+     * Name of the station the query is for
+     * @return String - station name or null for the default station
+     */
+    public String getStation() {
+        return station;
+    }
+
+    /**
+     * Gets the operation
+     * @return int - one of TOTAL, AVERAGE, WETTEST or DRIEST
+     */
+    public int getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the period
+     * @return int - one of YEAR, MONTH, WEEK, DAY, MONTHS or DAYS
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Gets the year
+     * @return int - year number
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the month
+     * @return int - month number, 0 if the period has no month
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Gets the week
+     * @return int - week number, 0 if the period is not a week
+     */
+    public int getWeek() {
+        return week;
+    }
+
+    /**
+     * Gets the day
+     * @return int - day of the month, 0 if the period is not a day
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Gets the duration
+     * @return int - +/- number of years or months, 0 for none
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Looks up an operation by name
+     * @param name e.g. "total"
+     * @return int - one of TOTAL, AVERAGE, WETTEST or DRIEST
+     * @throws IllegalArgumentException if there is no operation with the name
+     */
+    public static int parseOperation(String name) {
+        return indexOf(OPERATION_NAMES, name, "operation");
+    }
+
+    /**
+     * Looks up a period by name
+     * @param name e.g. "year"
+     * @return int - one of YEAR, MONTH, WEEK, DAY, MONTHS or DAYS
+     * @throws IllegalArgumentException if there is no period with the name
+     */
+    public static int parsePeriod(String name) {
+        return indexOf(PERIOD_NAMES, name, "period");
+    }
+
+    /**
+     * Name of an operation
+     * @param operation One of TOTAL, AVERAGE, WETTEST or DRIEST
+     * @return String - e.g. "total"
+     */
+    public static String operationName(int operation) {
+        return OPERATION_NAMES[operation];
+    }
+
+    /**
+     * Name of a period
+     * @param period One of YEAR, MONTH, WEEK, DAY, MONTHS or DAYS
+     * @return String - e.g. "year"
+     */
+    public static String periodName(int period) {
+        return PERIOD_NAMES[period];
+    }
+
+    /**
+     * Writes the query in the form read by {@link #parse(String)}
+     * @return String - e.g. "average month 1990 5 2"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(OPERATION_NAMES[operation]).append(' ').append(PERIOD_NAMES[period]).append(' ').append(year);
+        if (PERIOD_FIELDS[period] > 1) sb.append(' ').append(month);
+        if (period == WEEK) sb.append(' ').append(week);
+        if (period == DAY) sb.append(' ').append(day);
+        if (duration > 0) sb.append(' ').append(duration);
+        return sb.toString();
+    }
+
+    /**
+     * Compares queries by every field, so queries can be used as cache keys
+     * @param o Object to compare against
+     * @return true if o is the same query for the same station
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Query)) return false;
+        Query q = (Query)o;
+        return operation == q.operation && period == q.period && year == q.year && month == q.month
+                && week == q.week && day == q.day && duration == q.duration
+                && (station == null ? q.station == null : station.equals(q.station));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = ((operation * 8 + period) * 31 + year) * 31 + month;
+        h = ((h * 31 + week) * 31 + day) * 31 + duration;
+        return station == null ? h : h * 31 + station.hashCode();
+    }
+
+    private static int indexOf(String[] names, String name, String kind) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equalsIgnoreCase(name))
+                return i;
+        }
+        throw new IllegalArgumentException("Unknown " + kind + ": " + name);
+    }
+
+}
@@ -0,0 +1,188 @@
+package org.rainfall.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.rainfall.station.StationDataset;
+
+/**
+ * Bounded least-recently-used cache of query results, keyed by the {@link Query}
+ * (operation, period, station, year, month, week, day and duration). <br /><br />
+ * Each result remembers the version of the station snapshot it was calculated
+ * from. Every snapshot has its own version, so a result is never returned once
+ * the station has been replaced by a new load or had months appended; no listeners
+ * are needed to keep the cache correct. Only the version number is kept, not the
+ * snapshot, so cached results do not stop old snapshots being garbage collected. <br /><br />
+ * The cache is split into segments, each an access-ordered LinkedHashMap guarded by
+ * its own lock, so concurrent lookups for different queries rarely wait for each other.
+ *
+ * @author Kieran
+ * @see QueryEngine#QueryEngine(QueryCache)
+ */
+public class QueryCache {
+
+    /** Number of results kept when no capacity is given */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), evictions = new AtomicLong();
+
+    /**
+     * Creates a cache holding up to {@link #DEFAULT_CAPACITY} results
+     */
+    public QueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Main constructor
+     * @param capacity Maximum number of results to keep
+     */
+    public QueryCache(int capacity) {
+        int segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * Looks up the result of a query
+     * @param query The query
+     * @param station The station the query would be answered from now
+     * @return QueryResult - the cached result, or null if there is none for the
+     *          station's current data
+     */
+    public QueryResult get(Query query, StationDataset station) {
+        Segment segment = segmentFor(query);
+        CachedResult entry;
+        synchronized (segment) {
+            entry = segment.get(query);
+        }
+        if (entry != null && entry.version == station.getVersion()) {
+            hits.incrementAndGet();
+            return entry.result;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the result of a query
+     * @param query The query
+     * @param station The station snapshot the result was calculated from
+     * @param result The result
+     */
+    public void put(Query query, StationDataset station, QueryResult result) {
+        long version = station.getVersion();
+        Segment segment = segmentFor(query);
+        synchronized (segment) {
+            segment.put(query, new CachedResult(version, result));
+        }
+    }
+
+    /**
+     * Removes every result
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Number of results held (including results for data which has since changed)
+     * @return int - result count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Number of lookups which found a result
+     * @return long - hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of lookups which did not find a result for the current data
+     * @return long - miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Number of results dropped to make room for newer ones
+     * @return long - eviction count
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Summary of the counters
+     * @return String - e.g. "hits=90 misses=10 evictions=0 size=10"
+     */
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions() + " size=" + size();
+    }
+
+    private Segment segmentFor(Query query) {
+        int h = query.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * A result and the data it was calculated from
+     */
+    private static class CachedResult {
+
+        final long version;
+        final QueryResult result;
+
+        CachedResult(long version, QueryResult result) {
+            this.version = version;
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * One segment of the cache, evicting its least recently used result when full
+     */
+    private class Segment extends LinkedHashMap<Query, CachedResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Query, CachedResult> eldest) {
+            if (size() > capacity) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package org.rainfall.query;
+
+import java.util.ArrayList;
+import org.rainfall.metrics.LatencyHistogram;
+import org.rainfall.metrics.Metrics;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+
+/**
+ * Answers {@link Query} objects from the stations in the {@link StationRegistry}.
+ * This is the same set of queries offered by the search and chart buttons of the
+ * interface, without any dependency on Swing, so it can be used by the batch
+ * runner and other headless front ends. <br /><br />
+ * An engine created with a {@link QueryCache} answers repeated queries from the
+ * cache until the station's data changes. <br /><br />
+ * Calculated queries are timed in the {@link Metrics} histogram of the RainfallData
+ * method answering them, answers from the cache in the "cachedQuery" histogram.
+ *
+ * @author Kieran
+ * @see BatchQueryRunner
+ */
+public class QueryEngine {
+
+    /* Query timings by [duration > 0][period][operation], null where not supported */
+    private static final LatencyHistogram[][][] TIMINGS = new LatencyHistogram[2][Query.DAYS + 1][Query.DRIEST + 1];
+    private static final LatencyHistogram CACHED = Metrics.query("cachedQuery");
+
+    static {
+        timing(Query.YEAR, false, "getTotalYearlyRainfall", "getAverageYearlyRainfall", "getWettestDayOfYear", "getDriestDayOfYear");
+        timing(Query.YEAR, true, "getTotalYearlyRainfallOverTime", "getAverageYearlyRainfallOverTime", "getWettestDayOfMultipleYears", null);
+        timing(Query.MONTH, false, "getTotalMonthlyRainfall", "getAverageMonthlyRainfall", "getWettestDayOfMonth", "getDriestDayOfMonth");
+        timing(Query.MONTH, true, null, "getAverageMonthlyRainfallOverTime", "getWettestDayOfMultipleMonths", null);
+        timing(Query.WEEK, false, "getTotalWeeklyRainfall", "getAverageWeeklyRainfall", null, null);
+        timing(Query.DAY, false, "getTotalDailyRainfall", null, null, null);
+        timing(Query.MONTHS, false, "getTotalYearlyRainfallPerMonth", "getAverageYearlyRainfallPerMonth", "getWettestDayPerMonthOfYear", null);
+        timing(Query.DAYS, false, "getMonthlyRainfall", null, null, null);
+    }
+
+    private final QueryCache cache;
+
+    /**
+     * Main constructor - every query is calculated
+     */
+    public QueryEngine() {
+        this(null);
+    }
+
+    /**
+     * Creates an engine which keeps results in a cache
+     * @param cache Cache to use, or null to calculate every query
+     */
+    public QueryEngine(QueryCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * The cache results are kept in
+     * @return QueryCache - the cache, or null if results are not cached
+     */
+    public QueryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Answers a query
+     * @param query The query to answer
+     * @return QueryResult - the answer, or an error if the query is not supported
+     */
+    public QueryResult execute(Query query) {
+        StationDataset station = query.getStation() == null
+                ? StationRegistry.getDefault() : StationRegistry.get(query.getStation());
+        if (station == null)
+            return QueryResult.error(query.toString(), "Unknown station: " + query.getStation());
+        if (cache == null)
+            return timedCalculate(query, station);
+
+        long start = Metrics.startTimer();
+        QueryResult result = cache.get(query, station);
+        if (result != null) {
+            CACHED.recordSince(start);
+            return result;
+        }
+
+        result = timedCalculate(query, station);
+        if (!result.isError())
+            cache.put(query, station, result);
+        return result;
+    }
+
+    private QueryResult timedCalculate(Query query, StationDataset station) {
+        LatencyHistogram timing = TIMINGS[query.getDuration() > 0 ? 1 : 0][query.getPeriod()][query.getOperation()];
+        long start = Metrics.startTimer();
+        QueryResult result = calculate(query, station);
+        if (timing != null)
+            timing.recordSince(start);
+        return result;
+    }
+
+    private QueryResult calculate(Query query, StationDataset station) {
+        int year = query.getYear(), month = query.getMonth(), duration = query.getDuration();
+        switch (query.getPeriod()) {
+            case Query.YEAR:
+                if (duration > 0) {
+                    switch (query.getOperation()) {
+                        case Query.TOTAL:   return series(query, station.getTotalYearlyRainfallOverTime(year, duration));
+                        case Query.AVERAGE: return series(query, station.getAverageYearlyRainfallOverTime(year, duration));
+                        case Query.WETTEST: return series(query, station.getWettestDayOfMultipleYears(year, duration));
+                    }
+                    break;
+                }
+                switch (query.getOperation()) {
+                    case Query.TOTAL:   return QueryResult.value(query, station.getTotalYearlyRainfall(year));
+                    case Query.AVERAGE: return QueryResult.value(query, station.getAverageYearlyRainfall(year));
+                    case Query.WETTEST: return QueryResult.value(query, station.getWettestDayOfYear(year));
+                    case Query.DRIEST:  return QueryResult.value(query, station.getDriestDayOfYear(year));
+                }
+                break;
+
+            case Query.MONTH:
+                if (duration > 0) {
+                    switch (query.getOperation()) {
+                        case Query.AVERAGE: return series(query, station.getAverageMonthlyRainfallOverTime(year, month, duration));
+                        case Query.WETTEST: return series(query, station.getWettestDayOfMultipleMonths(year, month, duration));
+                    }
+                    break;
+                }
+                switch (query.getOperation()) {
+                    case Query.TOTAL:   return QueryResult.value(query, station.getTotalMonthlyRainfall(year, month));
+                    case Query.AVERAGE: return QueryResult.value(query, station.getAverageMonthlyRainfall(year, month));
+                    case Query.WETTEST: return QueryResult.value(query, station.getWettestDayOfMonth(year, month));
+                    case Query.DRIEST:  return QueryResult.value(query, station.getDriestDayOfMonth(year, month));
+                }
+                break;
+
+            case Query.WEEK:
+                if (duration > 0)
+                    break;
+                switch (query.getOperation()) {
+                    case Query.TOTAL:   return QueryResult.value(query, station.getTotalWeeklyRainfall(year, month, query.getWeek()));
+                    case Query.AVERAGE: return QueryResult.value(query, station.getAverageWeeklyRainfall(year, month, query.getWeek()));
+                }
+                break;
+
+            case Query.DAY:
+                if (duration == 0 && query.getOperation() == Query.TOTAL)
+                    return QueryResult.value(query, station.getTotalDailyRainfall(year, month, query.getDay()));
+                break;
+
+            case Query.MONTHS:
+                if (duration > 0)
+                    break;
+                switch (query.getOperation()) {
+                    case Query.TOTAL:   return series(query, station.getTotalYearlyRainfallPerMonth(year));
+                    case Query.AVERAGE: return series(query, station.getAverageYearlyRainfallPerMonth(year));
+                    case Query.WETTEST: return series(query, station.getWettestDayPerMonthOfYear(year));
+                }
+                break;
+
+            case Query.DAYS:
+                if (duration == 0 && query.getOperation() == Query.TOTAL)
+                    return series(query, station.getMonthlyRainfall(year, month));
+                break;
+        }
+        return QueryResult.error(query.toString(), "Not supported: " + Query.operationName(query.getOperation())
+                + " " + Query.periodName(query.getPeriod()) + (duration > 0 ? " with a duration" : ""));
+    }
+
+    /**
+     * Wraps a series from the station, which is null when the station holds no
+     * readings for the period asked about
+     */
+    private static QueryResult series(Query query, ArrayList<Float> values) {
+        if (values == null)
+            return QueryResult.error(query.toString(), "No data for " + query);
+        return QueryResult.series(query, values);
+    }
+
+    private static void timing(int period, boolean duration, String total, String average, String wettest, String driest) {
+        String[] names = { total, average, wettest, driest };
+        for (int operation = Query.TOTAL; operation <= Query.DRIEST; operation++) {
+            if (names[operation] != null)
+                TIMINGS[duration ? 1 : 0][period][operation] = Metrics.query(names[operation]);
+        }
+    }
+
+}
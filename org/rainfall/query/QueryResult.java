@@ -0,0 +1,107 @@
+package org.rainfall.query;
+
+import java.util.ArrayList;
+
+/**
+ * The answer to a {@link Query}: a single value, a series of values (one per
+ * year, month or day) or an error message.
+ *
+ * @author Kieran
+ * @see QueryEngine
+ */
+public class QueryResult {
+
+    private final String query;
+    private final float value;
+    private final ArrayList<Float> series;
+    private final String error;
+
+    private QueryResult(String query, float value, ArrayList<Float> series, String error) {
+        this.query = query;
+        this.value = value;
+        this.series = series;
+        this.error = error;
+    }
+
+    /**
+     * Creates a result holding a single value
+     * @param query The query which was answered
+     * @param value The answer
+     * @return QueryResult - the result
+     */
+    public static QueryResult value(Query query, float value) {
+        return new QueryResult(query.toString(), value, null, null);
+    }
+
+    /**
+     * Creates a result holding a series of values
+     * @param query The query which was answered
+     * @param series The answer, which must not be null
+     * @return QueryResult - the result
+     */
+    public static QueryResult series(Query query, ArrayList<Float> series) {
+        if (series == null)
+            throw new IllegalArgumentException("No series for " + query);
+        return new QueryResult(query.toString(), 0, series, null);
+    }
+
+    /**
+     * Creates a result for a query which could not be answered
+     * @param query The query text
+     * @param error Why the query failed
+     * @return QueryResult - the result
+     */
+    public static QueryResult error(String query, String error) {
+        return new QueryResult(query, 0, null, error);
+    }
+
+    /**
+     * The query which was answered
+     * @return String - query text
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Checks whether the query was answered
+     * @return true if the result holds an error message instead of values
+     */
+    public boolean isError() {
+        return error != null;
+    }
+
+    /**
+     * Checks whether the answer is a series
+     * @return true if {@link #getSeries()} holds the answer, false for {@link #getValue()}
+     */
+    public boolean isSeries() {
+        return series != null;
+    }
+
+    /**
+     * The answer to a single value query
+     * @return float - the value
+     */
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * The answer to a series query. Results may be shared through a {@link QueryCache}
+     * so the list must not be modified.
+     * @return ArrayList of floats, or null if the answer is a single value
+     */
+    public ArrayList<Float> getSeries() {
+        return series;
+    }
+
+    /**
+     * Why the query failed
+     * @return String - error message, or null if the query was answered
+     */
+    public String getError() {
+        return error;
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.rainfall.query;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+
+/**
+ * Writes query results to a stream, one line per result, as either CSV or JSON
+ * (one JSON object per line). Series are written as a list of values: separated by
+ * ';' in CSV and as an array in JSON.
+ *
+ * @author Kieran
+ * @see BatchQueryRunner
+ */
+public abstract class ResultWriter {
+
+    /** Format names accepted by {@link #forFormat(String, Writer)} */
+    public static final String CSV = "csv", JSON = "json";
+
+    protected final Writer out;
+
+    /**
+     * Main constructor
+     * @param out Stream to write to
+     */
+    protected ResultWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a writer for a format
+     * @param format "csv" or "json"
+     * @param out Stream to write to
+     * @return ResultWriter - the writer, or null if the format is unknown
+     */
+    public static ResultWriter forFormat(String format, Writer out) {
+        if (format.equalsIgnoreCase(CSV))
+            return new Csv(out);
+        if (format.equalsIgnoreCase(JSON))
+            return new Json(out);
+        return null;
+    }
+
+    /**
+     * Writes anything which comes before the first result (e.g. a CSV header)
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeHeader() throws IOException { }
+
+    /**
+     * Writes a result
+     * @param result The result to write
+     * @throws IOException if the stream cannot be written to
+     */
+    public abstract void write(QueryResult result) throws IOException;
+
+    /**
+     * Flushes the stream
+     * @throws IOException if the stream cannot be written to
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Formats a result as a JSON object
+     * @param result The result to format
+     * @return String - e.g. {"query":"total year 1990","value":1047.7}
+     */
+    public static String toJson(QueryResult result) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("{\"query\":");
+        quoteJson(sb, result.getQuery());
+        if (result.isError()) {
+            sb.append(",\"error\":");
+            quoteJson(sb, result.getError());
+        }
+        else if (result.isSeries()) {
+            sb.append(",\"values\":[");
+            ArrayList<Float> series = result.getSeries();
+            for (int i = 0; i < series.size(); i++) {
+                if (i > 0) sb.append(',');
+                appendNumber(sb, series.get(i));
+            }
+            sb.append(']');
+        }
+        else {
+            sb.append(",\"value\":");
+            appendNumber(sb, result.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendNumber(StringBuilder sb, float value) {
+        // JSON has no NaN or Infinity (e.g. the average of a period without readings)
+        if (Float.isNaN(value) || Float.isInfinite(value))
+            sb.append("null");
+        else
+            sb.append(value);
+    }
+
+    private static void quoteJson(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < ' ') sb.append(String.format("\\u%04x", (int)c));
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Writes query,result,error rows
+     */
+    private static class Csv extends ResultWriter {
+
+        private final StringBuilder line = new StringBuilder(64);
+
+        Csv(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            out.write("query,result,error\n");
+        }
+
+        @Override
+        public void write(QueryResult result) throws IOException {
+            line.setLength(0);
+            appendField(line, result.getQuery());
+            line.append(',');
+            if (result.isError()) {
+                line.append(',');
+                appendField(line, result.getError());
+            }
+            else if (result.isSeries()) {
+                ArrayList<Float> series = result.getSeries();
+                for (int i = 0; i < series.size(); i++) {
+                    if (i > 0) line.append(';');
+                    line.append(series.get(i));
+                }
+                line.append(',');
+            }
+            else {
+                line.append(result.getValue()).append(',');
+            }
+            out.write(line.append('\n').toString());
+        }
+
+        private void appendField(StringBuilder sb, String text) {
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0)
+                sb.append(text);
+            else
+                sb.append('"').append(text.replace("\"", "\"\"")).append('"');
+        }
+
+    }
+
+    /**
+     * Writes one JSON object per line
+     */
+    private static class Json extends ResultWriter {
+
+        Json(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(QueryResult result) throws IOException {
+            out.write(toJson(result));
+            out.write('\n');
+        }
+
+    }
+
+}
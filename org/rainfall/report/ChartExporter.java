@@ -0,0 +1,394 @@
+package org.rainfall.report;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+import org.jfree.chart.JFreeChart;
+import org.rainfall.gui.jfreechart.BarChart;
+import org.rainfall.gui.jfreechart.TimeSeriesChart;
+import org.rainfall.io.RainfallLoader;
+import org.rainfall.lang.Output;
+import org.rainfall.query.Query;
+import org.rainfall.query.QueryEngine;
+import org.rainfall.query.QueryResult;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+import org.rainfall.store.Downsampler;
+import org.rainfall.util.Date;
+
+/**
+ * Headless entry point which renders report packs of charts to PNG files. Each
+ * data file is loaded as a station and charted for every query of a spec file,
+ * or for the standard report when no spec file is given: the total, average and
+ * wettest day of each month of every year, the rainfall of each day of every
+ * month and the whole record as a line chart. <br /><br />
+ * <pre>
+ *  java org.rainfall.report.ChartExporter [--out dir] [--threads n] [--size WxH] [--specs specs.txt] [--no-snapshot] data.txt...
+ * </pre>
+ * Charts are built and rendered concurrently, one per task on a pool of threads
+ * (by default one per processor); no window is ever opened. Each station's charts
+ * are written to a directory named after it, e.g. out/station1/total-months-1990.png.
+ * The spec file holds one series query per line in the {@link Query} syntax, e.g.
+ * "wettest year 1990 5"; blank lines and lines starting with '#' are skipped.
+ *
+ * @author Kieran
+ * @see BarChart#createChart(String, String, String, ArrayList, String[])
+ */
+public class ChartExporter {
+
+    public static final int DEFAULT_WIDTH = 980, DEFAULT_HEIGHT = 550;
+
+    /** Largest width or height accepted by --size */
+    private static final int MAX_SIZE = 10000;
+
+    private static final String[] OPERATION_TITLES = { "Total Rainfall", "Average Rainfall", "Wettest day", "Driest day" };
+    private static final String[] OPERATION_NAMES = { "total", "average", "wettest", "driest" };
+    private static final String[] PERIOD_NAMES = { "year", "month", "week", "day", "months", "days" };
+
+    private final File outputDir;
+    private final int threads;
+    private final int width, height;
+    private final QueryEngine engine = new QueryEngine();
+
+    /**
+     * Main constructor
+     * @param outputDir Directory to write the charts to
+     * @param threads Number of charts to render at once
+     * @param width Width of each image in pixels
+     * @param height Height of each image in pixels
+     */
+    public ChartExporter(File outputDir, int threads, int width, int height) {
+        this.outputDir = outputDir;
+        this.threads = Math.max(threads, 1);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * The standard report of a station: the total, average and wettest day of each
+     * month of every year and the rainfall of each day of every month
+     * @param station Name of the station
+     * @return List of queries, one per chart
+     */
+    public static List<Query> reportQueries(String station) {
+        StationDataset dataset = StationRegistry.get(station);
+        List<Query> queries = new ArrayList<Query>();
+        if (dataset == null)
+            return queries;
+
+        ArrayList<Integer> years = new ArrayList<Integer>(dataset.getYears());
+        Collections.sort(years);
+        for (int year : years) {
+            queries.add(new Query(station, Query.TOTAL, Query.MONTHS, year, 0, 0, 0, 0));
+            queries.add(new Query(station, Query.AVERAGE, Query.MONTHS, year, 0, 0, 0, 0));
+            queries.add(new Query(station, Query.WETTEST, Query.MONTHS, year, 0, 0, 0, 0));
+            for (int month = 1; month <= 12; month++) {
+                if (dataset.getStore().hasMonth(year, month))
+                    queries.add(new Query(station, Query.TOTAL, Query.DAYS, year, month, 0, 0, 0));
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * Renders a chart for each query, and optionally a line chart of the whole
+     * record of some stations, writing one PNG file per chart
+     * @param queries Series queries, each naming its station
+     * @param records Names of the stations to draw a line chart of the whole record for
+     * @return int - number of charts written
+     */
+    public int export(List<Query> queries, List<String> records) {
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(queries.size() + records.size());
+        for (final Query query : queries) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() throws IOException {
+                    return exportQuery(query);
+                }
+            });
+        }
+        for (final String station : records) {
+            tasks.add(new Callable<Boolean>() {
+                public Boolean call() throws IOException {
+                    return exportRecord(station);
+                }
+            });
+        }
+
+        int written = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Boolean> result : pool.invokeAll(tasks)) {
+                try {
+                    if (result.get())
+                        written++;
+                } catch (ExecutionException ee) {
+                    Output.error("ChartExporter: " + ee.getCause());
+                }
+            }
+        } catch (InterruptedException ie) {
+            Output.error("ChartExporter: interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    private boolean exportQuery(Query query) throws IOException {
+        QueryResult result = engine.execute(query);
+        if (result.isError() || !result.isSeries()) {
+            Output.error("Cannot chart " + query + ": " + (result.isError() ? result.getError() : "not a series"));
+            return false;
+        }
+
+        ArrayList<Float> series = result.getSeries();
+        String[] categories = new String[series.size()];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = category(query, i);
+        }
+        JFreeChart chart = BarChart.createChart(title(query), xLabel(query), "Rainfall (mm)", series, categories);
+        write(chart, query.getStation(), fileName(query));
+        return true;
+    }
+
+    private boolean exportRecord(String station) throws IOException {
+        StationDataset dataset = StationRegistry.get(station);
+        if (dataset == null || dataset.getStore().isEmpty()) {
+            Output.error("Cannot chart " + station + ": no data");
+            return false;
+        }
+        JFreeChart chart = TimeSeriesChart.createChart("Daily Rainfall (" + station + ")", "Rainfall (mm)",
+                dataset, Downsampler.MIN_MAX, width);
+        write(chart, station, "record.png");
+        return true;
+    }
+
+    /**
+     * Renders a chart and writes it to the directory of its station
+     */
+    private void write(JFreeChart chart, String station, String fileName) throws IOException {
+        // Charts are opaque, so there is no alpha channel to encode
+        BufferedImage image = chart.createBufferedImage(width, height, BufferedImage.TYPE_INT_RGB, null);
+        ByteArrayOutputStream png = new ByteArrayOutputStream(64 * 1024);
+        ImageIO.write(image, "png", png);
+
+        Path dir = new File(outputDir, stationDirectory(station)).toPath();
+        Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(dir.resolve(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(png.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static String title(Query query) {
+        String title = OPERATION_TITLES[query.getOperation()];
+        int year = query.getYear(), month = query.getMonth(), duration = query.getDuration();
+        switch (query.getPeriod()) {
+            case Query.MONTHS: title += " per month of " + year; break;
+            case Query.DAYS:   title += " per day of " + Date.monthToName(month) + " " + year; break;
+            case Query.YEAR:   title += " per year " + (year - duration) + " - " + (year + duration); break;
+            case Query.MONTH:  title += " per month, " + Date.monthToName(month) + " " + year + " (+/- " + duration + " months)"; break;
+        }
+        return title + " (" + query.getStation() + ")";
+    }
+
+    private static String xLabel(Query query) {
+        switch (query.getPeriod()) {
+            case Query.DAYS: return "Day";
+            case Query.YEAR: return "Year";
+            default:         return "Month";
+        }
+    }
+
+    /**
+     * Label of the bar at an index of a query's series
+     */
+    private static String category(Query query, int index) {
+        switch (query.getPeriod()) {
+            case Query.DAYS:
+                return String.valueOf(index + 1);
+            case Query.YEAR:
+                return String.valueOf(query.getYear() - query.getDuration() + index);
+            case Query.MONTH:
+                // Months either side of the query month may fall in other years
+                int months = query.getYear() * 12 + query.getMonth() - 1 - query.getDuration() + index;
+                return Date.monthToName(months % 12 + 1).substring(0, 3) + " " + months / 12;
+            default:
+                return Date.monthToName(index + 1);
+        }
+    }
+
+    private static String fileName(Query query) {
+        StringBuilder name = new StringBuilder();
+        name.append(OPERATION_NAMES[query.getOperation()]).append('-')
+            .append(PERIOD_NAMES[query.getPeriod()]).append('-').append(query.getYear());
+        if (query.getMonth() > 0)
+            name.append('-').append(query.getMonth());
+        if (query.getDuration() > 0)
+            name.append("-d").append(query.getDuration());
+        return name.append(".png").toString();
+    }
+
+    /**
+     * Directory a station's charts are written to: its name without the file
+     * extension and with anything other than letters, digits, '-' and '_' replaced
+     */
+    private static String stationDirectory(String station) {
+        int dot = station.lastIndexOf('.');
+        if (dot > 0)
+            station = station.substring(0, dot);
+        return station.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    /**
+     * Exports charts from the command line
+     * @param args [--out dir] [--threads n] [--size WxH] [--specs specs.txt] [--no-snapshot] data files
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Output.setMessageStream(System.err);
+        // Images are encoded in memory, not through temporary files
+        ImageIO.setUseCache(false);
+
+        File outputDir = new File("charts");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int width = DEFAULT_WIDTH, height = DEFAULT_HEIGHT;
+        String specFile = null;
+        boolean snapshots = true;
+        List<String> dataFiles = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length)
+                outputDir = new File(args[++i]);
+            else if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = parseOption(args[++i], 1, Integer.MAX_VALUE, "--threads takes a number of threads: " + args[i]);
+            else if (args[i].equals("--size") && i + 1 < args.length) {
+                String size = args[++i], problem = "--size takes a width and height in pixels such as 800x600: " + size;
+                int x = size.indexOf('x');
+                width = parseOption(x > 0 ? size.substring(0, x) : "", 1, MAX_SIZE, problem);
+                height = parseOption(size.substring(x + 1), 1, MAX_SIZE, problem);
+            }
+            else if (args[i].equals("--specs") && i + 1 < args.length)
+                specFile = args[++i];
+            else if (args[i].equals("--no-snapshot"))
+                snapshots = false;
+            else
+                dataFiles.add(args[i]);
+        }
+        if (dataFiles.isEmpty())
+            usage();
+
+        List<Query> specs = null;
+        if (specFile != null) {
+            specs = readSpecs(specFile);
+            if (specs == null)
+                System.exit(1);
+        }
+
+        RainfallLoader loader = new RainfallLoader();
+        loader.setWriteSnapshots(snapshots);
+        List<Query> queries = new ArrayList<Query>();
+        List<String> records = new ArrayList<String>();
+        for (String dataFile : dataFiles) {
+            String station = new File(dataFile).getName();
+            if (loader.loadStation(station, dataFile) == null) {
+                Output.error("Unable to load " + dataFile);
+                System.exit(1);
+            }
+            if (specs == null) {
+                queries.addAll(reportQueries(station));
+                records.add(station);
+            }
+            else {
+                for (Query spec : specs) {
+                    queries.add(spec.forStation(station));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        int written = new ChartExporter(outputDir, threads, width, height).export(queries, records);
+        long elapsed = System.nanoTime() - start;
+        Output.print(written + " charts written to " + outputDir + " in " + elapsed / 1000000 + "ms using "
+                + threads + " thread(s)");
+        if (written < queries.size() + records.size())
+            System.exit(1);
+    }
+
+    /**
+     * Reads the queries of a spec file
+     * @return List of queries, or null if the file could not be read or holds an invalid query
+     */
+    private static List<Query> readSpecs(String specFile) {
+        List<Query> specs = new ArrayList<Query>();
+        BufferedReader in = null;
+        try {
+            in = new BufferedReader(new FileReader(specFile));
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0 || line.charAt(0) == '#')
+                    continue;
+                specs.add(Query.parse(line));
+            }
+            return specs;
+        } catch (IOException ioe) {
+            Output.error("ChartExporter: " + ioe.getMessage());
+            return null;
+        } catch (IllegalArgumentException iae) {
+            Output.error("ChartExporter: invalid spec in " + specFile + ": " + iae.getMessage());
+            return null;
+        } finally {
+            try {
+                if (in != null) in.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Reads a number given to an option, printing the problem and the usage and
+     * exiting if it is not a number in range
+     */
+    private static int parseOption(String value, int min, int max, String problem) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max)
+                return n;
+        } catch (NumberFormatException nfe) {
+            // Reported below
+        }
+        Output.error(problem);
+        usage();
+        return -1;
+    }
+
+    private static void usage() {
+        Output.error("Usage: ChartExporter [--out dir] [--threads n] [--size WxH] [--specs specs.txt] [--no-snapshot] data.txt...");
+        System.exit(2);
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.rainfall.server;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.rainfall.lang.Output;
+
+/**
+ * Load test client for {@link RainfallServer}. A number of threads send requests
+ * back to back over keep-alive connections and the client reports the throughput
+ * and the latency percentiles of the responses. <br /><br />
+ * <pre>
+ *  java org.rainfall.server.LoadTestClient [--threads n] [--requests n] [--warmup n]
+ *          [--years first-last] [http://localhost:8080] [queries.txt]
+ * </pre>
+ * Requests are made for the queries in the file (one per line in the text form read
+ * by the batch runner) or, without a file, for a random mix of the interface's
+ * queries over the range of years.
+ *
+ * @author Kieran
+ * @see RainfallServer
+ */
+public class LoadTestClient {
+
+    private final String baseUrl;
+    private final ArrayList<String> paths;
+    private final int threads;
+
+    /**
+     * Main constructor
+     * @param baseUrl Address of the server, e.g. http://localhost:8080
+     * @param paths Request paths (starting with /api/) to send, in rotation
+     * @param threads Number of concurrent clients
+     */
+    public LoadTestClient(String baseUrl, ArrayList<String> paths, int threads) {
+        this.baseUrl = baseUrl;
+        this.paths = paths;
+        this.threads = threads;
+    }
+
+    /**
+     * Sends requests and measures how long each takes to be answered
+     * @param requests Total number of requests to send
+     * @return long[] - latency of each request in nanoseconds, sorted; failed requests are not included
+     * @throws InterruptedException if the thread is interrupted while waiting for the clients
+     */
+    public long[] run(int requests) throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final int total = requests;
+        final long[][] latencies = new long[threads][];
+        final int[] counts = new int[threads];
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            latencies[t] = new long[total / threads + 1];
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    byte[] buffer = new byte[8192];
+                    int i;
+                    while ((i = next.getAndIncrement()) < total) {
+                        long start = System.nanoTime();
+                        if (!request(paths.get(i % paths.size()), buffer)) {
+                            failures.incrementAndGet();
+                            continue;
+                        }
+                        if (counts[id] == latencies[id].length)
+                            latencies[id] = Arrays.copyOf(latencies[id], counts[id] * 2);
+                        latencies[id][counts[id]++] = System.nanoTime() - start;
+                    }
+                }
+            }, "load-test-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (failures.get() > 0)
+            Output.error(failures.get() + " requests failed");
+
+        int count = 0;
+        for (int c : counts) count += c;
+        long[] all = new long[count];
+        int pos = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, pos, counts[t]);
+            pos += counts[t];
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    /**
+     * Sends one request and reads the whole response so the connection can be reused
+     * @return true if the server answered (any status below 500)
+     */
+    private boolean request(String path, byte[] buffer) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection)new URL(baseUrl + path).openConnection();
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                while (in.read(buffer) >= 0) { }
+                in.close();
+            }
+            return status < 500;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Value below which a fraction of the sorted latencies fall
+     * @param sorted Latencies in ascending order
+     * @param fraction e.g. 0.99 for the 99th percentile
+     * @return long - the percentile, 0 if there are no latencies
+     */
+    public static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0)
+            return 0;
+        int index = (int)Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * A random mix of the queries offered by the interface
+     * @param count Number of paths to create
+     * @param firstYear First year to query
+     * @param lastYear Last year to query
+     * @return ArrayList of request paths
+     */
+    public static ArrayList<String> randomPaths(int count, int firstYear, int lastYear) {
+        String[] operations = { "total", "average", "wettest", "driest" };
+        Random random = new Random(42);
+        ArrayList<String> paths = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            String operation = operations[random.nextInt(operations.length)];
+            int year = firstYear + random.nextInt(lastYear - firstYear + 1);
+            int month = 1 + random.nextInt(12);
+            switch (random.nextInt(5)) {
+                case 0:  paths.add("/api/" + operation + "/year?year=" + year); break;
+                case 1:  paths.add("/api/" + operation + "/month?year=" + year + "&month=" + month); break;
+                case 2:  paths.add("/api/total/week?year=" + year + "&month=" + month + "&week=" + (1 + random.nextInt(4))); break;
+                case 3:  paths.add("/api/average/months?year=" + year); break;
+                default: paths.add("/api/average/year?year=" + year + "&duration=" + (1 + random.nextInt(3))); break;
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Runs a load test from the command line
+     * @param args [--threads n] [--requests n] [--warmup n] [--years first-last] [base url] [query file]
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = 8, requests = 100000, warmup = 10000;
+        int firstYear = 1980, lastYear = 2010;
+        String baseUrl = "http://localhost:" + RainfallServer.DEFAULT_PORT;
+        String queryFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--requests") && i + 1 < args.length) requests = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--warmup") && i + 1 < args.length) warmup = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--years") && i + 1 < args.length) {
+                String[] years = args[++i].split("-");
+                firstYear = Integer.parseInt(years[0]);
+                lastYear = Integer.parseInt(years[1]);
+            }
+            else if (args[i].startsWith("http://") || args[i].startsWith("https://")) baseUrl = args[i];
+            else queryFile = args[i];
+        }
+
+        ArrayList<String> paths;
+        if (queryFile != null) {
+            paths = new ArrayList<String>();
+            BufferedReader in = new BufferedReader(new FileReader(queryFile));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.length() > 0 && line.charAt(0) != '#')
+                        paths.add("/api/query?q=" + URLEncoder.encode(line, "UTF-8"));
+                }
+            } finally {
+                in.close();
+            }
+        }
+        else {
+            paths = randomPaths(10000, firstYear, lastYear);
+        }
+
+        LoadTestClient client = new LoadTestClient(baseUrl, paths, threads);
+        if (warmup > 0)
+            client.run(warmup);
+
+        long start = System.nanoTime();
+        long[] latencies = client.run(requests);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Output.print(latencies.length + " requests with " + threads + " threads in "
+                + String.format("%.2f", seconds) + "s: " + String.format("%.0f", latencies.length / seconds) + " requests/s");
+        Output.print(String.format("latency p50 %.3fms  p90 %.3fms  p99 %.3fms  max %.3fms",
+                percentile(latencies, 0.50) / 1e6, percentile(latencies, 0.90) / 1e6,
+                percentile(latencies, 0.99) / 1e6, percentile(latencies, 1.0) / 1e6));
+    }
+
+}
@@ -0,0 +1,335 @@
+package org.rainfall.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.rainfall.io.RainfallLoader;
+import org.rainfall.lang.Output;
+import org.rainfall.metrics.Metrics;
+import org.rainfall.query.Query;
+import org.rainfall.query.QueryCache;
+import org.rainfall.query.QueryEngine;
+import org.rainfall.query.QueryResult;
+import org.rainfall.query.ResultWriter;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
+
+/**
+ * Serves rainfall queries over HTTP as JSON, using the JDK's built in HTTP server so
+ * there are no dependencies. Every query the interface can make is available: <br /><br />
+ * <pre>
+ *  GET /api/{operation}/{period}?year=&amp;month=&amp;week=&amp;day=&amp;duration=&amp;station=
+ *      /api/total/year?year=1990                  {"query":"total year 1990","value":1047.7}
+ *      /api/average/months?year=1990              per-month series of a year
+ *      /api/wettest/month?year=1990&amp;month=5&amp;duration=2   "+/- duration" series
+ *  GET /api/query?q=total+month+1990+5[&amp;station=]  a query in the text form read by {@link Query}
+ *  GET /api/stations                              names of the loaded stations
+ *  GET /api/cache                                 query cache counters
+ *  GET /api/metrics                               parse counters and query latencies (text)
+ * </pre>
+ * Invalid or unsupported queries are answered with status 400 and an "error" field. <br /><br />
+ * Each request runs on its own virtual thread when the JVM supports them (Java 21+);
+ * on older JVMs a cached pool of daemon threads is used instead. Requests read the
+ * immutable snapshot of each station held in the {@link StationRegistry}, without locks.
+ * Results are kept in a {@link QueryCache}, so the queries dashboards repeat are
+ * answered with a lookup until the data changes.
+ *
+ * @author Kieran
+ * @see QueryEngine
+ * @see LoadTestClient
+ */
+public class RainfallServer {
+
+    /** Port used when none is given */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+
+    static {
+        // Without TCP_NODELAY a response on a kept-alive connection waits ~40ms for the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final QueryEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Main constructor - binds the server but does not start it
+     * @param port Port to listen on (0 for any free port)
+     * @throws IOException if the port cannot be bound
+     */
+    public RainfallServer(int port) throws IOException {
+        this(port, new QueryCache());
+    }
+
+    /**
+     * Binds the server with a given query cache but does not start it
+     * @param port Port to listen on (0 for any free port)
+     * @param cache Cache to keep results in, or null to calculate every query
+     * @throws IOException if the port cannot be bound
+     */
+    public RainfallServer(int port, QueryCache cache) throws IOException {
+        engine = new QueryEngine(cache);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleRequest(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts answering requests
+     */
+    public void start() {
+        server.start();
+        Output.print("Rainfall server listening on port " + getPort());
+    }
+
+    /**
+     * Stops the server
+     * @param delay Seconds to wait for requests in progress to finish
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * The port the server is bound to
+     * @return int - port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, "{\"error\":\"Only GET is supported\"}");
+            return;
+        }
+
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        HashMap<String, String> params;
+        try {
+            params = parseParameters(exchange.getRequestURI().getRawQuery());
+        } catch (IllegalArgumentException iae) {
+            send(exchange, 400, "{\"error\":\"Malformed query string\"}");
+            return;
+        }
+
+        // path[0] is empty and path[1] is "api"
+        if (path.length == 3 && path[2].equals("stations")) {
+            send(exchange, 200, stationsJson());
+            return;
+        }
+        if (path.length == 3 && path[2].equals("cache")) {
+            send(exchange, 200, cacheJson());
+            return;
+        }
+        if (path.length == 3 && path[2].equals("metrics")) {
+            send(exchange, 200, Metrics.dump(), TEXT_TYPE);
+            return;
+        }
+
+        QueryResult result;
+        try {
+            Query query;
+            if (path.length == 3 && path[2].equals("query")) {
+                String text = params.get("q");
+                if (text == null)
+                    throw new IllegalArgumentException("Missing parameter: q");
+                query = Query.parse(text).forStation(params.get("station"));
+            }
+            else if (path.length == 4) {
+                query = new Query(params.get("station"), Query.parseOperation(path[2]), Query.parsePeriod(path[3]),
+                        intParameter(params, "year", true), intParameter(params, "month", false),
+                        intParameter(params, "week", false), intParameter(params, "day", false),
+                        intParameter(params, "duration", false));
+            }
+            else {
+                send(exchange, 404, "{\"error\":\"Unknown path\"}");
+                return;
+            }
+            result = engine.execute(query);
+        } catch (IllegalArgumentException iae) {
+            result = QueryResult.error(exchange.getRequestURI().toString(), iae.getMessage());
+        }
+        send(exchange, result.isError() ? 400 : 200, ResultWriter.toJson(result));
+    }
+
+    private String stationsJson() {
+        StringBuilder sb = new StringBuilder("{\"default\":");
+        sb.append(quote(StationRegistry.getDefault().getName())).append(",\"stations\":[");
+        ArrayList<String> names = StationRegistry.getStationNames();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(quote(names.get(i)));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private String cacheJson() {
+        QueryCache cache = engine.getCache();
+        if (cache == null)
+            return "{\"enabled\":false}";
+        return "{\"enabled\":true,\"hits\":" + cache.getHits() + ",\"misses\":" + cache.getMisses()
+                + ",\"evictions\":" + cache.getEvictions() + ",\"size\":" + cache.size() + "}";
+    }
+
+    private static String quote(String text) {
+        return '"' + text.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, body, JSON_TYPE);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body, String type) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private static HashMap<String, String> parseParameters(String rawQuery) throws UnsupportedEncodingException {
+        HashMap<String, String> params = new HashMap<String, String>();
+        if (rawQuery == null)
+            return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private static int intParameter(HashMap<String, String> params, String name, boolean required) {
+        String value = params.get(name);
+        if (value == null || value.length() == 0) {
+            if (required)
+                throw new IllegalArgumentException("Missing parameter: " + name);
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Not a number: " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Creates the executor requests run on: a virtual thread per request when the JVM
+     * has them, looked up reflectively so the server still builds and runs on older JVMs
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService)factory.invoke(null);
+        } catch (Exception e) {
+            // NoSuchMethodException before Java 21 (or a preview API which is not enabled)
+            Output.print("Virtual threads are not available, using a thread pool");
+            final AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "rainfall-http-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the server from the command line
+     * @param args [--port n] [--cache n] data file [name=data file ...]; the first file is the
+     *          default station and --cache 0 turns the query cache off
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = DEFAULT_PORT;
+        int cacheSize = QueryCache.DEFAULT_CAPACITY;
+        RainfallLoader loader = new RainfallLoader();
+        boolean loaded = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) {
+                port = parseOption(args[++i], 1, 65535, "--port takes a port number from 1 to 65535");
+                continue;
+            }
+            if (args[i].equals("--cache") && i + 1 < args.length) {
+                cacheSize = parseOption(args[++i], 0, Integer.MAX_VALUE, "--cache takes a number of results, or 0 for no cache");
+                continue;
+            }
+
+            int eq = args[i].indexOf('=');
+            String name = eq > 0 ? args[i].substring(0, eq) : null;
+            String file = eq > 0 ? args[i].substring(eq + 1) : args[i];
+            StationDataset station = loader.loadStation(name != null ? name : new File(file).getName(), file);
+            if (station == null) {
+                Output.error("Unable to load " + file);
+                System.exit(1);
+            }
+            if (!loaded)
+                StationRegistry.setDefault(station);
+            loaded = true;
+        }
+        if (!loaded)
+            usage();
+
+        Metrics.registerMBean();
+        try {
+            new RainfallServer(port, cacheSize > 0 ? new QueryCache(cacheSize) : null).start();
+        } catch (IOException ioe) {
+            Output.error("RainfallServer: Unable to listen on port " + port + ": " + ioe.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads a number given to an option, printing the usage and exiting if it is not a
+     * number in range
+     */
+    private static int parseOption(String value, int min, int max, String problem) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= min && n <= max)
+                return n;
+        } catch (NumberFormatException nfe) {
+            // Reported below
+        }
+        Output.error(problem + ": " + value);
+        usage();
+        return -1;
+    }
+
+    private static void usage() {
+        Output.error("Usage: RainfallServer [--port n] [--cache n] data.txt [name=data.txt ...]");
+        System.exit(2);
+    }
+
+}
@@ -0,0 +1,1327 @@
+package org.rainfall.station;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.rainfall.lang.Output;
+import org.rainfall.store.DayStore;
+import org.rainfall.store.Downsampler;
+import org.rainfall.store.PrefixSumIndex;
+import org.rainfall.store.QuantileIndex;
+import org.rainfall.store.QuantileSketch;
+import org.rainfall.store.RangeExtremaIndex;
+import org.rainfall.store.RollupCube;
+import org.rainfall.store.SpellIndex;
+import org.rainfall.util.Date;
+import org.rainfall.util.DateIndex;
+import org.rainfall.util.DayReading;
+import org.rainfall.util.Spell;
+
+/**
+ * The data set of a single weather station. Each station owns its own
+ * {@link DayStore}, {@link DateIndex} and the indexes built over the store
+ * ({@link PrefixSumIndex}, {@link RangeExtremaIndex}, {@link RollupCube},
+ * {@link SpellIndex} and {@link QuantileIndex}), so any
+ * number of stations can be loaded side by side without their data mixing. <br /><br />
+ * A StationDataset is an immutable snapshot of the station: its store and indexes
+ * are complete when it is constructed and never change afterwards, so any number of
+ * threads can query it without locking. New data is added by collecting months in an
+ * {@link Update} and calling {@link #apply(Update)}, which builds the next version
+ * of the station on copies of the store and indexes; the new version is published
+ * through {@link StationRegistry#replace(StationDataset, StationDataset)} while
+ * queries carry on against the old one, which is garbage collected once nothing
+ * refers to it. Versions share nothing, so every update pays for copying the whole
+ * store and every index: the cost of applying one grows with the length of the
+ * archive rather than the size of the update. <br /><br />
+ * Provides the rainfall queries (Wettest, Driest, Averages and Totals over Years,
+ * Months, Weeks and Days) for the station; RainfallData offers the same queries
+ * as static methods on the default station of the {@link StationRegistry}.
+ *
+ * @author Kieran
+ * @see StationRegistry
+ */
+public class StationDataset {
+
+    private static final AtomicLong versions = new AtomicLong();
+
+    private final String name;
+    private final DayStore store;
+    private final DateIndex dates;
+    private final PrefixSumIndex prefixSums;
+    private final RangeExtremaIndex extrema;
+    private final RollupCube rollups;
+    private final SpellIndex spells;
+    private final QuantileIndex quantiles;
+    private final long version = versions.incrementAndGet(); // unique to this snapshot
+
+    /**
+     * Creates an empty station
+     * @param name Name the station is registered under
+     */
+    public StationDataset(String name) {
+        this(name, new DayStore());
+    }
+
+    /**
+     * Creates a station around an already populated store (for example one read
+     * from a snapshot file), registering a Date object for each of its months.
+     * The station takes ownership of the store, which must not be changed afterwards.
+     * @param name Name the station is registered under
+     * @param store Store holding the station's data
+     */
+    public StationDataset(String name, DayStore store) {
+        this.name = name;
+        this.store = store;
+        this.dates = new DateIndex();
+
+        ArrayList<Integer> years = new ArrayList<Integer>(store.getYears());
+        Collections.sort(years);
+        for (int year : years) {
+            for (int month = 1; month <= 12; month++) {
+                if (store.hasMonth(year, month))
+                    dates.add(new Date(year, month));
+            }
+        }
+        this.prefixSums = new PrefixSumIndex(store);
+        this.extrema = new RangeExtremaIndex(store);
+        this.rollups = new RollupCube(store);
+        this.spells = new SpellIndex(store, SpellIndex.WET_DAY_THRESHOLD);
+        this.quantiles = new QuantileIndex(store);
+    }
+
+    /**
+     * Creates the next version of a station from its parts
+     */
+    private StationDataset(String name, DayStore store, DateIndex dates,
+            PrefixSumIndex prefixSums, RangeExtremaIndex extrema, RollupCube rollups, SpellIndex spells,
+            QuantileIndex quantiles) {
+        this.name = name;
+        this.store = store;
+        this.dates = dates;
+        this.prefixSums = prefixSums;
+        this.extrema = extrema;
+        this.rollups = rollups;
+        this.spells = spells;
+        this.quantiles = quantiles;
+    }
+
+    /**
+     * Name the station is registered under
+     * @return String - station name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the store holding the station's data, which must not be changed
+     * @return DayStore - the loaded data
+     */
+    public DayStore getStore() {
+        return store;
+    }
+
+    /**
+     * Gets the index of the months loaded for the station, which must not be changed
+     * @return DateIndex - loaded months
+     */
+    public DateIndex getDates() {
+        return dates;
+    }
+
+    /**
+     * Version of the station's data. Every snapshot has a different version, so results
+     * calculated at one version can be reused for as long as it is the current version.
+     * @return long - data version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Builds the next version of the station with an update applied. Only the copy is
+     * changed, so queries can carry on against this version in the meantime. The store
+     * and every index are copied in full, so an update costs time in proportion to the
+     * days stored (a few hundred microseconds for 70 years) however few months it
+     * holds. When only later months are stored (for example lines appended to a data
+     * file) the copied indexes are brought up to date from the first changed day rather
+     * than being rebuilt from the store.
+     * @param update Months to store and dates to add or remove
+     * @return StationDataset - the new version, or this station if the update changes nothing
+     */
+    public StationDataset apply(Update update) {
+        if (update.isEmpty())
+            return this;
+
+        DateIndex nextDates = dates.copy();
+        for (Date d : update.removedDates) {
+            nextDates.remove(d);
+        }
+        for (Date d : update.addedDates) {
+            nextDates.add(d);
+        }
+
+        DayStore nextStore = null;
+        int firstChanged = Integer.MAX_VALUE;
+        for (Update.Month m : update.months) {
+            // Dates outside of the supported range are never looked up
+            if (!Date.isSupported(m.year, m.month))
+                continue;
+            if (nextStore == null)
+                nextStore = store.copy();
+            nextDates.add(new Date(m.year, m.month));
+            nextStore.putMonth(m.year, m.month, m.days);
+            firstChanged = Math.min(firstChanged, Date.getDayNumber(m.year, m.month, 1));
+        }
+        if (nextStore == null)
+            return new StationDataset(name, store, nextDates, prefixSums, extrema, rollups, spells, quantiles);
+
+        // A month before the first stored month moves every day offset
+        if (store.isEmpty() || nextStore.getFirstDayNumber() != store.getFirstDayNumber())
+            return new StationDataset(name, nextStore, nextDates,
+                    new PrefixSumIndex(nextStore), new RangeExtremaIndex(nextStore), new RollupCube(nextStore),
+                    new SpellIndex(nextStore, spells.getThreshold()), new QuantileIndex(nextStore));
+
+        int from = firstChanged - nextStore.getFirstDayNumber();
+        PrefixSumIndex nextPrefixSums = prefixSums.copy();
+        RangeExtremaIndex nextExtrema = extrema.copy();
+        RollupCube nextRollups = rollups.copy();
+        SpellIndex nextSpells = spells.copy();
+        QuantileIndex nextQuantiles = quantiles.copy();
+        nextPrefixSums.update(nextStore, from);
+        nextExtrema.update(nextStore, from);
+        nextRollups.update(nextStore, from);
+        nextSpells.update(nextStore, from);
+        nextQuantiles.update(nextStore, from);
+        return new StationDataset(name, nextStore, nextDates, nextPrefixSums, nextExtrema, nextRollups, nextSpells,
+                nextQuantiles);
+    }
+
+    /**
+     * List of the years collected from the inputted data file
+     * @return ArrayList of years from the data file (we don't know how many items there will be)
+     */
+    public HashSet<Integer> getYears() {
+        return store.getYears();
+    }
+
+    /**
+     * Prints to console all items of rainfall data in the format: <br />
+     * <Year, Month> : [ Rainfall Data 1:31 days ]
+     */
+    public void printRainfallData() {
+        ArrayList<Integer> years = new ArrayList<Integer>(getYears());
+        Collections.sort(years);
+        for (int year : years) {
+            for (int month = 1; month <= 12; month++) {
+                if (store.hasMonth(year, month))
+                    Output.print("<" + year + ", " + month + "> : " + getMonthlyRainfall(year, month));
+            }
+        }
+    }
+
+    /**
+     * Calculates the wettest day of a given month
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the wettest day of the specified month is returned.
+     */
+    public float getWettestDayOfMonth(int year, int month) {
+        if (year <= 0 && (month <= 0 || month > 12)) {
+            Output.error("Please specify a year and month number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return orZero(cube.getMonths().max(cube.monthCell(year, month)));
+        }
+    }
+
+    /**
+     * Grabs the wettest day over a duration of months
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param duration +/- value for the specified month e.g. (Month 2 +/- 1 would be 1, 2, 3)
+     * @return ArrayList of floats containing the wettest day over a number of months
+     */
+    public ArrayList<Float> getWettestDayOfMultipleMonths(int year, int month, int duration) {
+        ArrayList<Float> data = new ArrayList<Float>();
+
+        // Go backwards (year - duration)
+        for (int k = duration; k > 0; k--) {
+            if ((month - k) < 1 && year-1 >= dates.getOldestYear()) {
+                year--; month = 12;
+                data.add(getWettestDayOfMonth(year, month));
+            }
+            else {
+                data.add(getWettestDayOfMonth(year, month - k));
+            }
+        }
+        // Get year
+        data.add(getWettestDayOfMonth(year, month));
+        // Get year + duration
+        for (int k = 1; k <= duration; k++) {
+            if ((month + k) > 12 && (year+1 <= dates.getMostRecentYear())) {
+                year++; month = 1;
+                data.add(getWettestDayOfMonth(year, month));
+            }
+            else {
+                data.add(getWettestDayOfMonth(year, month + k));
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Calculates the wettest day of the year
+     * @param year The year you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the wettest day of the specified year is returned.
+     */
+    public float getWettestDayOfYear(int year) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return orZero(cube.getYears().max(cube.yearCell(year)));
+        }
+    }
+
+    /**
+     * Grabs the wettest day of each month for a given year
+     * @param year The year you wish to lookup
+     * @return ArrayList of 12 floats one for each month of the given year consisting of the wettest day value
+     */
+    public ArrayList<Float> getWettestDayPerMonthOfYear(int year) {
+        RollupCube cube = rollups;
+        ArrayList<Float> data = new ArrayList<Float>();
+
+        for (int month = 1; month <= 12; month++) {
+            if (store.hasMonth(year, month))
+                data.add(orZero(cube.getMonths().max(cube.monthCell(year, month))));
+        }
+
+        return data;
+    }
+
+    /**
+     * Grabs the wettest day over multiple years
+     * @param year The year you wish to lookup
+     * @param duration +/- a number of months based on the given month
+     * @return ArrayList of floats consisting of the wettest day over multiple years
+     */
+    public ArrayList<Float> getWettestDayOfMultipleYears(int year, int duration) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return null;
+        }
+        else {
+            ArrayList<Float> data = new ArrayList<Float>();
+
+            // Go backwards (year - duration)
+            for (int k = duration; k > 0; k--) {
+                data.add(getWettestDayOfYear(year - k));
+            }
+            // Get year
+            data.add(getWettestDayOfYear(year));
+            // Get year + duration
+            for (int k = 1; k <= duration; k++) {
+                data.add(getWettestDayOfYear(year + k));
+            }
+
+            return data;
+        }
+    }
+
+    /**
+     * Calculates the driest day of a given month
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the driest day of the specified month is returned.
+     */
+    public float getDriestDayOfMonth(int year, int month) {
+        if (year <= 0 && (month <= 0 || month > 12)) {
+            Output.error("Please specify a year and month number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return orZero(cube.getMonths().min(cube.monthCell(year, month)));
+        }
+    }
+
+    /**
+     * Calculates the driest day of the year
+     * @param year The year you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the driest day of the specified year is returned.
+     */
+    public float getDriestDayOfYear(int year) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return orZero(cube.getYears().min(cube.yearCell(year)));
+        }
+    }
+
+    /**
+     * Gets the rainfall for a specified day of month and year
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param day Which days rainfall you want to collect
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the rainfall on the specified day is returned.
+     */
+    public float getTotalDailyRainfall(int year, int month, int day) {
+        if (year <= 0 && month <= 0 && day <= 0) {
+            Output.error("Please specify a year, month and day number");
+            return -99.99F;
+        }
+        else if (day <= 0 || day > Date.getDaysInMonth(year, month)) {
+            Output.error("Invalid day number specified");
+            return -99.99F;
+        }
+        else {
+            return store.get(store.indexOf(year, month, day));
+        }
+    }
+
+    /**
+     * Grabs the amount of rainfall that occurred each day of a particular week
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param week The week number you wish to lookup
+     * @return ArrayList of floats containing the rainfall for each day of that particular week.
+     */
+    public ArrayList<Float> getTotalWeeklyRainfallList(int year, int month, int week) {
+        if (year <= 0 && month <= 0 && week <= 0) {
+            Output.error("Please specify a year, month and week number");
+            return null;
+        }
+        else if (week <= 0 || week > 5) {
+            Output.error("Invalid week number specified");
+            return null;
+        }
+        else if (!weekExists(year, month, week)) {
+            return new ArrayList<Float>();
+        }
+        else {
+            // A week is 7 consecutive days, so the last week of a month flows into the next
+            int start = getWeekStart(year, month, week);
+            return store.toList(start, start + 7);
+        }
+    }
+
+    /**
+     * Calculates the total rainfall for a specified week. For example the total rainfall
+     * that occurred on week 2 (day 7 - 14) of a specified month and year
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param week The week number you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the rainfall on the specified day is returned.
+     */
+    public float getTotalWeeklyRainfall(int year, int month, int week) {
+        if (year <= 0 && month <= 0 && week <= 0) {
+            Output.error("Please specify a year, month and week number");
+            return -99.99F;
+        }
+        else if (week <= 0 || week > 5) {
+            Output.error("Invalid week number specified");
+            return -99.99F;
+        }
+        else if (!weekExists(year, month, week)) {
+            return 0;
+        }
+        else {
+            // A week is 7 consecutive days, so the last week of a month flows into the next
+            int start = getWeekStart(year, month, week);
+            return prefixSums.total(start, start + 7);
+        }
+    }
+
+    /**
+     * Calculates the average rainfall for a specified week. For example the mean (average) rainfall
+     * that occurred on week 2 (day 7 - 14) of a specified month and year
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param week The week number you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the rainfall on the specified week is returned.
+     */
+    public float getAverageWeeklyRainfall(int year, int month, int week) {
+        if (year <= 0 && month <= 0 && week <= 0) {
+            Output.error("Please specify a year, month and week number");
+            return -99.99F;
+        }
+        else {
+            return getTotalWeeklyRainfall(year, month, week) / 7;
+        }
+    }
+
+    /**
+     * Gets a specified dateObject rainfall data in ArrayList<Float> format
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return ArrayList - If there is an error null is returned<br />
+     *                     Otherwise an ArrayList of floats consisting of the rainfall data for that month (1 - 31 days.)
+     */
+    public ArrayList<Float> getMonthlyRainfall(int year, int month) {
+        if (year <= 0 && month <= 0) {
+            Output.error("Please specify a year and month number");
+            return null;
+        }
+        else if (!store.hasMonth(year, month)) {
+            return null;
+        }
+        else {
+            int start = store.indexOf(year, month, 1);
+            return store.toList(start, start + Date.getDaysInMonth(year, month));
+        }
+    }
+
+    /**
+     * Returns the total rainfall for a specific month of a year
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the rainfall on the specified month is returned.
+     */
+    public float getTotalMonthlyRainfall(int year, int month) {
+        if (year <= 0 && month <= 0) {
+            Output.error("Please specify a year and month number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return cube.getMonths().sum(cube.monthCell(year, month));
+        }
+    }
+
+    /**
+     * Calculates the mean/average rainfall for a specified month of a year
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the rainfall on the specified month is returned.
+     */
+    public float getAverageMonthlyRainfall(int year, int month) {
+        if (year <= 0 && month <= 0) {
+            Output.error("Please specify a year and month number");
+            return -99.99F;
+        }
+        else {
+            return getTotalMonthlyRainfall(year, month)/Date.getDaysInMonth(year, month);
+        }
+    }
+
+    /**
+     * Grabs the average monthly rainfall over a number of months
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup (used as a pivot on the duration)
+     * @param duration +/- a number of months based on the given month
+     * @return ArrayList of floats consisting of the average rainfall over a number of months
+     */
+    public ArrayList<Float> getAverageMonthlyRainfallOverTime(int year, int month, int duration) {
+        ArrayList<Float> data = new ArrayList<Float>();
+
+        // Go backwards (month - duration)
+        for (int k = duration; k > 0; k--) {
+            if ((month - k) < 1 && year-1 >= dates.getOldestYear()) {
+                year--; month = 12;
+                data.add(getAverageMonthlyRainfall(year, month));
+            }
+            else {
+                data.add(getAverageMonthlyRainfall(year, month - k));
+            }
+        }
+        // Get month
+        data.add(getAverageMonthlyRainfall(year, month));
+        // Get month + duration
+        for (int k = 1; k <= duration; k++) {
+            if ((month + k) > 12 && (year+1 <= dates.getMostRecentYear())) {
+                year++; month = 1;
+                data.add(getAverageMonthlyRainfall(year, month));
+            }
+            else {
+                data.add(getAverageMonthlyRainfall(year, month + k));
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Grabs the average rainfall per month over a particular year
+     * @param year The year you wish to lookup
+     * @return ArrayList of floats containing the average rainfall per month over a particular year
+     */
+    public ArrayList<Float> getAverageYearlyRainfallPerMonth(int year) {
+        RollupCube cube = rollups;
+        ArrayList<Float> data = new ArrayList<Float>();
+
+        for (int month = 1; month <= 12; month++) {
+            if (store.hasMonth(year, month))
+                data.add(cube.getMonths().sum(cube.monthCell(year, month)) / Date.getDaysInMonth(year, month));
+        }
+        return data;
+    }
+
+    /**
+     * Grabs the total rainfall per month over the duration of a specified year
+     * @param year The year you wish to lookup
+     * @return An array list of floats consisting of the total rainfall per month
+     */
+    public ArrayList<Float> getTotalYearlyRainfallPerMonth(int year) {
+        if (year <= 0) {
+            Output.error("Please specify a year and month number");
+            return null;
+        }
+        else {
+            RollupCube cube = rollups;
+            ArrayList<Float> data = new ArrayList<Float>();
+
+            for (int month = 1; month <= 12; month++) {
+                if (store.hasMonth(year, month))
+                    data.add(cube.getMonths().sum(cube.monthCell(year, month)));
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Grabs the total rainfall per year over a particular duration
+     * @param year The year you wish to lookup
+     * @param duration The duration +/- the specified year to lookup
+     * @return An array list of floats consisting of the total rainfall per year
+     */
+    public ArrayList<Float> getTotalYearlyRainfallOverTime(int year, int duration) {
+        if (year <= 0) {
+            Output.error("Please specify a year and duration number");
+            return null;
+        }
+        else {
+            ArrayList<Float> data = new ArrayList<Float>();
+
+            // Go backwards (year - duration)
+            for (int k = duration; k > 0; k--) {
+                data.add(getTotalYearlyRainfall(year - k));
+            }
+            // Get year
+            data.add(getTotalYearlyRainfall(year));
+            // Get year + duration
+            for (int k = 1; k <= duration; k++) {
+                data.add(getTotalYearlyRainfall(year + k));
+            }
+
+            return data;
+        }
+    }
+
+    /**
+     * Calculates the total rainfall across all dateObject of the specified year
+     * @param year The year you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the total rainfall on the specified year is returned.
+     */
+    public float getTotalYearlyRainfall(int year) {
+        if (year <= 0) {
+            Output.error("Please specify a year and month number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return cube.getYears().sum(cube.yearCell(year));
+        }
+    }
+
+    /**
+     * Calculates the mean (average) amount of rainfall across the specified year
+     * @param year The year you wish to lookup
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the average rainfall on the specified year is returned.
+     */
+    public float getAverageYearlyRainfall(int year) {
+        if (year <= 0) {
+            Output.error("Please specify a year and month number");
+            return -99.99F;
+        }
+        else {
+            return getTotalYearlyRainfall(year)/365;
+        }
+    }
+
+    /**
+     * Grabs the average rainfall over a number of years
+     * @param year The year you wish to lookup
+     * @param duration The duration +/- the specified year to lookup
+     * @return ArrayList of floats containing the average rainfall over each year
+     */
+    public ArrayList<Float> getAverageYearlyRainfallOverTime(int year, int duration) {
+        ArrayList<Float> data = new ArrayList<Float>();
+
+        // Go backwards (year - duration)
+        for (int k = duration; k > 0; k--) {
+            data.add(getAverageYearlyRainfall(year - k));
+        }
+        // Get year
+        data.add(getAverageYearlyRainfall(year));
+        // Get year + duration
+        for (int k = 1; k <= duration; k++) {
+            data.add(getAverageYearlyRainfall(year + k));
+        }
+
+        return data;
+    }
+
+    /**
+     * Calculates the total rainfall of a meteorological season
+     * @param year The year you wish to lookup (winter includes December of the previous year)
+     * @param season The season number, one of RollupCube.WINTER, SPRING, SUMMER or AUTUMN
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the total rainfall of the season is returned.
+     */
+    public float getTotalSeasonalRainfall(int year, int season) {
+        if (year <= 0 || season < RollupCube.WINTER || season > RollupCube.AUTUMN) {
+            Output.error("Please specify a year and season number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return cube.getSeasons().sum(cube.seasonCell(year, season));
+        }
+    }
+
+    /**
+     * Calculates the wettest day of a meteorological season
+     * @param year The year you wish to lookup (winter includes December of the previous year)
+     * @param season The season number, one of RollupCube.WINTER, SPRING, SUMMER or AUTUMN
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the wettest day of the season is returned.
+     */
+    public float getWettestDayOfSeason(int year, int season) {
+        if (year <= 0 || season < RollupCube.WINTER || season > RollupCube.AUTUMN) {
+            Output.error("Please specify a year and season number");
+            return -99.99F;
+        }
+        else {
+            RollupCube cube = rollups;
+            return orZero(cube.getSeasons().max(cube.seasonCell(year, season)));
+        }
+    }
+
+    /**
+     * Counts the days of a year which have no reading in the loaded data
+     * @param year The year you wish to lookup
+     * @return int - If there is an error -1 is returned<br />
+     *               Otherwise the number of missing days in the loaded months of the year.
+     */
+    public int getMissingDaysOfYear(int year) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return -1;
+        }
+        else {
+            RollupCube cube = rollups;
+            return cube.getYears().missing(cube.yearCell(year));
+        }
+    }
+
+    /**
+     * Calculates the total rainfall between two dates (inclusive), for example from
+     * the 15th March 1980 to the 2nd February 1983
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the total rainfall over the range is returned.
+     */
+    public float getTotalRainfall(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return -99.99F;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            return prefixSums.total(from, to);
+        }
+    }
+
+    /**
+     * Calculates the mean (average) daily rainfall between two dates (inclusive),
+     * dividing the total by the number of days in the range
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return float - If there is an error -99.99 is returned<br />
+     *                 Otherwise a float for the average rainfall over the range is returned.
+     */
+    public float getAverageRainfall(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return -99.99F;
+        }
+        else {
+            int days = Date.getDayNumber(toYear, toMonth, toDay) - Date.getDayNumber(fromYear, fromMonth, fromDay) + 1;
+            return getTotalRainfall(fromYear, fromMonth, fromDay, toYear, toMonth, toDay) / days;
+        }
+    }
+
+    /**
+     * Counts the days with a recorded reading between two dates (inclusive)
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return int - If there is an error -1 is returned<br />
+     *               Otherwise the number of days with a reading is returned.
+     */
+    public int getRecordedDays(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return -1;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            return prefixSums.count(from, to);
+        }
+    }
+
+    /**
+     * Counts the days between two dates (inclusive) with more rainfall than a threshold,
+     * e.g. the number of heavy rain days in a decade. There is no index for this so
+     * every day of the range is scanned, using the SIMD kernels when they are available.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param threshold Rainfall (mm) the days must exceed
+     * @return int - If there is an error -1 is returned<br />
+     *               Otherwise the number of days over the threshold is returned.
+     */
+    public int getDaysAbove(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, float threshold) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return -1;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            return store.countAbove(from, to, threshold);
+        }
+    }
+
+    /**
+     * Finds the wettest day between two dates (inclusive) and the date it occurred on
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return DayReading - If there is an error or no readings in the range null is returned<br />
+     *                      Otherwise the wettest day and its rainfall is returned.
+     */
+    public DayReading getWettestDay(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return null;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            return toDayReading(extrema.wettest(from, to));
+        }
+    }
+
+    /**
+     * Finds the driest day between two dates (inclusive) and the date it occurred on
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @return DayReading - If there is an error or no readings in the range null is returned<br />
+     *                      Otherwise the driest day and its rainfall is returned.
+     */
+    public DayReading getDriestDay(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return null;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            return toDayReading(extrema.driest(from, to));
+        }
+    }
+
+    /**
+     * Finds the wettest run of consecutive days between two dates (inclusive), e.g.
+     * the largest 7-day total of a decade. Missing days count as dry.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param days Length of the run in days
+     * @return DayReading - If there is an error or no readings in the range null is returned<br />
+     *                      Otherwise the first day of the wettest run and the run's total rainfall is returned.
+     */
+    public DayReading getWettestPeriod(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int days) {
+        return getWettestPeriods(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, new int[] { days })[0];
+    }
+
+    /**
+     * Finds the wettest run of consecutive days of each of several lengths between two
+     * dates (inclusive), e.g. the largest 3, 7 and 30-day totals, in one pass over the range.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param days Length of each run in days
+     * @return DayReading[] - If there is an error an array of nulls is returned<br />
+     *                        Otherwise the first day and total rainfall of the wettest run
+     *                        of each length, or null for a length with no readings.
+     */
+    public DayReading[] getWettestPeriods(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int[] days) {
+        DayReading[] periods = new DayReading[days.length];
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay) || !isValidPeriods(days)) {
+            return periods;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            return toPeriodReadings(prefixSums.wettestWindows(from, to, days), days);
+        }
+    }
+
+    /**
+     * Finds the wettest run of consecutive days within a year
+     * @param year The year you wish to lookup
+     * @param days Length of the run in days
+     * @return DayReading - If there is an error or no readings in the year null is returned<br />
+     *                      Otherwise the first day of the wettest run and the run's total rainfall is returned.
+     */
+    public DayReading getWettestPeriodOfYear(int year, int days) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return null;
+        }
+        else {
+            return getWettestPeriod(year, 1, 1, year, 12, 31, days);
+        }
+    }
+
+    /**
+     * Finds the wettest run of consecutive days of each of several lengths across
+     * every loaded day of the station
+     * @param days Length of each run in days
+     * @return DayReading[] - If there is an error an array of nulls is returned<br />
+     *                        Otherwise the first day and total rainfall of the wettest run
+     *                        of each length, or null for a length with no readings.
+     */
+    public DayReading[] getWettestPeriodsOfRecord(int[] days) {
+        if (!isValidPeriods(days)) {
+            return new DayReading[days.length];
+        }
+        else {
+            return toPeriodReadings(prefixSums.wettestWindows(0, store.size(), days), days);
+        }
+    }
+
+    /**
+     * Finds the longest spell of wet or dry days between two dates (inclusive), e.g.
+     * the longest drought of a decade. A day is wet with at least
+     * {@link SpellIndex#WET_DAY_THRESHOLD} of rainfall and a missing day ends a spell;
+     * a spell running over either date is cut at it.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @return Spell - If there is an error or no spell of the kind in the range null is returned<br />
+     *                 Otherwise the longest spell (the earliest of equally long spells) is returned.
+     */
+    public Spell getLongestSpell(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int kind) {
+        ArrayList<Spell> longest = getLongestSpells(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, kind, 1);
+        return longest == null || longest.isEmpty() ? null : longest.get(0);
+    }
+
+    /**
+     * Finds the longest spells of wet or dry days between two dates (inclusive)
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @param count Most spells to return
+     * @return ArrayList - If there is an error null is returned<br />
+     *                     Otherwise up to count spells, longest first.
+     */
+    public ArrayList<Spell> getLongestSpells(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, int kind, int count) {
+        return getLongestSpells(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, kind, count, spells.getThreshold());
+    }
+
+    /**
+     * Finds the longest spells of wet or dry days between two dates (inclusive), for a
+     * wet day threshold other than the one the station indexes (e.g. spells of days
+     * with at least 10mm). The days of the station are scanned for spells first, so
+     * this takes time in proportion to the length of the record.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @param count Most spells to return
+     * @param threshold Rainfall (mm) a day needs to be wet
+     * @return ArrayList - If there is an error null is returned<br />
+     *                     Otherwise up to count spells, longest first.
+     */
+    public ArrayList<Spell> getLongestSpells(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay,
+            int kind, int count, float threshold) {
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay)) {
+            return null;
+        }
+        else if (kind != SpellIndex.WET && kind != SpellIndex.DRY) {
+            Output.error("Please specify a wet or dry spell");
+            return null;
+        }
+        else if (count <= 0) {
+            Output.error("Please specify a number of spells of at least 1");
+            return null;
+        }
+        else {
+            SpellIndex index = threshold == spells.getThreshold() ? spells : new SpellIndex(store, threshold);
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            int[] found = index.longest(from, to, kind, count);
+
+            ArrayList<Spell> longest = new ArrayList<Spell>(found.length / 2);
+            for (int i = 0; i < found.length; i += 2) {
+                longest.add(new Spell(store.getFirstDayNumber() + found[i], found[i + 1], kind == SpellIndex.WET,
+                        prefixSums.total(found[i], found[i] + found[i + 1])));
+            }
+            return longest;
+        }
+    }
+
+    /**
+     * Finds the longest spell of wet or dry days within a year
+     * @param year The year you wish to lookup
+     * @param kind {@link SpellIndex#WET} or {@link SpellIndex#DRY}
+     * @return Spell - If there is an error or no spell of the kind in the year null is returned<br />
+     *                 Otherwise the longest spell (the earliest of equally long spells) is returned.
+     */
+    public Spell getLongestSpellOfYear(int year, int kind) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return null;
+        }
+        else {
+            return getLongestSpell(year, 1, 1, year, 12, 31, kind);
+        }
+    }
+
+    /**
+     * Estimates a percentile of the daily rainfall between two dates (inclusive),
+     * e.g. the 95th percentile of a decade, from the per month and per year sketches
+     * of the station. The estimate is within {@link QuantileSketch#RELATIVE_ACCURACY}
+     * (1%) of the exact value; days without a reading are left out.
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param percentile Percentile from 0 to 100
+     * @return float - If there is an error or no readings in the range -99.99 is returned<br />
+     *                 Otherwise the estimated daily rainfall at the percentile is returned.
+     */
+    public float getPercentile(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, float percentile) {
+        return getPercentiles(fromYear, fromMonth, fromDay, toYear, toMonth, toDay, new float[] { percentile })[0];
+    }
+
+    /**
+     * Estimates several percentiles of the daily rainfall between two dates (inclusive),
+     * e.g. the 90th, 95th and 99th, from a single merge of the station's sketches
+     * @param fromYear The year of the first day
+     * @param fromMonth The month of the first day
+     * @param fromDay The first day (day of the month)
+     * @param toYear The year of the last day
+     * @param toMonth The month of the last day
+     * @param toDay The last day (day of the month)
+     * @param percentiles Percentiles from 0 to 100
+     * @return float[] - If there is an error or no readings in the range every value is -99.99<br />
+     *                   Otherwise the estimated daily rainfall at each percentile.
+     */
+    public float[] getPercentiles(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay, float[] percentiles) {
+        float[] values = new float[percentiles.length];
+        Arrays.fill(values, -99.99F);
+        if (!isValidRange(fromYear, fromMonth, fromDay, toYear, toMonth, toDay) || !isValidPercentiles(percentiles)) {
+            return values;
+        }
+        else {
+            int from = store.indexOf(fromYear, fromMonth, fromDay);
+            int to = store.indexOf(toYear, toMonth, toDay) + 1;
+            QuantileSketch sketch = quantiles.sketch(from, to);
+            for (int i = 0; i < percentiles.length; i++) {
+                values[i] = sketch.percentile(percentiles[i]);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Estimates a percentile of the daily rainfall of a year
+     * @param year The year you wish to lookup
+     * @param percentile Percentile from 0 to 100
+     * @return float - If there is an error or no readings in the year -99.99 is returned<br />
+     *                 Otherwise the estimated daily rainfall at the percentile is returned.
+     */
+    public float getPercentileOfYear(int year, float percentile) {
+        if (year <= 0) {
+            Output.error("Please specify a year number");
+            return -99.99F;
+        }
+        else {
+            return getPercentile(year, 1, 1, year, 12, 31, percentile);
+        }
+    }
+
+    /**
+     * Estimates a percentile of the daily rainfall of a meteorological season
+     * @param year The year you wish to lookup (winter includes December of the previous year)
+     * @param season The season number, one of RollupCube.WINTER, SPRING, SUMMER or AUTUMN
+     * @param percentile Percentile from 0 to 100
+     * @return float - If there is an error or no readings in the season -99.99 is returned<br />
+     *                 Otherwise the estimated daily rainfall at the percentile is returned.
+     */
+    public float getPercentileOfSeason(int year, int season, float percentile) {
+        if (year <= 0 || season < RollupCube.WINTER || season > RollupCube.AUTUMN) {
+            Output.error("Please specify a year and season number");
+            return -99.99F;
+        }
+        else if (season == RollupCube.WINTER) {
+            // There is no December before year 1, so that winter starts on 1 January
+            int fromYear = year == 1 ? 1 : year - 1, fromMonth = year == 1 ? 1 : 12;
+            return getPercentile(fromYear, fromMonth, 1, year, 2, Date.getDaysInMonth(year, 2), percentile);
+        }
+        else {
+            int firstMonth = season * 3;   // March, June or September
+            int lastMonth = firstMonth + 2;
+            return getPercentile(year, firstMonth, 1, year, lastMonth, Date.getDaysInMonth(year, lastMonth), percentile);
+        }
+    }
+
+    /**
+     * Chooses which days to draw on a chart of [from, to) which has room for a
+     * limited number of points
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param maxPoints Most days to return, usually the width of the chart in pixels
+     * @param method {@link Downsampler#MIN_MAX} or {@link Downsampler#LARGEST_TRIANGLE}
+     * @return int[] - offsets of the days to draw in order, read them with
+     *          {@link DayStore#get(int)}
+     */
+    public int[] getDownsampledDays(int from, int to, int maxPoints, int method) {
+        if (method == Downsampler.LARGEST_TRIANGLE)
+            return Downsampler.largestTriangle(store, from, to, maxPoints);
+        return Downsampler.minMax(store, extrema, from, to, maxPoints);
+    }
+
+    /**
+     * Wettest/driest queries report 0 rather than the missing value when a period has no readings
+     */
+    private float orZero(float value) {
+        return value != DayStore.MISSING_VALUE ? value : 0;
+    }
+
+    /**
+     * Converts a day offset from one of the indexes into a dated reading
+     * @param index Day offset in the store, or -1 when there is no such day
+     * @return DayReading for the day or null
+     */
+    private DayReading toDayReading(int index) {
+        if (index < 0)
+            return null;
+        return DayReading.forDayNumber(store.getFirstDayNumber() + index, store.get(index));
+    }
+
+    /**
+     * Converts the first day offsets of runs of days into dated readings of each run's total
+     * @param starts Offset of the first day of each run, or -1 when there is no such run
+     * @param days Length of each run
+     * @return DayReading[] - readings, null where there is no run
+     */
+    private DayReading[] toPeriodReadings(int[] starts, int[] days) {
+        DayReading[] periods = new DayReading[starts.length];
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] >= 0)
+                periods[i] = DayReading.forDayNumber(store.getFirstDayNumber() + starts[i],
+                        prefixSums.total(starts[i], starts[i] + days[i]));
+        }
+        return periods;
+    }
+
+    /**
+     * Checks that every percentile is between 0 and 100
+     */
+    private boolean isValidPercentiles(float[] percentiles) {
+        for (float p : percentiles) {
+            if (!(p >= 0 && p <= 100)) {
+                Output.error("Please specify a percentile from 0 to 100");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that every run of days is at least a day long
+     */
+    private boolean isValidPeriods(int[] days) {
+        for (int d : days) {
+            if (d <= 0) {
+                Output.error("Please specify a number of days of at least 1");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that both ends of a date range are real dates and are in order
+     */
+    private boolean isValidRange(int fromYear, int fromMonth, int fromDay, int toYear, int toMonth, int toDay) {
+        if (fromYear <= 0 || fromMonth <= 0 || fromMonth > 12 || fromDay <= 0 || fromDay > Date.getDaysInMonth(fromYear, fromMonth)
+                || toYear <= 0 || toMonth <= 0 || toMonth > 12 || toDay <= 0 || toDay > Date.getDaysInMonth(toYear, toMonth)) {
+            Output.error("Please specify a valid start and end date");
+            return false;
+        }
+        else if (Date.getDayNumber(fromYear, fromMonth, fromDay) > Date.getDayNumber(toYear, toMonth, toDay)) {
+            Output.error("The start date must not be after the end date");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the offset of the first day of a week in the day store
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param week The week number (1 - 5) where week 1 starts on the 1st of the month
+     * @return int - day offset of the start of the week
+     */
+    private int getWeekStart(int year, int month, int week) {
+        return store.indexOf(year, month, (week - 1) * 7 + 1);
+    }
+
+    /**
+     * Checks whether a week starts inside the given month (e.g. there is no week 5 of February)
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @param week The week number (1 - 5)
+     * @return true if the first day of the week is a day of the month
+     */
+    private boolean weekExists(int year, int month, int week) {
+        return (week - 1) * 7 < Date.getDaysInMonth(year, month);
+    }
+
+    /**
+     * Changes to be made to a station by {@link StationDataset#apply(Update)}: months of
+     * readings to store and Date objects to add or remove. An update can be applied to
+     * more than one version of a station, e.g. again to a newer version if another
+     * thread published one first.
+     */
+    public static class Update {
+
+        private final ArrayList<Month> months = new ArrayList<Month>();
+        private final ArrayList<Date> addedDates = new ArrayList<Date>();
+        private final ArrayList<Date> removedDates = new ArrayList<Date>();
+
+        /**
+         * Adds a month of data to the update
+         * @param year The year of the readings
+         * @param month The month of the readings
+         * @param days Rainfall for day 1 onwards (-99.99 for days without a reading),
+         *          the values are copied so the array can be reused by the caller
+         */
+        public void storeMonth(int year, int month, float[] days) {
+            months.add(new Month(year, month, days.clone()));
+        }
+
+        /**
+         * Adds a date to the station's date index without storing any readings
+         * @param d Date object consisting of year and month
+         */
+        public void addDate(Date d) {
+            addedDates.add(d);
+        }
+
+        /**
+         * Removes a date from the station's date index, leaving its readings in the store
+         * @param d Date object consisting of year and month
+         */
+        public void removeDate(Date d) {
+            removedDates.add(d);
+        }
+
+        /**
+         * Number of months of data in the update
+         * @return int - month count
+         */
+        public int size() {
+            return months.size();
+        }
+
+        /**
+         * Checks whether the update would change anything
+         * @return true if there are no months or dates in the update
+         */
+        public boolean isEmpty() {
+            return months.isEmpty() && addedDates.isEmpty() && removedDates.isEmpty();
+        }
+
+        private static class Month {
+
+            final int year, month;
+            final float[] days;
+
+            Month(int year, int month, float[] days) {
+                this.year = year;
+                this.month = month;
+                this.days = days;
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.rainfall.station;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps every loaded {@link StationDataset} by name. One station is the default;
+ * it is the station the static methods of RainfallData and Date operate on, so
+ * code written for a single data file keeps working while further stations are
+ * loaded alongside it. <br /><br />
+ * Stations are immutable snapshots, so looking one up never waits: readers get
+ * whichever version was registered last and keep using it for as long as they
+ * like. Changes to the registry are serialised, and a new version of a station is
+ * only published by {@link #replace(StationDataset, StationDataset)} if the
+ * version it was built from is still the registered one.
+ *
+ * @author Kieran
+ * @see StationDataset
+ */
+public class StationRegistry {
+
+    /** Name of the station which exists before any file has been loaded */
+    public static final String DEFAULT_STATION = "default";
+
+    private static final ConcurrentHashMap<String, StationDataset> stations =
+            new ConcurrentHashMap<String, StationDataset>();
+    private static volatile StationDataset defaultStation = register(new StationDataset(DEFAULT_STATION));
+
+    private StationRegistry() { }
+
+    /**
+     * Adds a station, replacing any station already registered under its name. If the
+     * replaced station was the default the new station becomes the default.
+     * @param station The station to register
+     * @return StationDataset - the registered station
+     */
+    public static synchronized StationDataset register(StationDataset station) {
+        StationDataset previous = stations.put(station.getName(), station);
+        if (previous != null && previous == defaultStation)
+            defaultStation = station;
+        return station;
+    }
+
+    /**
+     * Looks up a station by name
+     * @param name The name the station was registered under
+     * @return StationDataset - the station or null if there is no station with the name
+     */
+    public static StationDataset get(String name) {
+        return stations.get(name);
+    }
+
+    /**
+     * Removes a station. The default station cannot be removed.
+     * @param name The name the station was registered under
+     * @return true if the station was removed
+     */
+    public static synchronized boolean remove(String name) {
+        StationDataset station = stations.get(name);
+        if (station == null || station == defaultStation)
+            return false;
+        return stations.remove(name, station);
+    }
+
+    /**
+     * Names of every registered station
+     * @return ArrayList - station names in alphabetical order
+     */
+    public static ArrayList<String> getStationNames() {
+        ArrayList<String> names = new ArrayList<String>(stations.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * The station RainfallData and Date operate on
+     * @return StationDataset - the default station
+     */
+    public static StationDataset getDefault() {
+        return defaultStation;
+    }
+
+    /**
+     * Registers a station and makes it the default. The empty placeholder station
+     * which exists before any file is loaded is dropped.
+     * @param station The station to use by default
+     */
+    public static synchronized void setDefault(StationDataset station) {
+        StationDataset previous = defaultStation;
+        register(station);
+        defaultStation = station;
+        if (previous != station && previous.getName().equals(DEFAULT_STATION) && previous.getStore().isEmpty())
+            stations.remove(DEFAULT_STATION, previous);
+    }
+
+    /**
+     * Makes a station the default and removes the station which was the default until
+     * now, for callers such as the GUI which work with one station at a time, so a
+     * station opened earlier does not stay loaded for the life of the process.
+     * @param station The station to use by default
+     */
+    public static synchronized void replaceDefault(StationDataset station) {
+        StationDataset previous = defaultStation;
+        setDefault(station);
+        if (!previous.getName().equals(station.getName()))
+            stations.remove(previous.getName(), previous);
+    }
+
+    /**
+     * Publishes a new version of a station, provided the version it was built from is
+     * still registered. If the current version was the default the new version
+     * becomes the default.
+     * @param current The version the new version was built from
+     * @param next The new version, registered under the same name
+     * @return true if the new version was published, false if the station has been
+     *          replaced or removed since the current version was looked up
+     */
+    public static synchronized boolean replace(StationDataset current, StationDataset next) {
+        if (!stations.replace(current.getName(), current, next))
+            return false;
+        if (defaultStation == current)
+            defaultStation = next;
+        return true;
+    }
+
+    /**
+     * Applies an update to a station and publishes the new version, applying it again
+     * to a newer version if another one is published while the update is applied.
+     * @param name The name the station was registered under
+     * @param update Changes to make
+     * @return StationDataset - the new version, or null if there is no station with the name
+     */
+    public static StationDataset update(String name, StationDataset.Update update) {
+        while (true) {
+            StationDataset current = stations.get(name);
+            if (current == null)
+                return null;
+            StationDataset next = current.apply(update);
+            if (next == current || replace(current, next))
+                return next;
+        }
+    }
+
+    /**
+     * Applies an update to the default station and publishes the new version
+     * @param update Changes to make
+     * @return StationDataset - the new version of the default station
+     * @see #update(String, StationDataset.Update)
+     */
+    public static StationDataset updateDefault(StationDataset.Update update) {
+        while (true) {
+            StationDataset current = defaultStation;
+            StationDataset next = current.apply(update);
+            if (next == current || replace(current, next))
+                return next;
+        }
+    }
+
+}
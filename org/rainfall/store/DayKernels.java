@@ -0,0 +1,141 @@
+package org.rainfall.store;
+
+import org.rainfall.lang.Output;
+
+/**
+ * The loops which scan a range of a {@link DayStore} day column: totals, counts,
+ * maxima, minima and counts of days over a threshold, each skipping days which
+ * hold {@link DayStore#MISSING_VALUE}. <br /><br />
+ * Two implementations are available. The vector kernels use the JDK Vector API
+ * (jdk.incubator.vector) to handle as many days per instruction as the processor's
+ * SIMD registers hold, masking out the missing days in the registers rather than
+ * branching on each one; the scalar kernels are plain loops. The vector kernels
+ * live in their own source root, vector/, so the application compiles without
+ * jdk.incubator.vector. They are chosen when vector/ has been compiled with
+ * <pre>
+ *  javac --add-modules jdk.incubator.vector ...
+ * </pre>
+ * and the application is started with --add-modules jdk.incubator.vector; the
+ * scalar kernels are used otherwise, or when -Drainfall.simd=false is set.
+ *
+ * @author Kieran
+ * @see DayStore
+ */
+public abstract class DayKernels {
+
+    private static final DayKernels SCALAR = new ScalarDayKernels();
+    private static final DayKernels VECTOR = loadVectorKernels();
+    private static final DayKernels SELECTED =
+            VECTOR != null && !"false".equals(System.getProperty("rainfall.simd")) ? VECTOR : SCALAR;
+
+    /**
+     * The kernels chosen at startup
+     * @return DayKernels - the vector kernels if they are available and enabled,
+     *          otherwise the scalar kernels
+     */
+    public static DayKernels get() {
+        return SELECTED;
+    }
+
+    /**
+     * The plain loop kernels, which are always available
+     * @return DayKernels - the scalar kernels
+     */
+    public static DayKernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * The Vector API kernels
+     * @return DayKernels - the vector kernels, or null if jdk.incubator.vector is not available
+     */
+    public static DayKernels vector() {
+        return VECTOR;
+    }
+
+    /**
+     * Name of the kernels, e.g. for reporting which are in use
+     * @return String - name
+     */
+    public abstract String getName();
+
+    /**
+     * Totals the readings over [from, to), skipping missing days
+     * @param days Day column
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return double - total rainfall
+     */
+    public abstract double sum(float[] days, int from, int to);
+
+    /**
+     * Counts the days with a reading over [from, to)
+     * @param days Day column
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return int - number of days which are not missing
+     */
+    public abstract int count(float[] days, int from, int to);
+
+    /**
+     * Counts the days over [from, to) with more rainfall than a threshold
+     * @param days Day column
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param threshold Rainfall the days must exceed
+     * @return int - number of days which are not missing and exceed the threshold
+     */
+    public abstract int countAbove(float[] days, int from, int to, float threshold);
+
+    /**
+     * Finds the largest reading over [from, to)
+     * @param days Day column
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return float - the largest reading or {@link DayStore#MISSING_VALUE} if there are none
+     */
+    public abstract float max(float[] days, int from, int to);
+
+    /**
+     * Finds the smallest reading over [from, to)
+     * @param days Day column
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return float - the smallest reading or {@link DayStore#MISSING_VALUE} if there are none
+     */
+    public abstract float min(float[] days, int from, int to);
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * Loads the vector kernels by name, so nothing else needs jdk.incubator.vector to
+     * compile or run, and checks them against the scalar kernels
+     */
+    private static DayKernels loadVectorKernels() {
+        try {
+            DayKernels kernels = (DayKernels)Class.forName("org.rainfall.store.VectorDayKernels").getDeclaredConstructor().newInstance();
+
+            float[] check = new float[67];
+            for (int i = 0; i < check.length; i++) {
+                check[i] = i % 5 == 0 ? DayStore.MISSING_VALUE : i * 0.5F;
+            }
+            if (kernels.sum(check, 1, 66) != SCALAR.sum(check, 1, 66) || kernels.max(check, 1, 66) != SCALAR.max(check, 1, 66)
+                    || kernels.countAbove(check, 1, 66, 10F) != SCALAR.countAbove(check, 1, 66, 10F)) {
+                Output.error("DayKernels: vector kernels disagree with the scalar kernels, using scalar");
+                return null;
+            }
+            return kernels;
+        } catch (ClassNotFoundException cnfe) {
+            return null;
+        } catch (LinkageError le) {
+            return null; // jdk.incubator.vector is not in the module graph
+        } catch (Exception e) {
+            Output.error("DayKernels: " + e);
+            return null;
+        }
+    }
+
+}
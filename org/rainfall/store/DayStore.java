@@ -0,0 +1,319 @@
+package org.rainfall.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.rainfall.util.Date;
+
+/**
+ * Columnar storage engine for a single station's rainfall series. Every day of
+ * the loaded period is held in one contiguous primitive array indexed by the
+ * day offset from the first day of the oldest loaded month, so aggregates over
+ * years and decades are a linear scan rather than a walk over boxed values. <br /><br />
+ * Days which were not recorded (or months which were never loaded) hold
+ * {@link #MISSING_VALUE} and are skipped by all of the range operations, which
+ * are run by the {@link DayKernels} chosen at startup.
+ *
+ * @author Kieran
+ * @see Date#getDayNumber(int, int, int)
+ */
+public class DayStore {
+
+    /** Value stored for a day which has no reading (matches the data file fill value) */
+    public static final float MISSING_VALUE = -99.99F;
+
+    private static final int DAYS_PER_MONTH_COLUMN = 31;
+
+    private int firstMonth = -1;    // absolute month number (year * 12 + month - 1) of the oldest month
+    private int firstDay;           // day number of the first day of the oldest month
+    private int length;             // number of days covered from the first to the last loaded month
+    private float[] days = new float[0];
+    private boolean[] loadedMonths = new boolean[0];
+
+    /** Constructor */
+    public DayStore() { }
+
+    /**
+     * Creates a store around existing columns (used when reading a snapshot)
+     * @param firstMonth absolute month number (year * 12 + month - 1) of the oldest month
+     * @param loadedMonths flag for each month from firstMonth onwards
+     * @param days day column starting on the first day of firstMonth
+     * @param length number of days in use
+     */
+    DayStore(int firstMonth, boolean[] loadedMonths, float[] days, int length) {
+        this.firstMonth = firstMonth;
+        this.firstDay = firstMonth < 0 ? 0 : dayNumberOfMonth(firstMonth);
+        this.loadedMonths = loadedMonths;
+        this.days = days;
+        this.length = length;
+    }
+
+    /**
+     * Stores a month of rainfall readings, growing the series in either direction
+     * if the month falls outside of the currently loaded period.
+     * @param year The year of the readings
+     * @param month The month of the readings
+     * @param values Readings for day 1 onwards (columns beyond the length of the
+     *          month are ignored)
+     */
+    public void putMonth(int year, int month, float[] values) {
+        int absMonth = year * 12 + month - 1;
+        ensureMonth(absMonth);
+
+        int start = indexOf(year, month, 1);
+        int daysInMonth = Date.getDaysInMonth(year, month);
+        for (int day = 0; day < daysInMonth; day++) {
+            days[start + day] = day < values.length ? values[day] : MISSING_VALUE;
+        }
+        loadedMonths[absMonth - firstMonth] = true;
+    }
+
+    /**
+     * Checks whether a month has been loaded into the store
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return true if the month was loaded from a data file
+     */
+    public boolean hasMonth(int year, int month) {
+        int offset = year * 12 + month - 1 - firstMonth;
+        return firstMonth >= 0 && month >= 1 && month <= 12
+                && offset >= 0 && offset < loadedMonths.length && loadedMonths[offset];
+    }
+
+    /**
+     * Copies the store, so months can be stored into the copy while the original
+     * is still being read
+     * @return DayStore - an independent copy of the days and loaded months
+     */
+    public DayStore copy() {
+        return new DayStore(firstMonth, loadedMonths.clone(), days.clone(), length);
+    }
+
+    /**
+     * Checks whether any data has been stored
+     * @return true if nothing has been loaded
+     */
+    public boolean isEmpty() {
+        return firstMonth < 0;
+    }
+
+    /**
+     * Number of days covered by the store
+     * @return int - days between the first day of the oldest month and the
+     *          last day of the most recent month
+     */
+    public int size() {
+        return length;
+    }
+
+    /**
+     * Approximate heap used by the day column and month flags
+     * @return long - size in bytes
+     */
+    public long sizeInBytes() {
+        return (long)days.length * 4 + loadedMonths.length;
+    }
+
+    /**
+     * Converts a date into an offset in the day column. The offset may fall
+     * outside of the stored range, in which case {@link #get(int)} returns
+     * {@link #MISSING_VALUE}.
+     * @param year The year of the date
+     * @param month The month of the date
+     * @param day The day of the month
+     * @return int - offset from the first stored day
+     */
+    public int indexOf(int year, int month, int day) {
+        return Date.getDayNumber(year, month, day) - firstDay;
+    }
+
+    /**
+     * Day number of the first day in the store
+     * @return int - day number (see {@link Date#getDayNumber(int, int, int)})
+     */
+    public int getFirstDayNumber() {
+        return firstDay;
+    }
+
+    /**
+     * Gets the rainfall for a day offset
+     * @param index Offset from the first stored day
+     * @return float - rainfall for the day or {@link #MISSING_VALUE}
+     */
+    public float get(int index) {
+        if (index < 0 || index >= length)
+            return MISSING_VALUE;
+        return days[index];
+    }
+
+    /**
+     * Totals the rainfall over the days [from, to), skipping missing days
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return float - total rainfall
+     */
+    public float sum(int from, int to) {
+        from = Math.max(from, 0); to = Math.min(to, length);
+        if (from >= to)
+            return 0;
+        return (float)DayKernels.get().sum(days, from, to);
+    }
+
+    /**
+     * Counts the days with a reading over [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return int - number of days which are not missing
+     */
+    public int count(int from, int to) {
+        from = Math.max(from, 0); to = Math.min(to, length);
+        if (from >= to)
+            return 0;
+        return DayKernels.get().count(days, from, to);
+    }
+
+    /**
+     * Counts the days over [from, to) with more rainfall than a threshold
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param threshold Rainfall the days must exceed
+     * @return int - number of days which are not missing and exceed the threshold
+     */
+    public int countAbove(int from, int to, float threshold) {
+        from = Math.max(from, 0); to = Math.min(to, length);
+        if (from >= to)
+            return 0;
+        return DayKernels.get().countAbove(days, from, to, threshold);
+    }
+
+    /**
+     * Finds the largest reading over [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return float - the largest reading or {@link #MISSING_VALUE} if there are none
+     */
+    public float max(int from, int to) {
+        from = Math.max(from, 0); to = Math.min(to, length);
+        if (from >= to)
+            return MISSING_VALUE;
+        return DayKernels.get().max(days, from, to);
+    }
+
+    /**
+     * Finds the smallest reading over [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return float - the smallest reading or {@link #MISSING_VALUE} if there are none
+     */
+    public float min(int from, int to) {
+        from = Math.max(from, 0); to = Math.min(to, length);
+        if (from >= to)
+            return MISSING_VALUE;
+        return DayKernels.get().min(days, from, to);
+    }
+
+    /**
+     * Copies the readings over [from, to) into a list, skipping missing days
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return ArrayList of floats consisting of each recorded day
+     */
+    public ArrayList<Float> toList(int from, int to) {
+        from = Math.max(from, 0); to = Math.min(to, length);
+        ArrayList<Float> data = new ArrayList<Float>(Math.max(to - from, 0));
+        for (int i = from; i < to; i++) {
+            if (days[i] != MISSING_VALUE)
+                data.add(days[i]);
+        }
+        return data;
+    }
+
+    /**
+     * List of the years which have at least one loaded month
+     * @return HashSet of year numbers
+     */
+    public HashSet<Integer> getYears() {
+        HashSet<Integer> years = new HashSet<Integer>();
+        for (int i = 0; i < loadedMonths.length; i++) {
+            if (loadedMonths[i])
+                years.add((firstMonth + i) / 12);
+        }
+        return years;
+    }
+
+    /**
+     * Grows the day column so that it covers the given month
+     * @param absMonth absolute month number (year * 12 + month - 1)
+     */
+    private void ensureMonth(int absMonth) {
+        if (firstMonth < 0) {
+            firstMonth = absMonth;
+            firstDay = dayNumberOfMonth(absMonth);
+            length = 0;
+        }
+
+        if (absMonth < firstMonth) {
+            // Prepend: shift the existing days along to make room at the start
+            int newFirstDay = dayNumberOfMonth(absMonth);
+            int shift = firstDay - newFirstDay;
+            int monthShift = firstMonth - absMonth;
+
+            float[] grown = newColumn(Math.max(days.length, length + shift + DAYS_PER_MONTH_COLUMN) + shift);
+            System.arraycopy(days, 0, grown, shift, length);
+            boolean[] grownMonths = new boolean[loadedMonths.length + monthShift];
+            System.arraycopy(loadedMonths, 0, grownMonths, monthShift, loadedMonths.length);
+
+            days = grown;
+            loadedMonths = grownMonths;
+            length += shift;
+            firstMonth = absMonth;
+            firstDay = newFirstDay;
+        }
+
+        int end = dayNumberOfMonth(absMonth + 1) - firstDay;
+        if (end > days.length) {
+            float[] grown = newColumn(Math.max(end, days.length * 2));
+            System.arraycopy(days, 0, grown, 0, length);
+            days = grown;
+        }
+        if (end > length) {
+            length = end;
+        }
+
+        int monthOffset = absMonth - firstMonth;
+        if (monthOffset >= loadedMonths.length) {
+            boolean[] grownMonths = new boolean[Math.max(monthOffset + 1, loadedMonths.length * 2)];
+            System.arraycopy(loadedMonths, 0, grownMonths, 0, loadedMonths.length);
+            loadedMonths = grownMonths;
+        }
+    }
+
+    /**
+     * Number of months from the first month of the store to its most recent one,
+     * including months in between which were never loaded
+     * @return int - month count, 0 if the store is empty
+     */
+    int getMonthsCovered() {
+        if (isEmpty())
+            return 0;
+        // The store always ends on the last day of its most recent month
+        int[] last = Date.getDateOfDayNumber(firstDay + length - 1);
+        return last[0] * 12 + last[1] - firstMonth;
+    }
+
+    /* Raw column access for SnapshotFile */
+    int getFirstMonth() { return firstMonth; }
+    boolean[] getLoadedMonths() { return loadedMonths; }
+    float[] getDays() { return days; }
+
+    private static float[] newColumn(int capacity) {
+        float[] column = new float[capacity];
+        Arrays.fill(column, MISSING_VALUE);
+        return column;
+    }
+
+    private static int dayNumberOfMonth(int absMonth) {
+        return Date.getDayNumber(absMonth / 12, absMonth % 12 + 1, 1);
+    }
+
+}
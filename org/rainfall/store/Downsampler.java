@@ -0,0 +1,146 @@
+package org.rainfall.store;
+
+/**
+ * Picks which days of a {@link DayStore} to draw when a chart covers more days
+ * than it has pixels. Both methods return day offsets in order, never more than
+ * the number of points asked for, and skip missing days. <br /><br />
+ * {@link #MIN_MAX} splits the range into one bucket per two points and keeps the
+ * driest and wettest day of each bucket, so every peak is drawn at its true height.
+ * The buckets are answered by a {@link RangeExtremaIndex}, so the cost depends on
+ * the number of points rather than the number of days, however far the chart is
+ * zoomed out. <br />
+ * {@link #LARGEST_TRIANGLE} (largest-triangle-three-buckets) keeps the day of each
+ * bucket which forms the largest triangle with its neighbours, which follows the
+ * shape of the line more smoothly but has to look at every day in the range.
+ *
+ * @author Kieran
+ * @see RangeExtremaIndex
+ */
+public class Downsampler {
+
+    /** Keep the driest and wettest day of each bucket */
+    public static final int MIN_MAX = 0;
+    /** Keep the most significant day of each bucket (largest-triangle-three-buckets) */
+    public static final int LARGEST_TRIANGLE = 1;
+
+    private Downsampler() { }
+
+    /**
+     * Keeps the driest and wettest day of each bucket of [from, to)
+     * @param store Store holding the days
+     * @param extrema Index over the store, up to date
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param maxPoints Most days to return, at least 2
+     * @return int[] - offsets of the days to draw, in order
+     */
+    public static int[] minMax(DayStore store, RangeExtremaIndex extrema, int from, int to, int maxPoints) {
+        from = Math.max(from, 0); to = Math.min(to, store.size());
+        if (to - from <= maxPoints)
+            return recordedDays(store, from, to);
+
+        int buckets = Math.max(maxPoints / 2, 1);
+        int[] points = new int[buckets * 2];
+        int count = 0;
+        for (int b = 0; b < buckets; b++) {
+            int start = from + (int)((long)(to - from) * b / buckets);
+            int end = from + (int)((long)(to - from) * (b + 1) / buckets);
+            int driest = extrema.driest(start, end);
+            if (driest < 0)
+                continue;
+            int wettest = extrema.wettest(start, end);
+            if (driest == wettest || store.get(driest) == store.get(wettest)) {
+                points[count++] = driest;
+            }
+            else {
+                points[count++] = Math.min(driest, wettest);
+                points[count++] = Math.max(driest, wettest);
+            }
+        }
+        return trim(points, count);
+    }
+
+    /**
+     * Keeps the most significant day of each bucket of [from, to) using the
+     * largest-triangle-three-buckets algorithm; the first and last recorded days
+     * are always kept
+     * @param store Store holding the days
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param maxPoints Most days to return, at least 3
+     * @return int[] - offsets of the days to draw, in order
+     */
+    public static int[] largestTriangle(DayStore store, int from, int to, int maxPoints) {
+        int[] days = recordedDays(store, from, to);
+        if (days.length <= maxPoints || maxPoints < 3)
+            return days;
+
+        int[] points = new int[maxPoints];
+        int count = 0;
+        points[count++] = days[0];
+
+        // The days between the first and last are split into maxPoints - 2 buckets
+        int buckets = maxPoints - 2;
+        double bucketSize = (double)(days.length - 2) / buckets;
+        int previous = days[0];
+        for (int b = 0; b < buckets; b++) {
+            int start = 1 + (int)(b * bucketSize);
+            int end = 1 + (int)((b + 1) * bucketSize);
+
+            // Average of the next bucket (or the last day) is the third corner
+            int nextStart = end;
+            int nextEnd = Math.min(1 + (int)((b + 2) * bucketSize), days.length - 1);
+            if (nextStart >= nextEnd) {
+                nextStart = days.length - 1;
+                nextEnd = days.length;
+            }
+            double averageX = 0, averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += days[i];
+                averageY += store.get(days[i]);
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            double previousX = previous, previousY = store.get(previous);
+            double largestArea = -1;
+            int chosen = days[start];
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((previousX - averageX) * (store.get(days[i]) - previousY)
+                        - (previousX - days[i]) * (averageY - previousY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    chosen = days[i];
+                }
+            }
+            points[count++] = chosen;
+            previous = chosen;
+        }
+
+        points[count++] = days[days.length - 1];
+        return trim(points, count);
+    }
+
+    /**
+     * Offsets of every day over [from, to) which has a reading
+     */
+    private static int[] recordedDays(DayStore store, int from, int to) {
+        from = Math.max(from, 0); to = Math.min(to, store.size());
+        int[] days = new int[Math.max(to - from, 0)];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (store.get(i) != DayStore.MISSING_VALUE)
+                days[count++] = i;
+        }
+        return trim(days, count);
+    }
+
+    private static int[] trim(int[] points, int count) {
+        if (count == points.length)
+            return points;
+        int[] trimmed = new int[count];
+        System.arraycopy(points, 0, trimmed, 0, count);
+        return trimmed;
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.rainfall.store;
+
+import java.util.Arrays;
+
+/**
+ * Cumulative sums over a {@link DayStore} day column. sums[i] holds the total
+ * rainfall of days [0, i) and counts[i] the number of days with a reading, so the
+ * total, count and therefore mean of any range of days is two array reads. <br /><br />
+ * Sums are accumulated as doubles so that differences between two large
+ * cumulative totals keep the precision of the individual readings. When days are
+ * appended only the sums from the first changed day onwards are recalculated.
+ *
+ * @author Kieran
+ * @see DayStore
+ */
+public class PrefixSumIndex {
+
+    private static final double TIE = 1e-6;
+
+    private double[] sums = new double[1];
+    private int[] counts = new int[1];
+    private int length = 0;
+
+    /** Constructor for an empty index */
+    public PrefixSumIndex() { }
+
+    /**
+     * Builds the index over every day of the store
+     * @param store Store to index
+     */
+    public PrefixSumIndex(DayStore store) {
+        rebuild(store);
+    }
+
+    /**
+     * Recalculates the cumulative sums from scratch
+     * @param store Store to index
+     */
+    public void rebuild(DayStore store) {
+        length = store.size();
+        sums = new double[length + 1];
+        counts = new int[length + 1];
+        accumulate(store, 0);
+    }
+
+    /**
+     * Recalculates the cumulative sums from a day onwards, after the days from that
+     * offset to the end of the store have been changed or appended. The first day of
+     * the store must not have moved since the index was built.
+     * @param store Store to index
+     * @param from Offset of the first changed day
+     */
+    public void update(DayStore store, int from) {
+        int newLength = store.size();
+        if (newLength + 1 > sums.length) {
+            // Grow geometrically so appending a month at a time stays cheap
+            int capacity = Math.max(newLength + 1, sums.length * 2);
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        from = Math.max(0, Math.min(from, length));
+        length = newLength;
+        accumulate(store, from);
+    }
+
+    /**
+     * Total rainfall over the days [from, to); days outside the store count as missing
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return float - total rainfall
+     */
+    public float total(int from, int to) {
+        from = clamp(from); to = clamp(to);
+        return to > from ? (float)(sums[to] - sums[from]) : 0;
+    }
+
+    /**
+     * Number of days with a reading over [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return int - count of days which are not missing
+     */
+    public int count(int from, int to) {
+        from = clamp(from); to = clamp(to);
+        return to > from ? counts[to] - counts[from] : 0;
+    }
+
+    /**
+     * Copies the index, so the copy can be updated while the original is still in use
+     * @return PrefixSumIndex - an independent copy
+     */
+    public PrefixSumIndex copy() {
+        PrefixSumIndex copy = new PrefixSumIndex();
+        copy.sums = sums.clone();
+        copy.counts = counts.clone();
+        copy.length = length;
+        return copy;
+    }
+
+    /**
+     * Finds the wettest run of consecutive days of each of several lengths within
+     * [from, to), e.g. the wettest 3, 7 and 30 days of a year. Every window total is
+     * the difference of two prefix sums, so a single pass over the range checks each
+     * window of each length in constant time. Missing days count as dry and windows
+     * without any readings are skipped; the earliest window wins a tie.
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param lengths Window lengths in days, each at least 1
+     * @return int[] - for each length the offset of the first day of the wettest
+     *          window, or -1 if the range is shorter than the window or has no readings
+     */
+    public int[] wettestWindows(int from, int to, int[] lengths) {
+        from = clamp(from); to = clamp(to);
+        int[] best = new int[lengths.length];
+        double[] bestTotal = new double[lengths.length];
+        Arrays.fill(best, -1);
+
+        for (int end = from + 1; end <= to; end++) {
+            for (int k = 0; k < lengths.length; k++) {
+                int start = end - lengths[k];
+                if (start < from || counts[end] == counts[start])
+                    continue;
+                double total = sums[end] - sums[start];
+                // Readings have one decimal place, so a smaller difference is rounding
+                if (best[k] < 0 || total > bestTotal[k] + TIE) {
+                    best[k] = start;
+                    bestTotal[k] = total;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Number of days covered by the index
+     * @return int - day count
+     */
+    public int size() {
+        return length;
+    }
+
+    private void accumulate(DayStore store, int from) {
+        double sum = sums[from];
+        int count = counts[from];
+        for (int i = from; i < length; i++) {
+            float value = store.get(i);
+            if (value != DayStore.MISSING_VALUE) {
+                sum += value;
+                count++;
+            }
+            sums[i + 1] = sum;
+            counts[i + 1] = count;
+        }
+    }
+
+    private int clamp(int index) {
+        return index < 0 ? 0 : (index > length ? length : index);
+    }
+
+}
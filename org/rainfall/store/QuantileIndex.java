@@ -0,0 +1,160 @@
+package org.rainfall.store;
+
+import java.util.Arrays;
+import org.rainfall.util.Date;
+
+/**
+ * A {@link QuantileSketch} of the readings of every month and every year of a
+ * {@link DayStore}, from which the percentiles of any range of days are estimated.
+ * The sketch of a range is merged from the sketches of the whole years and months
+ * it covers, with only the days of a month it covers part of read from the store,
+ * so a decade costs the merge of ten sketches rather than a sort of 3650 days.
+ * <br /><br />
+ * Sketches are never changed once they are built, so copies of the index share
+ * them. When days are appended only the months and years from the first changed
+ * day onwards are sketched again.
+ *
+ * @author Kieran
+ * @see QuantileSketch
+ */
+public class QuantileIndex {
+
+    private DayStore store = new DayStore();
+    private QuantileSketch[] months = new QuantileSketch[0];  // null for a month without readings
+    private QuantileSketch[] years = new QuantileSketch[0];
+    private int firstMonth = 0, firstYear = 0;
+
+    /** Constructor for an empty index */
+    public QuantileIndex() { }
+
+    /**
+     * Builds the index over every day of the store
+     * @param store Store to index
+     */
+    public QuantileIndex(DayStore store) {
+        rebuild(store);
+    }
+
+    /**
+     * Sketches every month and year from scratch
+     * @param store Store to index
+     */
+    public void rebuild(DayStore store) {
+        this.store = store;
+        months = new QuantileSketch[0];
+        years = new QuantileSketch[0];
+        if (store.isEmpty())
+            return;
+
+        firstMonth = store.getFirstMonth();
+        firstYear = firstMonth / 12;
+        sketch(firstMonth);
+    }
+
+    /**
+     * Sketches the months and years from a day onwards again, after the days from that
+     * offset to the end of the store have been changed or appended
+     * @param store Store to index
+     * @param from Offset of the first changed day
+     */
+    public void update(DayStore store, int from) {
+        if (store.isEmpty() || months.length == 0 || store.getFirstMonth() != firstMonth) {
+            rebuild(store);
+            return;
+        }
+        this.store = store;
+        int[] date = Date.getDateOfDayNumber(store.getFirstDayNumber() + Math.max(from, 0));
+        sketch(Math.max(date[0] * 12 + date[1] - 1, firstMonth));
+    }
+
+    /**
+     * Copies the index, so the copy can be updated while the original is still in use.
+     * The copy shares the sketches and reads from the same store until it is next
+     * updated or rebuilt.
+     * @return QuantileIndex - an independent copy
+     */
+    public QuantileIndex copy() {
+        QuantileIndex copy = new QuantileIndex();
+        copy.store = store;
+        copy.months = months.clone();
+        copy.years = years.clone();
+        copy.firstMonth = firstMonth;
+        copy.firstYear = firstYear;
+        return copy;
+    }
+
+    /**
+     * Builds the sketch of the readings of the days [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return QuantileSketch - a new sketch, which the caller may change
+     */
+    public QuantileSketch sketch(int from, int to) {
+        QuantileSketch result = new QuantileSketch();
+        from = Math.max(from, 0); to = Math.min(to, store.size());
+        if (from >= to)
+            return result;
+
+        int[] date = Date.getDateOfDayNumber(store.getFirstDayNumber() + from);
+        int m = date[0] * 12 + date[1] - 1;
+        int pos = from;
+        while (pos < to) {
+            int year = m / 12, month = m % 12 + 1;
+            int monthStart = store.indexOf(year, month, 1);
+            int monthEnd = monthStart + Date.getDaysInMonth(year, month);
+
+            if (pos == monthStart && month == 1 && store.indexOf(year + 1, 1, 1) <= to) {
+                result.merge(years[year - firstYear]);
+                pos = store.indexOf(year + 1, 1, 1);
+                m += 12;
+                continue;
+            }
+            if (pos == monthStart && monthEnd <= to) {
+                result.merge(months[m - firstMonth]);
+            }
+            else {
+                for (int i = pos; i < Math.min(monthEnd, to); i++) {
+                    result.add(store.get(i));
+                }
+            }
+            pos = monthEnd;
+            m++;
+        }
+        return result;
+    }
+
+    /**
+     * Sketches every month from a month to the end of the store, and every year
+     * holding one of those months
+     */
+    private void sketch(int fromMonth) {
+        int lastMonth = firstMonth + store.getMonthsCovered() - 1;
+        int yearCount = lastMonth / 12 - firstYear + 1;
+        if (months.length != lastMonth - firstMonth + 1)
+            months = Arrays.copyOf(months, lastMonth - firstMonth + 1);
+        if (years.length != yearCount)
+            years = Arrays.copyOf(years, yearCount);
+
+        for (int m = fromMonth; m <= lastMonth; m++) {
+            int year = m / 12, month = m % 12 + 1;
+            int start = store.indexOf(year, month, 1);
+            QuantileSketch sketch = null;
+            if (store.count(start, start + Date.getDaysInMonth(year, month)) > 0) {
+                sketch = new QuantileSketch();
+                for (int i = start; i < start + Date.getDaysInMonth(year, month); i++) {
+                    sketch.add(store.get(i));
+                }
+            }
+            months[m - firstMonth] = sketch;
+        }
+
+        for (int y = fromMonth / 12; y <= lastMonth / 12; y++) {
+            QuantileSketch sketch = new QuantileSketch();
+            for (int m = Math.max(y * 12, firstMonth); m <= Math.min(y * 12 + 11, lastMonth); m++) {
+                sketch.merge(months[m - firstMonth]);
+            }
+            years[y - firstYear] = sketch.getCount() > 0 ? sketch : null;
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.rainfall.store;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable summary of a set of rainfall readings from which any percentile can
+ * be estimated (a DDSketch). Each positive reading is counted in a logarithmic
+ * bucket (gamma^(k-1), gamma^k] with gamma = (1 + a) / (1 - a), and dry days are
+ * counted separately. <br /><br />
+ * Error bound: a percentile estimated from the sketch is within a relative error
+ * of {@link #RELATIVE_ACCURACY} (1%) of the exact value, the reading of rank
+ * floor(p / 100 * (n - 1)) in sorted order; dry days are reported as exactly 0.
+ * The bound holds however many readings there are and however sketches were
+ * merged, because merging two sketches adds their bucket counts and gives the same
+ * sketch as adding every reading to one. <br /><br />
+ * Buckets are kept as two sorted arrays of the buckets in use, so the sketch of a
+ * month takes a few hundred bytes however wide the range of readings.
+ *
+ * @author Kieran
+ * @see QuantileIndex
+ */
+public class QuantileSketch {
+
+    /** Largest relative error of an estimated percentile */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private int[] keys = new int[0];
+    private int[] counts = new int[0];
+    private int buckets = 0;
+    private long zeroCount = 0;
+    private long count = 0;
+
+    /** Constructor for an empty sketch */
+    public QuantileSketch() { }
+
+    /**
+     * Adds a reading to the sketch; missing readings are ignored
+     * @param value Rainfall (mm)
+     */
+    public void add(float value) {
+        if (value == DayStore.MISSING_VALUE)
+            return;
+        count++;
+        if (value <= 0) {
+            zeroCount++;
+            return;
+        }
+        increment((int)Math.ceil(Math.log(value) / LOG_GAMMA), 1);
+    }
+
+    /**
+     * Adds the readings summarised by another sketch to this one
+     * @param other Sketch to merge, or null for none
+     */
+    public void merge(QuantileSketch other) {
+        if (other == null || other.count == 0)
+            return;
+        count += other.count;
+        zeroCount += other.zeroCount;
+        if (buckets == 0) {
+            keys = Arrays.copyOf(other.keys, other.buckets);
+            counts = Arrays.copyOf(other.counts, other.buckets);
+            buckets = other.buckets;
+            return;
+        }
+
+        // Merge the two sorted bucket lists
+        int[] mergedKeys = new int[buckets + other.buckets];
+        int[] mergedCounts = new int[mergedKeys.length];
+        int i = 0, j = 0, n = 0;
+        while (i < buckets || j < other.buckets) {
+            if (j == other.buckets || (i < buckets && keys[i] < other.keys[j])) {
+                mergedKeys[n] = keys[i];
+                mergedCounts[n++] = counts[i++];
+            }
+            else if (i == buckets || other.keys[j] < keys[i]) {
+                mergedKeys[n] = other.keys[j];
+                mergedCounts[n++] = other.counts[j++];
+            }
+            else {
+                mergedKeys[n] = keys[i];
+                mergedCounts[n++] = counts[i++] + other.counts[j++];
+            }
+        }
+        keys = mergedKeys;
+        counts = mergedCounts;
+        buckets = n;
+    }
+
+    /**
+     * Number of readings in the sketch
+     * @return long - reading count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimates a percentile of the readings
+     * @param percentile Percentile from 0 to 100, e.g. 95
+     * @return float - the estimated reading, or {@link DayStore#MISSING_VALUE} if the
+     *          sketch is empty
+     */
+    public float percentile(float percentile) {
+        if (count == 0)
+            return DayStore.MISSING_VALUE;
+        long rank = (long)Math.floor(Math.max(0, Math.min(100, percentile)) / 100.0 * (count - 1));
+        if (rank < zeroCount)
+            return 0;
+
+        long seen = zeroCount;
+        for (int i = 0; i < buckets; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                // The point of the bucket with the same relative distance to both ends
+                return (float)(2 * Math.pow(GAMMA, keys[i]) / (GAMMA + 1));
+            }
+        }
+        return (float)(2 * Math.pow(GAMMA, keys[buckets - 1]) / (GAMMA + 1));
+    }
+
+    private void increment(int key, int n) {
+        int i = Arrays.binarySearch(keys, 0, buckets, key);
+        if (i >= 0) {
+            counts[i] += n;
+            return;
+        }
+        i = -i - 1;
+        if (buckets == keys.length) {
+            int capacity = Math.max(8, buckets * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, buckets - i);
+        System.arraycopy(counts, i, counts, i + 1, buckets - i);
+        keys[i] = key;
+        counts[i] = n;
+        buckets++;
+    }
+
+}
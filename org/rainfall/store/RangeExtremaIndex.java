@@ -0,0 +1,172 @@
+package org.rainfall.store;
+
+import java.util.Arrays;
+
+/**
+ * Segment trees over a {@link DayStore} day column which find the wettest and
+ * driest day of any range of days in O(log n). Each node holds the offset of the
+ * largest (or smallest) reading beneath it rather than the reading itself, so a
+ * query also tells you which day the extreme fell on. Appending days updates only
+ * the new leaves and their ancestors. <br /><br />
+ * Missing days never win; when two days have the same reading the earlier day
+ * is returned.
+ *
+ * @author Kieran
+ * @see DayStore
+ */
+public class RangeExtremaIndex {
+
+    private static final int NONE = -1;
+
+    private DayStore store = new DayStore();
+    private int[] maxTree = new int[0];
+    private int[] minTree = new int[0];
+    private int length = 0;     // days in use
+    private int capacity = 0;   // leaves in the trees, at least length
+
+    /** Constructor for an empty index */
+    public RangeExtremaIndex() { }
+
+    /**
+     * Builds the index over every day of the store
+     * @param store Store to index
+     */
+    public RangeExtremaIndex(DayStore store) {
+        rebuild(store);
+    }
+
+    /**
+     * Recalculates both trees from scratch
+     * @param store Store to index
+     */
+    public void rebuild(DayStore store) {
+        build(store, store.size());
+    }
+
+    /**
+     * Updates the trees after the days from an offset to the end of the store have
+     * been changed or appended; only the changed leaves and their ancestors are
+     * recalculated. The first day of the store must not have moved since the index
+     * was built.
+     * @param store Store to index
+     * @param from Offset of the first changed day
+     */
+    public void update(DayStore store, int from) {
+        int newLength = store.size();
+        if (newLength > capacity) {
+            // Leave room to grow so appending a month at a time stays cheap
+            build(store, Math.max(newLength, capacity * 2));
+            return;
+        }
+
+        this.store = store;
+        int lo = Math.max(0, Math.min(from, length)) + capacity;
+        int hi = newLength + capacity - 1;
+        length = newLength;
+        for (int i = lo; i <= hi; i++) {
+            int leaf = store.get(i - capacity) != DayStore.MISSING_VALUE ? i - capacity : NONE;
+            maxTree[i] = leaf;
+            minTree[i] = leaf;
+        }
+        // Each pass recalculates the parents of the nodes changed by the pass before
+        for (lo >>= 1, hi >>= 1; lo > 0 && lo <= hi; lo >>= 1, hi >>= 1) {
+            for (int i = lo; i <= hi; i++) {
+                maxTree[i] = wetter(maxTree[2 * i], maxTree[2 * i + 1]);
+                minTree[i] = drier(minTree[2 * i], minTree[2 * i + 1]);
+            }
+        }
+    }
+
+    /**
+     * Finds the day with the most rainfall over [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return int - offset of the wettest day or -1 if no day in the range has a reading
+     */
+    public int wettest(int from, int to) {
+        from = Math.max(from, 0) + capacity; to = Math.min(to, length) + capacity;
+        int best = NONE;
+        while (from < to) {
+            if ((from & 1) == 1) best = wetter(best, maxTree[from++]);
+            if ((to & 1) == 1) best = wetter(best, maxTree[--to]);
+            from >>= 1; to >>= 1;
+        }
+        return best;
+    }
+
+    /**
+     * Finds the day with the least rainfall over [from, to)
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @return int - offset of the driest day or -1 if no day in the range has a reading
+     */
+    public int driest(int from, int to) {
+        from = Math.max(from, 0) + capacity; to = Math.min(to, length) + capacity;
+        int best = NONE;
+        while (from < to) {
+            if ((from & 1) == 1) best = drier(best, minTree[from++]);
+            if ((to & 1) == 1) best = drier(best, minTree[--to]);
+            from >>= 1; to >>= 1;
+        }
+        return best;
+    }
+
+    /**
+     * Copies the index, so the copy can be updated while the original is still in use.
+     * The copy reads its values from the same store until it is next updated or rebuilt.
+     * @return RangeExtremaIndex - an independent copy
+     */
+    public RangeExtremaIndex copy() {
+        RangeExtremaIndex copy = new RangeExtremaIndex();
+        copy.store = store;
+        copy.maxTree = maxTree.clone();
+        copy.minTree = minTree.clone();
+        copy.length = length;
+        copy.capacity = capacity;
+        return copy;
+    }
+
+    /**
+     * Number of days covered by the index
+     * @return int - day count
+     */
+    public int size() {
+        return length;
+    }
+
+    private void build(DayStore store, int capacity) {
+        this.store = store;
+        this.capacity = capacity;
+        length = store.size();
+        maxTree = new int[capacity * 2];
+        minTree = new int[capacity * 2];
+
+        // Leaves live at [capacity, 2 * capacity), parents at i / 2
+        Arrays.fill(maxTree, NONE);
+        Arrays.fill(minTree, NONE);
+        for (int i = 0; i < length; i++) {
+            int leaf = store.get(i) != DayStore.MISSING_VALUE ? i : NONE;
+            maxTree[capacity + i] = leaf;
+            minTree[capacity + i] = leaf;
+        }
+        for (int i = capacity - 1; i > 0; i--) {
+            maxTree[i] = wetter(maxTree[2 * i], maxTree[2 * i + 1]);
+            minTree[i] = drier(minTree[2 * i], minTree[2 * i + 1]);
+        }
+    }
+
+    private int wetter(int a, int b) {
+        if (a == NONE) return b;
+        if (b == NONE) return a;
+        float va = store.get(a), vb = store.get(b);
+        return va > vb || (va == vb && a < b) ? a : b;
+    }
+
+    private int drier(int a, int b) {
+        if (a == NONE) return b;
+        if (b == NONE) return a;
+        float va = store.get(a), vb = store.get(b);
+        return va < vb || (va == vb && a < b) ? a : b;
+    }
+
+}
@@ -0,0 +1,344 @@
+package org.rainfall.store;
+
+import java.util.Arrays;
+import org.rainfall.util.Date;
+
+/**
+ * Pre-computed aggregates of a {@link DayStore} for every month, year and season,
+ * built in a single pass over the day column. Each cell holds the number of days
+ * with a reading, their total, the smallest and largest reading and the number of
+ * days without a reading, so per-month and per-year queries read one cell instead
+ * of scanning the days. <br /><br />
+ * Seasons are meteorological: winter of a year is December of the previous year
+ * plus January and February, followed by spring (MAM), summer (JJA) and autumn (SON).
+ *
+ * @author Kieran
+ * @see DayStore
+ */
+public class RollupCube {
+
+    /** Season numbers used by {@link #seasonCell(int, int)} */
+    public static final int WINTER = 0, SPRING = 1, SUMMER = 2, AUTUMN = 3;
+
+    private Level months = new Level(0), years = new Level(0), seasons = new Level(0);
+    private int firstMonth = 0, firstYear = 0;
+
+    /** Constructor for an empty cube */
+    public RollupCube() { }
+
+    /**
+     * Builds the cube over every month of the store
+     * @param store Store to aggregate
+     */
+    public RollupCube(DayStore store) {
+        rebuild(store);
+    }
+
+    /**
+     * Recalculates every cell from the store
+     * @param store Store to aggregate
+     */
+    public void rebuild(DayStore store) {
+        if (store.isEmpty()) {
+            months = new Level(0); years = new Level(0); seasons = new Level(0);
+            return;
+        }
+
+        firstMonth = store.getFirstMonth();
+        firstYear = firstMonth / 12;
+        int lastMonth = firstMonth + store.getMonthsCovered() - 1;
+        int yearCount = lastMonth / 12 - firstYear + 1;
+
+        months = new Level(lastMonth - firstMonth + 1);
+        years = new Level(yearCount);
+        seasons = new Level((yearCount + 1) * 4); // December rolls into next year's winter
+
+        for (int m = firstMonth; m <= lastMonth; m++) {
+            aggregateMonth(store, m);
+        }
+        for (int m = firstMonth; m <= lastMonth; m++) {
+            int cell = m - firstMonth;
+            years.merge(m / 12 - firstYear, months, cell);
+            seasons.merge(seasonOf(m), months, cell);
+        }
+    }
+
+    /**
+     * Recalculates the cells affected by a change to the days from an offset to the
+     * end of the store, growing the cube when months have been appended. Only the
+     * changed months and the years and seasons containing them are recalculated.
+     * @param store Store to aggregate
+     * @param from Offset of the first changed day
+     */
+    public void update(DayStore store, int from) {
+        if (store.isEmpty() || months.size() == 0 || store.getFirstMonth() != firstMonth) {
+            rebuild(store);
+            return;
+        }
+
+        int[] date = Date.getDateOfDayNumber(store.getFirstDayNumber() + Math.max(from, 0));
+        int fromMonth = Math.max(date[0] * 12 + date[1] - 1, firstMonth);
+        int lastMonth = firstMonth + store.getMonthsCovered() - 1;
+        int yearCount = lastMonth / 12 - firstYear + 1;
+
+        months.grow(lastMonth - firstMonth + 1);
+        years.grow(yearCount);
+        seasons.grow((yearCount + 1) * 4);
+
+        for (int m = fromMonth; m <= lastMonth; m++) {
+            aggregateMonth(store, m);
+        }
+
+        // Refold every year and season from the one holding the first changed month
+        int fromYear = fromMonth / 12;
+        years.clear(fromYear - firstYear);
+        seasons.clear((fromYear - firstYear) * 4);
+        for (int m = Math.max(fromYear * 12, firstMonth); m <= lastMonth; m++) {
+            years.merge(m / 12 - firstYear, months, m - firstMonth);
+        }
+        for (int m = Math.max(fromYear * 12 - 1, firstMonth); m <= lastMonth; m++) {
+            seasons.merge(seasonOf(m), months, m - firstMonth); // includes the December before fromYear's winter
+        }
+    }
+
+    /**
+     * Copies the cube, so the copy can be updated while the original is still in use
+     * @return RollupCube - an independent copy
+     */
+    public RollupCube copy() {
+        RollupCube copy = new RollupCube();
+        copy.months = months.copy();
+        copy.years = years.copy();
+        copy.seasons = seasons.copy();
+        copy.firstMonth = firstMonth;
+        copy.firstYear = firstYear;
+        return copy;
+    }
+
+    /**
+     * Aggregates for each month
+     * @return Level - indexed by {@link #monthCell(int, int)}
+     */
+    public Level getMonths() {
+        return months;
+    }
+
+    /**
+     * Aggregates for each year
+     * @return Level - indexed by {@link #yearCell(int)}
+     */
+    public Level getYears() {
+        return years;
+    }
+
+    /**
+     * Aggregates for each season
+     * @return Level - indexed by {@link #seasonCell(int, int)}
+     */
+    public Level getSeasons() {
+        return seasons;
+    }
+
+    /**
+     * Cell of a month in {@link #getMonths()}
+     * @param year The year you wish to lookup
+     * @param month The month you wish to lookup
+     * @return int - cell index, or -1 if the month is outside of the cube
+     */
+    public int monthCell(int year, int month) {
+        if (month < 1 || month > 12) return -1;
+        return months.check(year * 12 + month - 1 - firstMonth);
+    }
+
+    /**
+     * Cell of a year in {@link #getYears()}
+     * @param year The year you wish to lookup
+     * @return int - cell index, or -1 if the year is outside of the cube
+     */
+    public int yearCell(int year) {
+        return years.check(year - firstYear);
+    }
+
+    /**
+     * Cell of a season in {@link #getSeasons()}
+     * @param year The year the season belongs to (winter includes December of the year before)
+     * @param season One of WINTER, SPRING, SUMMER or AUTUMN
+     * @return int - cell index, or -1 if the season is outside of the cube
+     */
+    public int seasonCell(int year, int season) {
+        if (season < WINTER || season > AUTUMN) return -1;
+        return seasons.check((year - firstYear) * 4 + season);
+    }
+
+    private void aggregateMonth(DayStore store, int absMonth) {
+        int cell = absMonth - firstMonth;
+        int year = absMonth / 12, month = absMonth % 12 + 1;
+        int start = store.indexOf(year, month, 1);
+        int daysInMonth = Date.getDaysInMonth(year, month);
+
+        int count = 0;
+        double sum = 0;
+        float min = DayStore.MISSING_VALUE, max = DayStore.MISSING_VALUE;
+        for (int i = start; i < start + daysInMonth; i++) {
+            float value = store.get(i);
+            if (value == DayStore.MISSING_VALUE) continue;
+            if (count == 0 || value < min) min = value;
+            if (count == 0 || value > max) max = value;
+            sum += value;
+            count++;
+        }
+        // A month which was never loaded is a gap in the data, not a month of missing days
+        int missing = store.hasMonth(year, month) ? daysInMonth - count : 0;
+        months.set(cell, count, missing, sum, min, max);
+    }
+
+    private int seasonOf(int absMonth) {
+        int month = absMonth % 12 + 1;
+        int year = absMonth / 12 - firstYear;
+        if (month == 12) return (year + 1) * 4 + WINTER;
+        return year * 4 + (month <= 2 ? WINTER : month <= 5 ? SPRING : month <= 8 ? SUMMER : AUTUMN);
+    }
+
+    /**
+     * One level of the cube (months, years or seasons), stored as parallel
+     * primitive columns indexed by cell.
+     */
+    public static class Level {
+
+        private int[] count, missing;
+        private double[] sum;
+        private float[] min, max;
+        private int size;
+
+        Level(int size) {
+            this.size = size;
+            count = new int[size];
+            missing = new int[size];
+            sum = new double[size];
+            min = new float[size];
+            max = new float[size];
+            Arrays.fill(min, DayStore.MISSING_VALUE);
+            Arrays.fill(max, DayStore.MISSING_VALUE);
+        }
+
+        /**
+         * Number of cells in the level
+         * @return int - cell count
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Days with a reading
+         * @param cell Cell index (-1 is treated as an empty cell)
+         * @return int - count of recorded days
+         */
+        public int count(int cell) {
+            return cell < 0 ? 0 : count[cell];
+        }
+
+        /**
+         * Days of the loaded months of the period without a reading
+         * @param cell Cell index (-1 is treated as an empty cell)
+         * @return int - count of missing days
+         */
+        public int missing(int cell) {
+            return cell < 0 ? 0 : missing[cell];
+        }
+
+        /**
+         * Total rainfall
+         * @param cell Cell index (-1 is treated as an empty cell)
+         * @return float - total of the recorded days
+         */
+        public float sum(int cell) {
+            return cell < 0 ? 0 : (float)sum[cell];
+        }
+
+        /**
+         * Smallest reading
+         * @param cell Cell index (-1 is treated as an empty cell)
+         * @return float - driest day, or -99.99 if there are no readings
+         */
+        public float min(int cell) {
+            return cell < 0 ? DayStore.MISSING_VALUE : min[cell];
+        }
+
+        /**
+         * Largest reading
+         * @param cell Cell index (-1 is treated as an empty cell)
+         * @return float - wettest day, or -99.99 if there are no readings
+         */
+        public float max(int cell) {
+            return cell < 0 ? DayStore.MISSING_VALUE : max[cell];
+        }
+
+        private Level copy() {
+            Level copy = new Level(0);
+            copy.size = size;
+            copy.count = count.clone();
+            copy.missing = missing.clone();
+            copy.sum = sum.clone();
+            copy.min = min.clone();
+            copy.max = max.clone();
+            return copy;
+        }
+
+        private int check(int cell) {
+            return cell >= 0 && cell < size ? cell : -1;
+        }
+
+        private void set(int cell, int count, int missing, double sum, float min, float max) {
+            this.count[cell] = count;
+            this.missing[cell] = missing;
+            this.sum[cell] = sum;
+            this.min[cell] = min;
+            this.max[cell] = max;
+        }
+
+        /**
+         * Grows the level to a number of cells, leaving room for more so appending a
+         * month at a time does not copy the level every time
+         */
+        private void grow(int size) {
+            if (size > count.length) {
+                int capacity = Math.max(size, count.length * 2);
+                int old = count.length;
+                count = Arrays.copyOf(count, capacity);
+                missing = Arrays.copyOf(missing, capacity);
+                sum = Arrays.copyOf(sum, capacity);
+                min = Arrays.copyOf(min, capacity);
+                max = Arrays.copyOf(max, capacity);
+                Arrays.fill(min, old, capacity, DayStore.MISSING_VALUE);
+                Arrays.fill(max, old, capacity, DayStore.MISSING_VALUE);
+            }
+            this.size = Math.max(this.size, size);
+        }
+
+        /**
+         * Empties every cell from a cell onwards
+         */
+        private void clear(int from) {
+            for (int cell = Math.max(from, 0); cell < size; cell++) {
+                set(cell, 0, 0, 0, DayStore.MISSING_VALUE, DayStore.MISSING_VALUE);
+            }
+        }
+
+        /**
+         * Folds a cell of a finer level into a cell of this level
+         */
+        private void merge(int cell, Level from, int fromCell) {
+            int c = from.count[fromCell];
+            if (c > 0) {
+                if (count[cell] == 0 || from.min[fromCell] < min[cell]) min[cell] = from.min[fromCell];
+                if (count[cell] == 0 || from.max[fromCell] > max[cell]) max[cell] = from.max[fromCell];
+            }
+            count[cell] += c;
+            missing[cell] += from.missing[fromCell];
+            sum[cell] += from.sum[fromCell];
+        }
+
+    }
+
+}
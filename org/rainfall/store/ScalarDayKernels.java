@@ -0,0 +1,79 @@
+package org.rainfall.store;
+
+/**
+ * Day column kernels written as plain loops, used when the Vector API is not
+ * available.
+ *
+ * @author Kieran
+ * @see DayKernels
+ */
+class ScalarDayKernels extends DayKernels {
+
+    private static final float MISSING_VALUE = DayStore.MISSING_VALUE;
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public double sum(float[] days, int from, int to) {
+        double total = 0;
+        for (int i = from; i < to; i++) {
+            float value = days[i];
+            if (value != MISSING_VALUE)
+                total += value;
+        }
+        return total;
+    }
+
+    @Override
+    public int count(float[] days, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (days[i] != MISSING_VALUE)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int countAbove(float[] days, int from, int to, float threshold) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            float value = days[i];
+            if (value != MISSING_VALUE && value > threshold)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public float max(float[] days, int from, int to) {
+        float max = MISSING_VALUE;
+        boolean found = false;
+        for (int i = from; i < to; i++) {
+            float value = days[i];
+            if (value != MISSING_VALUE && (!found || value > max)) {
+                max = value;
+                found = true;
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public float min(float[] days, int from, int to) {
+        float min = MISSING_VALUE;
+        boolean found = false;
+        for (int i = from; i < to; i++) {
+            float value = days[i];
+            if (value != MISSING_VALUE && (!found || value < min)) {
+                min = value;
+                found = true;
+            }
+        }
+        return min;
+    }
+
+}
@@ -0,0 +1,199 @@
+package org.rainfall.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.rainfall.lang.Output;
+
+/**
+ * Reads and writes binary snapshots of a {@link DayStore} so that a data set can
+ * be reopened without parsing the original text file. The layout mirrors the
+ * store's columns so a snapshot is memory-mapped and the day column copied
+ * straight out of the mapping: <br /><br />
+ * <pre>
+ *  offset  size          field
+ *       0  4             magic "RFS1"
+ *       4  4             format version
+ *       8  4             first month (year * 12 + month - 1), -1 if empty
+ *      12  4             number of months (n)
+ *      16  4             number of days (d)
+ *      20  8             length of the data file the snapshot was made from
+ *      28  8             last modified time of that data file (ms)
+ *      36  4             reserved (zero)
+ *      40  n, padded     one byte per month, 1 if the month was loaded
+ *          to 4 bytes
+ *       -  4 * d         float rainfall per day (-99.99 when missing)
+ * </pre>
+ * All values are little-endian. A snapshot is only used while the data file still
+ * has exactly the length and modification time recorded in its header, so a data
+ * file which is replaced by an older copy or edited within the same second is
+ * parsed again.
+ *
+ * @author Kieran
+ */
+public class SnapshotFile {
+
+    /** File extension appended to the name of the data file */
+    public static final String EXTENSION = ".rfs";
+
+    private static final int MAGIC = 0x31534652; // "RFS1" read little-endian
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 40;
+
+    private SnapshotFile() { }
+
+    /**
+     * Location of the snapshot for a data file
+     * @param dataFile The text data file
+     * @return File - the data file's path with the snapshot extension appended
+     */
+    public static File snapshotFor(File dataFile) {
+        return new File(dataFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Checks whether a usable snapshot exists for a data file
+     * @param dataFile The text data file
+     * @return true if the snapshot exists and was made from the data file as it is now
+     */
+    public static boolean isFresh(File dataFile) {
+        File snapshot = snapshotFor(dataFile);
+        if (!snapshot.isFile() || !dataFile.isFile())
+            return false;
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(snapshot, "r");
+            if (raf.length() < HEADER_SIZE)
+                return false;
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            raf.readFully(buf.array());
+            return buf.getInt(0) == MAGIC && buf.getInt(4) == VERSION
+                    && buf.getLong(20) == dataFile.length()
+                    && buf.getLong(28) == dataFile.lastModified();
+        } catch (IOException ioe) {
+            return false;
+        } finally {
+            try {
+                if (raf != null) raf.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of the store. The snapshot is written to a temporary file
+     * first and then moved into place so a reader never sees half a snapshot.
+     * @param store The store to save
+     * @param file The snapshot file to create
+     * @param sourceLength Length of the data file, taken before it was read
+     * @param sourceModified Last modified time of the data file, taken before it was read
+     * @return true if the snapshot was written
+     */
+    public static boolean write(DayStore store, File file, long sourceLength, long sourceModified) {
+        boolean[] loaded = store.getLoadedMonths();
+        int monthCount = 0;
+        for (int i = 0; i < loaded.length; i++) {
+            if (loaded[i]) monthCount = i + 1;
+        }
+        int dayCount = store.size();
+        int flagsSize = (monthCount + 3) & ~3;
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + flagsSize + dayCount * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(store.getFirstMonth()).putInt(monthCount).putInt(dayCount);
+        buf.putLong(sourceLength).putLong(sourceModified);
+        buf.position(HEADER_SIZE);
+        for (int i = 0; i < monthCount; i++) {
+            buf.put(loaded[i] ? (byte)1 : (byte)0);
+        }
+        buf.position(HEADER_SIZE + flagsSize);
+        buf.asFloatBuffer().put(store.getDays(), 0, dayCount);
+        buf.rewind();
+
+        File temp = new File(file.getPath() + ".tmp");
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(temp, "rw");
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            raf.close();
+            raf = null;
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException ioe) {
+            Output.error("SnapshotFile.write(): Unable to write snapshot " + file + ": " + ioe.getMessage());
+            temp.delete();
+            return false;
+        } finally {
+            try {
+                if (raf != null) raf.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot and builds a store from it
+     * @param file The snapshot file
+     * @return DayStore - the stored data, or null if the snapshot is invalid or unreadable
+     */
+    public static DayStore read(File file) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                return invalid(file);
+
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+                return invalid(file);
+
+            int firstMonth = buf.getInt(8);
+            int monthCount = buf.getInt(12);
+            int dayCount = buf.getInt(16);
+            int flagsSize = (monthCount + 3) & ~3;
+            if (monthCount < 0 || dayCount < 0 || size != HEADER_SIZE + flagsSize + (long)dayCount * 4)
+                return invalid(file);
+
+            boolean[] loaded = new boolean[monthCount];
+            for (int i = 0; i < monthCount; i++) {
+                loaded[i] = buf.get(HEADER_SIZE + i) != 0;
+            }
+
+            float[] days = new float[dayCount];
+            buf.position(HEADER_SIZE + flagsSize);
+            buf.asFloatBuffer().get(days);
+
+            return new DayStore(monthCount == 0 ? -1 : firstMonth, loaded, days, dayCount);
+        } catch (IOException ioe) {
+            Output.error("SnapshotFile.read(): Unable to read snapshot " + file + ": " + ioe.getMessage());
+            return null;
+        } finally {
+            try {
+                if (raf != null) raf.close();
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    private static DayStore invalid(File file) {
+        Output.error("SnapshotFile.read(): Invalid snapshot " + file);
+        return null;
+    }
+
+}
@@ -0,0 +1,212 @@
+package org.rainfall.store;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import org.rainfall.lang.Output;
+
+/**
+ * Run-length encoding of a {@link DayStore} day column into spells: runs of
+ * consecutive wet days (at least the threshold) and dry days (less than it). A
+ * missing day ends the spell it interrupts. <br /><br />
+ * Spells are kept in order of their first day, so the spells of any range of days
+ * are found with a binary search and read without looking at the days themselves;
+ * a spell which crosses either end of the range is cut to the part inside it. When
+ * days are appended only the spells from the first changed day onwards are
+ * recalculated. <br /><br />
+ * Stations index their spells with a wet day threshold of 1mm, which can be changed
+ * with -Drainfall.wetDay=&lt;mm&gt;.
+ *
+ * @author Kieran
+ * @see DayStore
+ */
+public class SpellIndex {
+
+    /** Kind of a spell of days with less rainfall than the threshold */
+    public static final int DRY = 0;
+
+    /** Kind of a spell of days with at least the threshold of rainfall */
+    public static final int WET = 1;
+
+    /** Wet day threshold (mm) stations build their index with */
+    public static final float WET_DAY_THRESHOLD = readThreshold();
+
+    private final float threshold;
+    private int[] starts = new int[16];     // offset of the first day of each spell
+    private int[] lengths = new int[16];
+    private byte[] kinds = new byte[16];
+    private int count = 0;
+
+    /**
+     * Constructor for an empty index
+     * @param threshold Rainfall (mm) a day needs to be wet
+     */
+    public SpellIndex(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Builds the index over every day of the store
+     * @param store Store to index
+     * @param threshold Rainfall (mm) a day needs to be wet
+     */
+    public SpellIndex(DayStore store, float threshold) {
+        this(threshold);
+        rebuild(store);
+    }
+
+    /**
+     * Finds the spells from scratch
+     * @param store Store to index
+     */
+    public void rebuild(DayStore store) {
+        count = 0;
+        scan(store, 0);
+    }
+
+    /**
+     * Finds the spells from a day onwards, after the days from that offset to the end
+     * of the store have been changed or appended. A spell which ran up to the day
+     * before is found again, so a dry spell carries on into a new month. The first
+     * day of the store must not have moved since the index was built.
+     * @param store Store to index
+     * @param from Offset of the first changed day
+     */
+    public void update(DayStore store, int from) {
+        int r = firstEndingAtOrAfter(Math.max(from, 0));
+        int scanFrom = r < count ? Math.min(starts[r], from) : from;
+        count = r;
+        scan(store, Math.max(scanFrom, 0));
+    }
+
+    /**
+     * Copies the index, so the copy can be updated while the original is still in use
+     * @return SpellIndex - an independent copy
+     */
+    public SpellIndex copy() {
+        SpellIndex copy = new SpellIndex(threshold);
+        copy.starts = starts.clone();
+        copy.lengths = lengths.clone();
+        copy.kinds = kinds.clone();
+        copy.count = count;
+        return copy;
+    }
+
+    /**
+     * Rainfall a day needs to be wet
+     * @return float - threshold in mm
+     */
+    public float getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Number of spells in the index
+     * @return int - spell count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finds the longest spells of a kind within [from, to), longest first and the
+     * earliest first where spells are the same length. Takes time in proportion to
+     * the number of spells in the range.
+     * @param from First day offset (inclusive)
+     * @param to Last day offset (exclusive)
+     * @param kind {@link #WET} or {@link #DRY}
+     * @param max Most spells to return
+     * @return int[] - pairs of the offset of the first day of a spell and its length in days
+     */
+    public int[] longest(int from, int to, int kind, int max) {
+        from = Math.max(from, 0);
+        if (max <= 0 || from >= to)
+            return new int[0];
+
+        // Keep the best spells seen so far in a heap with the worst of them on top;
+        // a longer spell has a larger key, then an earlier one
+        PriorityQueue<Long> best = new PriorityQueue<Long>(max + 1);
+        for (int r = firstEndingAtOrAfter(from + 1); r < count && starts[r] < to; r++) {
+            if (kinds[r] != kind)
+                continue;
+            int start = Math.max(starts[r], from);
+            int length = Math.min(starts[r] + lengths[r], to) - start;
+            long key = ((long)length << 32) | (Integer.MAX_VALUE - start);
+            if (best.size() < max) {
+                best.add(key);
+            }
+            else if (key > best.peek()) {
+                best.poll();
+                best.add(key);
+            }
+        }
+
+        int[] spells = new int[best.size() * 2];
+        for (int i = spells.length - 2; i >= 0; i -= 2) {
+            long key = best.poll();
+            spells[i] = Integer.MAX_VALUE - (int)key;
+            spells[i + 1] = (int)(key >>> 32);
+        }
+        return spells;
+    }
+
+    /**
+     * Finds the first spell whose end (exclusive) is at or after a day offset
+     */
+    private int firstEndingAtOrAfter(int offset) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] + lengths[mid] < offset)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Appends the spells of the days from an offset to the end of the store
+     */
+    private void scan(DayStore store, int from) {
+        int length = store.size();
+        int runStart = -1, runKind = DRY;
+        for (int i = from; i <= length; i++) {
+            float value = i < length ? store.get(i) : DayStore.MISSING_VALUE;
+            int kind = value >= threshold ? WET : DRY;
+            if (runStart >= 0 && (value == DayStore.MISSING_VALUE || kind != runKind)) {
+                add(runStart, i - runStart, runKind);
+                runStart = -1;
+            }
+            if (runStart < 0 && value != DayStore.MISSING_VALUE) {
+                runStart = i;
+                runKind = kind;
+            }
+        }
+    }
+
+    private void add(int start, int length, int kind) {
+        if (count == starts.length) {
+            int capacity = count * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        starts[count] = start;
+        lengths[count] = length;
+        kinds[count] = (byte)kind;
+        count++;
+    }
+
+    private static float readThreshold() {
+        String value = System.getProperty("rainfall.wetDay");
+        if (value == null)
+            return 1F;
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException nfe) {
+            Output.error("SpellIndex: rainfall.wetDay is not a number: " + value + ", using 1mm");
+            return 1F;
+        }
+    }
+
+}
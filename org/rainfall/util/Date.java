@@ -1,11 +1,13 @@
 package org.rainfall.util;
 
-import java.util.ArrayList;
-import java.util.Calendar;
+import org.rainfall.station.StationDataset;
+import org.rainfall.station.StationRegistry;
 
 /**
  * The Date class provides functionality for verifying dates and storing all the
- * dates from the loaded rainfall data file.
+ * dates from the loaded rainfall data file. Dates are compared by value (year and
+ * month) so they can be used as keys in hash based collections. <br /><br />
+ * The stored dates belong to the default station of the {@link StationRegistry}.
  *
  * @author Kieran
  */
@@ -13,14 +15,11 @@ public class Date {
 
     private static final int MINIMUM_MONTH_SUPPORTED = 1;
     private static final int MAXIMUM_MONTH_SUPPORTED = 12;
-    private static final int MINIMUM_YEAR_SUPPORTED = 1950;
-    private static final int MAXIMUM_YEAR_SUPPORTED = Calendar.getInstance().get(Calendar.YEAR);
+    static final int MINIMUM_YEAR_SUPPORTED = 1950;
+    static final int MAXIMUM_YEAR_SUPPORTED = getCurrentYear();
 
-    private static int mostRecentYear = 0, oldestYear = 0;
     private int year, month;
 
-    private static ArrayList<Date> dates = new ArrayList<Date>();
-
     /**
      * Main constructor
      */
@@ -61,16 +60,7 @@ public class Date {
      * @return int - the most recent year (e.g. 2012)
      */
     public static int getMostRecentYear() {
-        if (mostRecentYear != 0) return mostRecentYear; // speed up efficiency (only loop once)
-        else {
-            int mostRecent = dates.get(0).getYear();
-            for (int i = 0; i < dates.size(); i++) {
-                if (dates.get(i).getYear() > mostRecent)
-                    mostRecent = dates.get(i).getYear();
-            }
-            mostRecentYear = mostRecent;
-            return mostRecent;
-        }
+        return getDates().getMostRecentYear();
     }
 
     /**
@@ -78,32 +68,35 @@ public class Date {
      * @return int - oldest year in the dataset e.g. 1940
      */
     public static int getOldestYear() {
-        if (oldestYear != 0) return oldestYear; // speed up efficiency (only loop once)
-        else {
-            int oldest = dates.get(0).getYear();
-            for (int i = 0; i < dates.size(); i++) {
-                if (dates.get(i).getYear() < oldest)
-                    oldest = dates.get(i).getYear();
-            }
-            oldestYear = oldest;
-            return oldest;
-        }
+        return getDates().getOldestYear();
     }
 
     /**
      * Adds a date object to our array of date objects
      * @param d Date object consisting of year and month
+     * @deprecated Each call copies the default station to publish a new version.
+     *          Collect the dates with {@link StationDataset.Update#addDate(Date)} and
+     *          apply them once with RainfallData.storeUpdate.
      */
+    @Deprecated
     public static void storeDateObject(Date d) {
-        dates.add(d);
+        StationDataset.Update update = new StationDataset.Update();
+        update.addDate(d);
+        StationRegistry.updateDefault(update);
     }
 
     /**
      * Removes the specified date object from our array of date objects
      * @param d Date object consisting of year and month
+     * @deprecated Each call copies the default station to publish a new version.
+     *          Collect the dates with {@link StationDataset.Update#removeDate(Date)} and
+     *          apply them once with RainfallData.storeUpdate.
      */
+    @Deprecated
     public void removeDateObject(Date d) {
-        dates.remove(d);
+        StationDataset.Update update = new StationDataset.Update();
+        update.removeDate(d);
+        StationRegistry.updateDefault(update);
     }
 
     /**
@@ -152,45 +145,118 @@ public class Date {
     }
 
     private static boolean isLeapYear(int year) {
-        if (year % 4 == 0 && (year % 100 == 0 || year % 400 == 0))
+        if (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))
             return true;
         else
             return false;
     }
 
     /**
-     * Searches through the array of date objects until it finds the specified
-     * year and month - <b>used as a key when storing rainfall data</b>
+     * Converts a calendar date into a day number (the number of days since
+     * 1st January 1970) so that consecutive days map to consecutive integers.
+     * @param year The year of the date
+     * @param month The month of the date (1 - 12)
+     * @param day The day of the month (1 - 31)
+     * @return int - Day number of the given date
+     */
+    public static int getDayNumber(int year, int month, int day) {
+        // Shift the year to start in March so the leap day falls at the end
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Converts a day number back into a calendar date (the inverse of
+     * {@link #getDayNumber(int, int, int)})
+     * @param dayNumber Number of days since 1st January 1970
+     * @return int[] - { year, month, day }
+     */
+    public static int[] getDateOfDayNumber(int dayNumber) {
+        int z = dayNumber + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[] { year, month, day };
+    }
+
+    /**
+     * Works out the current (UTC) year from the system clock. Avoids Calendar, whose
+     * time zone and locale set up costs ~100ms the first time the class is used.
+     * @return int - the current year
+     */
+    private static int getCurrentYear() {
+        int today = (int)(System.currentTimeMillis() / 86400000L);
+        int year = 1970 + (int)(today / 365.2425);
+        while (getDayNumber(year, 1, 1) > today) year--;
+        while (getDayNumber(year + 1, 1, 1) <= today) year++;
+        return year;
+    }
+
+    /**
+     * Looks up the stored date object for the specified year and month
+     * - <b>used as a key when storing rainfall data</b>
      * @param year The year you wish to look for
      * @param month The month you wish to look for in the specified year
      * @return A date object for the specified year and month
      */
     public static Date getDateObjectForMonth(int year, int month) {
-        int arraySize = dates.size(); // improve efficiency (don't lookup size every iteration)
-        for (int i = 0; i < arraySize; i++) {
-            Date d = dates.get(i);
-            if (d.getMonth() == month && d.getYear() == year)
-                return d;
-        }
-        return null;
+        return getDates().get(year, month);
     }
 
     /**
-     * Searches through the array of date objects until it finds the specified year
-     * then returns an array of date objects (12) - one for each month of that year
+     * Looks up the stored date objects for the specified year and returns an
+     * array of date objects (12) - one for each month of that year
      * - <b>used as a key when storing rainfall data</b>
      * @param year The year you wish to look for
      * @return An array of 12 Date objects e.g. "year":"1", "year":"2"...
      */
     public static Date[] getDateObjectsForYear(int year) {
-        Date[] monthData = new Date[12];
-        int c = 0, arraySize = dates.size(); // improve efficiency (don't lookup size every iteration)
-        for (int i = 0; i < arraySize; i++) {
-            Date d = dates.get(i);
-            if (d.getYear() == year)
-                monthData[c++] = d;
-        }
-        return monthData;
+        return getDates().getYear(year);
+    }
+
+    /**
+     * Compares dates by their year and month
+     * @param o Object to compare against
+     * @return true if o is a Date for the same year and month
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Date)) return false;
+        Date d = (Date)o;
+        return year == d.year && month == d.month;
+    }
+
+    @Override
+    public int hashCode() {
+        return year * 12 + month;
+    }
+
+    /**
+     * Checks whether a year and month fall within the range of dates supported
+     * @param year The year to check
+     * @param month The month to check
+     * @return true if a Date object can be created for the year and month
+     */
+    public static boolean isSupported(int year, int month) {
+        return (year >= MINIMUM_YEAR_SUPPORTED && year <= MAXIMUM_YEAR_SUPPORTED) &&
+               (month >= MINIMUM_MONTH_SUPPORTED && month <= MAXIMUM_MONTH_SUPPORTED);
+    }
+
+    /**
+     * The dates loaded for the default station
+     */
+    private static DateIndex getDates() {
+        return StationRegistry.getDefault().getDates();
     }
 
     private boolean dateIsValid(int year, int month) {
@@ -0,0 +1,179 @@
+package org.rainfall.util;
+
+/**
+ * Direct (year, month) index of the Date objects loaded from a data file. Dates
+ * are held in a table indexed by the year offset from the oldest supported year
+ * and the month number, so looking up a month or the months of a year costs the
+ * same regardless of how many years have been loaded. <br /><br />
+ * The oldest and most recent years are maintained as dates are added so they
+ * never need to be recalculated by scanning.
+ *
+ * @author Kieran
+ * @see Date
+ */
+public class DateIndex {
+
+    private final int firstYear;
+    private final Date[][] months;      // [year - firstYear][month - 1]
+    private final Date[][] years;       // months of each year packed in the order they were added
+    private final int[] monthsPerYear;
+
+    private int size = 0;
+    private int mostRecentYear = 0, oldestYear = 0;
+
+    /**
+     * Creates an index covering every year supported by the Date class
+     */
+    public DateIndex() {
+        this(Date.MINIMUM_YEAR_SUPPORTED, Date.MAXIMUM_YEAR_SUPPORTED);
+    }
+
+    /**
+     * Creates an index covering the given range of years
+     * @param firstYear Oldest year which can be indexed
+     * @param lastYear Most recent year which can be indexed
+     */
+    public DateIndex(int firstYear, int lastYear) {
+        int yearCount = lastYear - firstYear + 1;
+        this.firstYear = firstYear;
+        this.months = new Date[yearCount][12];
+        this.years = new Date[yearCount][12];
+        this.monthsPerYear = new int[yearCount];
+    }
+
+    /**
+     * Adds a date to the index. Dates outside of the supported range are ignored
+     * and a month which is already indexed is replaced.
+     * @param d Date object consisting of year and month
+     */
+    public void add(Date d) {
+        int y = d.getYear() - firstYear;
+        int m = d.getMonth() - 1;
+        if (y < 0 || y >= months.length || m < 0 || m >= 12)
+            return;
+
+        if (months[y][m] == null) {
+            years[y][monthsPerYear[y]++] = d;
+            size++;
+        }
+        else {
+            // Keep the position of the month in the year, just swap the object
+            for (int i = 0; i < monthsPerYear[y]; i++) {
+                if (years[y][i].getMonth() == d.getMonth())
+                    years[y][i] = d;
+            }
+        }
+        months[y][m] = d;
+
+        if (mostRecentYear == 0 || d.getYear() > mostRecentYear)
+            mostRecentYear = d.getYear();
+        if (oldestYear == 0 || d.getYear() < oldestYear)
+            oldestYear = d.getYear();
+    }
+
+    /**
+     * Removes a date from the index
+     * @param d Date object consisting of year and month
+     */
+    public void remove(Date d) {
+        int y = d.getYear() - firstYear;
+        int m = d.getMonth() - 1;
+        if (y < 0 || y >= months.length || m < 0 || m >= 12 || months[y][m] == null)
+            return;
+
+        months[y][m] = null;
+        size--;
+        int c = 0;
+        for (int i = 0; i < monthsPerYear[y]; i++) {
+            if (years[y][i].getMonth() != d.getMonth())
+                years[y][c++] = years[y][i];
+        }
+        years[y][c] = null;
+        monthsPerYear[y] = c;
+
+        // Only rescan the (small) year table when a boundary year was emptied
+        if (c == 0 && (d.getYear() == mostRecentYear || d.getYear() == oldestYear))
+            recalculateYearRange();
+    }
+
+    /**
+     * Looks up the date object for a month
+     * @param year The year you wish to look for
+     * @param month The month you wish to look for in the specified year
+     * @return A date object for the specified year and month or null if it has not been added
+     */
+    public Date get(int year, int month) {
+        int y = year - firstYear;
+        if (y < 0 || y >= months.length || month < 1 || month > 12)
+            return null;
+        return months[y][month - 1];
+    }
+
+    /**
+     * Gets the date objects for each month which has been added for a year
+     * @param year The year you wish to look for
+     * @return An array of 12 Date objects (unused positions at the end are null)
+     */
+    public Date[] getYear(int year) {
+        Date[] monthData = new Date[12];
+        int y = year - firstYear;
+        if (y >= 0 && y < years.length)
+            System.arraycopy(years[y], 0, monthData, 0, monthsPerYear[y]);
+        return monthData;
+    }
+
+    /**
+     * Most recent year in the index
+     * @return int - the most recent year (e.g. 2012) or 0 if the index is empty
+     */
+    public int getMostRecentYear() {
+        return mostRecentYear;
+    }
+
+    /**
+     * Oldest year in the index
+     * @return int - the oldest year (e.g. 1940) or 0 if the index is empty
+     */
+    public int getOldestYear() {
+        return oldestYear;
+    }
+
+    /**
+     * Copies the index, so dates can be added to or removed from the copy while the
+     * original is still being read
+     * @return DateIndex - an independent copy (the Date objects themselves are shared)
+     */
+    public DateIndex copy() {
+        DateIndex copy = new DateIndex(firstYear, firstYear + months.length - 1);
+        for (int y = 0; y < months.length; y++) {
+            if (monthsPerYear[y] > 0) {
+                System.arraycopy(months[y], 0, copy.months[y], 0, 12);
+                System.arraycopy(years[y], 0, copy.years[y], 0, 12);
+                copy.monthsPerYear[y] = monthsPerYear[y];
+            }
+        }
+        copy.size = size;
+        copy.mostRecentYear = mostRecentYear;
+        copy.oldestYear = oldestYear;
+        return copy;
+    }
+
+    /**
+     * Number of months in the index
+     * @return int - number of indexed date objects
+     */
+    public int size() {
+        return size;
+    }
+
+    private void recalculateYearRange() {
+        mostRecentYear = 0; oldestYear = 0;
+        for (int y = 0; y < monthsPerYear.length; y++) {
+            if (monthsPerYear[y] > 0) {
+                if (oldestYear == 0) oldestYear = firstYear + y;
+                mostRecentYear = firstYear + y;
+            }
+        }
+    }
+
+}
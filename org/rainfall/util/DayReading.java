@@ -0,0 +1,76 @@
+package org.rainfall.util;
+
+/**
+ * A single day's rainfall reading along with the date it was recorded on, as
+ * returned by the wettest/driest day range queries.
+ *
+ * @author Kieran
+ */
+public class DayReading {
+
+    private final int year, month, day;
+    private final float rainfall;
+
+    /**
+     * Constructor
+     * @param year The year of the reading
+     * @param month The month of the reading
+     * @param day The day of the month of the reading
+     * @param rainfall Rainfall recorded on the day (mm)
+     */
+    public DayReading(int year, int month, int day, float rainfall) {
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        this.rainfall = rainfall;
+    }
+
+    /**
+     * Creates a reading from a day number
+     * @param dayNumber Day number (see {@link Date#getDayNumber(int, int, int)})
+     * @param rainfall Rainfall recorded on the day (mm)
+     * @return DayReading for the day
+     */
+    public static DayReading forDayNumber(int dayNumber, float rainfall) {
+        int[] date = Date.getDateOfDayNumber(dayNumber);
+        return new DayReading(date[0], date[1], date[2], rainfall);
+    }
+
+    /**
+     * Get the year number of the reading
+     * @return int - Year number
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Gets the month number of the reading
+     * @return int - Month number
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Gets the day of the month of the reading
+     * @return int - Day number
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Gets the rainfall recorded on the day
+     * @return float - rainfall (mm)
+     */
+    public float getRainfall() {
+        return rainfall;
+    }
+
+    @Override
+    public String toString() {
+        return rainfall + " (" + day + " " + Date.monthToName(month) + " " + year + ")";
+    }
+
+}
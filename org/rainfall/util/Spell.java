@@ -0,0 +1,118 @@
+package org.rainfall.util;
+
+/**
+ * A run of consecutive wet or dry days: the dates of its first and last days,
+ * its length and the rainfall which fell during it.
+ *
+ * @author Kieran
+ * @see org.rainfall.store.SpellIndex
+ */
+public class Spell {
+
+    private final int startYear, startMonth, startDay;
+    private final int endYear, endMonth, endDay;
+    private final int days;
+    private final boolean wet;
+    private final float rainfall;
+
+    /**
+     * Creates a spell from the day number of its first day
+     * @param dayNumber Day number of the first day (see {@link Date#getDayNumber(int, int, int)})
+     * @param days Length of the spell in days
+     * @param wet true for a spell of wet days, false for dry days
+     * @param rainfall Total rainfall of the spell
+     */
+    public Spell(int dayNumber, int days, boolean wet, float rainfall) {
+        int[] start = Date.getDateOfDayNumber(dayNumber);
+        int[] end = Date.getDateOfDayNumber(dayNumber + days - 1);
+        this.startYear = start[0];
+        this.startMonth = start[1];
+        this.startDay = start[2];
+        this.endYear = end[0];
+        this.endMonth = end[1];
+        this.endDay = end[2];
+        this.days = days;
+        this.wet = wet;
+        this.rainfall = rainfall;
+    }
+
+    /**
+     * Gets the year of the first day of the spell
+     * @return int - Year number
+     */
+    public int getStartYear() {
+        return startYear;
+    }
+
+    /**
+     * Gets the month of the first day of the spell
+     * @return int - Month number
+     */
+    public int getStartMonth() {
+        return startMonth;
+    }
+
+    /**
+     * Gets the day of the month of the first day of the spell
+     * @return int - Day number
+     */
+    public int getStartDay() {
+        return startDay;
+    }
+
+    /**
+     * Gets the year of the last day of the spell
+     * @return int - Year number
+     */
+    public int getEndYear() {
+        return endYear;
+    }
+
+    /**
+     * Gets the month of the last day of the spell
+     * @return int - Month number
+     */
+    public int getEndMonth() {
+        return endMonth;
+    }
+
+    /**
+     * Gets the day of the month of the last day of the spell
+     * @return int - Day number
+     */
+    public int getEndDay() {
+        return endDay;
+    }
+
+    /**
+     * Gets the length of the spell
+     * @return int - number of days
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Checks whether the spell is of wet or dry days
+     * @return true for a spell of wet days, false for dry days
+     */
+    public boolean isWet() {
+        return wet;
+    }
+
+    /**
+     * Gets the rainfall which fell during the spell
+     * @return float - total rainfall (mm)
+     */
+    public float getRainfall() {
+        return rainfall;
+    }
+
+    @Override
+    public String toString() {
+        return days + (wet ? " wet" : " dry") + " days, " + rainfall + " ("
+                + startDay + " " + Date.monthToName(startMonth) + " " + startYear + " - "
+                + endDay + " " + Date.monthToName(endMonth) + " " + endYear + ")";
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.rainfall.store;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Day column kernels written with the JDK Vector API. Each step loads as many days
+ * as the widest SIMD register holds and compares them with the missing value to
+ * build a mask, which is used to zero, ignore or replace the missing days without
+ * a branch; the days left over at the end of the range are handled one at a time.
+ * Totals are accumulated in double lanes so they match the scalar kernels. <br /><br />
+ * Only loaded through {@link DayKernels}. This is the only source in the vector/
+ * source root, which is compiled separately with --add-modules jdk.incubator.vector.
+ *
+ * @author Kieran
+ * @see DayKernels
+ */
+class VectorDayKernels extends DayKernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = VectorSpecies.of(double.class, FLOATS.vectorShape());
+    private static final int LANES = FLOATS.length();
+
+    private static final float MISSING_VALUE = DayStore.MISSING_VALUE;
+
+    @Override
+    public String getName() {
+        return "vector (" + LANES + " x float)";
+    }
+
+    @Override
+    public double sum(float[] days, int from, int to) {
+        DoubleVector low = DoubleVector.zero(DOUBLES), high = DoubleVector.zero(DOUBLES);
+        int i = from;
+        for (int end = to - LANES; i <= end; i += LANES) {
+            FloatVector v = FloatVector.fromArray(FLOATS, days, i);
+            v = v.blend(0F, v.compare(VectorOperators.EQ, MISSING_VALUE));
+            low = low.add((DoubleVector)v.convertShape(VectorOperators.F2D, DOUBLES, 0));
+            high = high.add((DoubleVector)v.convertShape(VectorOperators.F2D, DOUBLES, 1));
+        }
+        double total = low.add(high).reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            if (days[i] != MISSING_VALUE)
+                total += days[i];
+        }
+        return total;
+    }
+
+    @Override
+    public int count(float[] days, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (int end = to - LANES; i <= end; i += LANES) {
+            count += FloatVector.fromArray(FLOATS, days, i).compare(VectorOperators.NE, MISSING_VALUE).trueCount();
+        }
+        for (; i < to; i++) {
+            if (days[i] != MISSING_VALUE)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int countAbove(float[] days, int from, int to, float threshold) {
+        int count = 0;
+        int i = from;
+        for (int end = to - LANES; i <= end; i += LANES) {
+            FloatVector v = FloatVector.fromArray(FLOATS, days, i);
+            VectorMask<Float> above = v.compare(VectorOperators.GT, threshold).andNot(v.compare(VectorOperators.EQ, MISSING_VALUE));
+            count += above.trueCount();
+        }
+        for (; i < to; i++) {
+            float value = days[i];
+            if (value != MISSING_VALUE && value > threshold)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public float max(float[] days, int from, int to) {
+        FloatVector max = FloatVector.broadcast(FLOATS, Float.NEGATIVE_INFINITY);
+        int i = from;
+        for (int end = to - LANES; i <= end; i += LANES) {
+            FloatVector v = FloatVector.fromArray(FLOATS, days, i);
+            max = max.max(v.blend(Float.NEGATIVE_INFINITY, v.compare(VectorOperators.EQ, MISSING_VALUE)));
+        }
+        float result = max.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) {
+            if (days[i] != MISSING_VALUE && days[i] > result)
+                result = days[i];
+        }
+        return result == Float.NEGATIVE_INFINITY ? MISSING_VALUE : result;
+    }
+
+    @Override
+    public float min(float[] days, int from, int to) {
+        FloatVector min = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        int i = from;
+        for (int end = to - LANES; i <= end; i += LANES) {
+            FloatVector v = FloatVector.fromArray(FLOATS, days, i);
+            min = min.min(v.blend(Float.POSITIVE_INFINITY, v.compare(VectorOperators.EQ, MISSING_VALUE)));
+        }
+        float result = min.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) {
+            if (days[i] != MISSING_VALUE && days[i] < result)
+                result = days[i];
+        }
+        return result == Float.POSITIVE_INFINITY ? MISSING_VALUE : result;
+    }
+
+}